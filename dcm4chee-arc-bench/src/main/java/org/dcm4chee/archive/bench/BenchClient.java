@@ -0,0 +1,214 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2011-2013
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4chee.archive.bench;
+
+import org.dcm4che.data.Attributes;
+import org.dcm4che.data.Tag;
+import org.dcm4che.data.UID;
+import org.dcm4che.data.VR;
+import org.dcm4che.io.DicomEncodingOptions;
+import org.dcm4che.net.ApplicationEntity;
+import org.dcm4che.net.Association;
+import org.dcm4che.net.Connection;
+import org.dcm4che.net.DataWriterAdapter;
+import org.dcm4che.net.DimseRSP;
+import org.dcm4che.net.Priority;
+import org.dcm4che.net.Status;
+import org.dcm4che.net.pdu.AAssociateRQ;
+import org.dcm4che.net.pdu.PresentationContext;
+import org.dcm4che.net.pdu.RoleSelection;
+
+/**
+ * Performs C-STORE, C-FIND and C-GET or C-MOVE requests to the archive,
+ * recording their latency.
+ * 
+ * @author Gunter Zeilinger <gunterze@gmail.com>
+ *
+ */
+class BenchClient {
+
+    private static final String[] TSUIDS = {
+        UID.ExplicitVRLittleEndian,
+        UID.ImplicitVRLittleEndian
+    };
+
+    private static final String FIND_CUID =
+            UID.StudyRootQueryRetrieveInformationModelFIND;
+    private static final String GET_CUID =
+            UID.StudyRootQueryRetrieveInformationModelGET;
+    private static final String MOVE_CUID =
+            UID.StudyRootQueryRetrieveInformationModelMOVE;
+
+    private final ApplicationEntity ae;
+    private final Connection conn;
+    private final Connection remote;
+    private final String calledAET;
+
+    BenchClient(ApplicationEntity ae, Connection conn, Connection remote,
+            String calledAET) {
+        this.ae = ae;
+        this.conn = conn;
+        this.remote = remote;
+        this.calledAET = calledAET;
+    }
+
+    private Association open(String cuid, boolean scpRole) throws Exception {
+        AAssociateRQ rq = new AAssociateRQ();
+        rq.setCalledAET(calledAET);
+        rq.addPresentationContext(new PresentationContext(1, cuid, TSUIDS));
+        if (scpRole) {
+            rq.addPresentationContext(new PresentationContext(3,
+                    SyntheticStudy.SOP_CLASS_UID, TSUIDS));
+            rq.addRoleSelection(new RoleSelection(
+                    SyntheticStudy.SOP_CLASS_UID, false, true));
+        }
+        return ae.connect(conn, remote, rq);
+    }
+
+    private static void close(Association as) {
+        try {
+            as.release();
+            as.waitForSocketClose();
+        } catch (Exception e) {
+            as.abort();
+        }
+    }
+
+    /**
+     * Sends all instances of the study over one association, as a modality
+     * would do.
+     */
+    void store(SyntheticStudy study, PhaseStats stats) throws Exception {
+        Association as = open(SyntheticStudy.SOP_CLASS_UID, false);
+        try {
+            String tsuid = as.getTransferSyntaxesFor(
+                    SyntheticStudy.SOP_CLASS_UID).iterator().next();
+            for (int series = 0; series < study.seriesInstanceUIDs.length;
+                    series++) {
+                for (int inst = 0; inst < study.instancesPerSeries; inst++) {
+                    Attributes attrs = study.instance(series, inst);
+                    long start = System.nanoTime();
+                    DimseRSP rsp = as.cstore(SyntheticStudy.SOP_CLASS_UID,
+                            attrs.getString(Tag.SOPInstanceUID),
+                            Priority.NORMAL, new DataWriterAdapter(attrs),
+                            tsuid);
+                    rsp.next();
+                    int status = rsp.getCommand().getInt(Tag.Status, -1);
+                    if (status == Status.Success
+                            || (status & 0xF000) == 0xB000) {
+                        stats.record(System.nanoTime() - start, 1);
+                        stats.addBytes(attrs.calcLength(
+                                DicomEncodingOptions.DEFAULT, true));
+                    } else
+                        stats.failed();
+                }
+            }
+        } finally {
+            close(as);
+        }
+    }
+
+    /**
+     * Queries each of the specified studies by Patient ID at STUDY level,
+     * using one association.
+     */
+    void query(SyntheticStudy[] studies, PhaseStats stats) throws Exception {
+        Association as = open(FIND_CUID, false);
+        try {
+            for (SyntheticStudy study : studies) {
+                Attributes keys = new Attributes();
+                keys.setString(Tag.QueryRetrieveLevel, VR.CS, "STUDY");
+                keys.setString(Tag.PatientID, VR.LO, study.patientID);
+                keys.setNull(Tag.PatientName, VR.PN);
+                keys.setNull(Tag.StudyInstanceUID, VR.UI);
+                keys.setNull(Tag.StudyDate, VR.DA);
+                keys.setNull(Tag.AccessionNumber, VR.SH);
+                keys.setNull(Tag.ModalitiesInStudy, VR.CS);
+                keys.setNull(Tag.NumberOfStudyRelatedInstances, VR.IS);
+                long start = System.nanoTime();
+                DimseRSP rsp = as.cfind(FIND_CUID, Priority.NORMAL, keys,
+                        null, Integer.MAX_VALUE);
+                int matches = 0;
+                while (rsp.next())
+                    if (Status.isPending(
+                            rsp.getCommand().getInt(Tag.Status, -1)))
+                        matches++;
+                if (rsp.getCommand().getInt(Tag.Status, -1) == Status.Success)
+                    stats.record(System.nanoTime() - start, matches);
+                else
+                    stats.failed();
+            }
+        } finally {
+            close(as);
+        }
+    }
+
+    /**
+     * Retrieves each of the specified studies using one association - by
+     * C-GET, or by C-MOVE if a move destination is specified. The size of
+     * retrieved objects is accounted by the {@link DiscardingCStoreSCP}.
+     */
+    void retrieve(SyntheticStudy[] studies, String moveDest,
+            PhaseStats stats) throws Exception {
+        String cuid = moveDest != null ? MOVE_CUID : GET_CUID;
+        Association as = open(cuid, moveDest == null);
+        try {
+            for (SyntheticStudy study : studies) {
+                Attributes keys = new Attributes();
+                keys.setString(Tag.QueryRetrieveLevel, VR.CS, "STUDY");
+                keys.setString(Tag.StudyInstanceUID, VR.UI,
+                        study.studyInstanceUID);
+                long start = System.nanoTime();
+                DimseRSP rsp = moveDest != null
+                        ? as.cmove(cuid, Priority.NORMAL, keys, null, moveDest)
+                        : as.cget(cuid, Priority.NORMAL, keys, null);
+                while (rsp.next())
+                    ;
+                Attributes cmd = rsp.getCommand();
+                if (cmd.getInt(Tag.Status, -1) == Status.Success)
+                    stats.record(System.nanoTime() - start,
+                            cmd.getInt(Tag.NumberOfCompletedSuboperations, 0));
+                else
+                    stats.failed();
+            }
+        } finally {
+            close(as);
+        }
+    }
+}
@@ -0,0 +1,305 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2011-2013
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4chee.archive.bench;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.dcm4che.net.ApplicationEntity;
+import org.dcm4che.net.Connection;
+import org.dcm4che.net.Device;
+import org.dcm4che.net.TransferCapability;
+import org.dcm4che.net.service.BasicCEchoSCP;
+import org.dcm4che.net.service.DicomServiceRegistry;
+
+/**
+ * Generates synthetic load on a running archive by concurrent clients and
+ * reports objects/s, MB/s and latency percentiles of C-STORE, C-FIND and
+ * C-GET/C-MOVE requests.
+ * <p>
+ * The archive should run with a fresh database (e.g. built with
+ * {@code -Ddb=h2}) and a local file system, so results of different builds
+ * are comparable:
+ * 
+ * <pre>
+ * java -jar dcm4chee-arc-bench.jar -c DCM4CHEE@localhost:11112 \
+ *     [--calling BENCH] [--clients 4] [--studies 10] [--series 4] \
+ *     [--instances 50] [--rows 512] [--columns 512] [--queries 100] \
+ *     [--retrieves 10] [--move DEST --bind 11113]
+ * </pre>
+ * 
+ * {@code --studies}, {@code --queries} and {@code --retrieves} specify the
+ * number of operations per client. With {@code --move}, studies are
+ * retrieved by C-MOVE to the specified destination, which must be
+ * configured in the archive to refer to the port specified by
+ * {@code --bind}; otherwise studies are retrieved by C-GET.
+ * 
+ * @author Gunter Zeilinger <gunterze@gmail.com>
+ *
+ */
+public class LoadGenerator {
+
+    private String calledAET;
+    private String host;
+    private int port;
+    private String callingAET = "BENCH";
+    private int clients = 4;
+    private int studies = 10;
+    private int series = 4;
+    private int instances = 50;
+    private int rows = 512;
+    private int columns = 512;
+    private int queries = 100;
+    private int retrieves = 10;
+    private String moveDest;
+    private int bindPort;
+
+    private final Device device = new Device("dcm4chee-arc-bench");
+    private final ApplicationEntity ae;
+    private final Connection conn = new Connection();
+    private final Connection remote = new Connection();
+    private final DiscardingCStoreSCP storeSCP = new DiscardingCStoreSCP();
+    private final List<SyntheticStudy> stored =
+            Collections.synchronizedList(new ArrayList<SyntheticStudy>());
+    private final Random random = new Random();
+
+    private ExecutorService executor;
+    private ScheduledExecutorService scheduledExecutor;
+    private ExecutorService clientExecutor;
+
+    public static void main(String[] args) throws Exception {
+        LoadGenerator main = new LoadGenerator(args);
+        main.run();
+    }
+
+    private LoadGenerator(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("-c"))
+                parseCalled(value(args, ++i));
+            else if (arg.equals("--calling"))
+                callingAET = value(args, ++i);
+            else if (arg.equals("--clients"))
+                clients = intValue(args, ++i);
+            else if (arg.equals("--studies"))
+                studies = intValue(args, ++i);
+            else if (arg.equals("--series"))
+                series = intValue(args, ++i);
+            else if (arg.equals("--instances"))
+                instances = intValue(args, ++i);
+            else if (arg.equals("--rows"))
+                rows = intValue(args, ++i);
+            else if (arg.equals("--columns"))
+                columns = intValue(args, ++i);
+            else if (arg.equals("--queries"))
+                queries = intValue(args, ++i);
+            else if (arg.equals("--retrieves"))
+                retrieves = intValue(args, ++i);
+            else if (arg.equals("--move"))
+                moveDest = value(args, ++i);
+            else if (arg.equals("--bind"))
+                bindPort = intValue(args, ++i);
+            else
+                throw usage("unknown option: " + arg);
+        }
+        if (calledAET == null)
+            throw usage("missing -c <aet>@<host>:<port>");
+        if (moveDest != null && bindPort == 0)
+            throw usage("--move requires --bind <port>");
+
+        ae = new ApplicationEntity(callingAET);
+        device.addConnection(conn);
+        device.addApplicationEntity(ae);
+        ae.addConnection(conn);
+        if (bindPort != 0) {
+            conn.setPort(bindPort);
+            ae.setAssociationAcceptor(true);
+            ae.addTransferCapability(new TransferCapability(null, "*",
+                    TransferCapability.Role.SCP, "*"));
+        }
+        DicomServiceRegistry serviceRegistry = new DicomServiceRegistry();
+        serviceRegistry.addDicomService(new BasicCEchoSCP());
+        serviceRegistry.addDicomService(storeSCP);
+        device.setDimseRQHandler(serviceRegistry);
+        remote.setHostname(host);
+        remote.setPort(port);
+    }
+
+    private static IllegalArgumentException usage(String msg) {
+        System.err.println(msg);
+        System.err.println("usage: LoadGenerator -c <aet>@<host>:<port> "
+                + "[--calling <aet>] [--clients <n>] [--studies <n>] "
+                + "[--series <n>] [--instances <n>] [--rows <n>] "
+                + "[--columns <n>] [--queries <n>] [--retrieves <n>] "
+                + "[--move <dest> --bind <port>]");
+        return new IllegalArgumentException(msg);
+    }
+
+    private static String value(String[] args, int i) {
+        if (i >= args.length)
+            throw usage("missing value of option " + args[i - 1]);
+        return args[i];
+    }
+
+    private static int intValue(String[] args, int i) {
+        try {
+            return Integer.parseInt(value(args, i));
+        } catch (NumberFormatException e) {
+            throw usage("invalid value of option " + args[i - 1]);
+        }
+    }
+
+    private void parseCalled(String s) {
+        int at = s.indexOf('@');
+        int colon = s.lastIndexOf(':');
+        if (at <= 0 || colon < at)
+            throw usage("invalid -c " + s);
+        calledAET = s.substring(0, at);
+        host = s.substring(at + 1, colon);
+        port = Integer.parseInt(s.substring(colon + 1));
+    }
+
+    private void run() throws Exception {
+        executor = Executors.newCachedThreadPool();
+        scheduledExecutor = Executors.newSingleThreadScheduledExecutor();
+        clientExecutor = Executors.newFixedThreadPool(clients);
+        device.setExecutor(executor);
+        device.setScheduledExecutor(scheduledExecutor);
+        try {
+            if (bindPort != 0)
+                device.bindConnections();
+            PhaseStats store = new PhaseStats("store");
+            PhaseStats query = new PhaseStats("query");
+            PhaseStats retrieve = new PhaseStats("retrieve");
+            runStore(store);
+            if (!stored.isEmpty()) {
+                runQuery(query);
+                runRetrieve(retrieve);
+            }
+            System.out.printf("%d clients, %d studies x %d series x %d "
+                    + "instances of %dx%d pixels%n",
+                    clients, clients * studies, series, instances, rows,
+                    columns);
+            PhaseStats.printHeader(System.out);
+            store.print(System.out);
+            query.print(System.out);
+            retrieve.print(System.out);
+        } finally {
+            device.unbindConnections();
+            clientExecutor.shutdown();
+            executor.shutdown();
+            scheduledExecutor.shutdown();
+        }
+    }
+
+    private BenchClient newClient() {
+        return new BenchClient(ae, conn, remote, calledAET);
+    }
+
+    private SyntheticStudy[] randomStudies(int n) {
+        SyntheticStudy[] a = new SyntheticStudy[n];
+        synchronized (stored) {
+            for (int i = 0; i < n; i++)
+                a[i] = stored.get(random.nextInt(stored.size()));
+        }
+        return a;
+    }
+
+    private void runStore(final PhaseStats stats) throws Exception {
+        final byte[] pixelData = SyntheticStudy.randomPixelData(rows, columns);
+        runClients(stats, new Client() {
+            @Override
+            public void run(BenchClient client) throws Exception {
+                for (int i = 0; i < studies; i++) {
+                    SyntheticStudy study = new SyntheticStudy(
+                            series, instances, rows, columns, pixelData);
+                    client.store(study, stats);
+                    stored.add(study);
+                }
+            }
+        });
+    }
+
+    private void runQuery(final PhaseStats stats) throws Exception {
+        runClients(stats, new Client() {
+            @Override
+            public void run(BenchClient client) throws Exception {
+                client.query(randomStudies(queries), stats);
+            }
+        });
+    }
+
+    private void runRetrieve(final PhaseStats stats) throws Exception {
+        storeSCP.setStats(stats);
+        runClients(stats, new Client() {
+            @Override
+            public void run(BenchClient client) throws Exception {
+                client.retrieve(randomStudies(retrieves), moveDest, stats);
+            }
+        });
+    }
+
+    private interface Client {
+        void run(BenchClient client) throws Exception;
+    }
+
+    private void runClients(PhaseStats stats, final Client task)
+            throws Exception {
+        ArrayList<Future<?>> futures = new ArrayList<Future<?>>(clients);
+        stats.start();
+        for (int i = 0; i < clients; i++)
+            futures.add(clientExecutor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    task.run(newClient());
+                    return null;
+                }
+            }));
+        for (Future<?> future : futures)
+            future.get();
+        stats.stop();
+    }
+}
@@ -0,0 +1,106 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2011-2013
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4chee.archive.bench;
+
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.dcm4chee.archive.metrics.LatencyHistogram;
+
+/**
+ * Latency and throughput of one benchmark phase.
+ * 
+ * @author Gunter Zeilinger <gunterze@gmail.com>
+ *
+ */
+class PhaseStats {
+
+    private final String name;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final AtomicLong objects = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private long startTime;
+    private long endTime;
+
+    PhaseStats(String name) {
+        this.name = name;
+    }
+
+    void start() {
+        startTime = System.nanoTime();
+    }
+
+    void stop() {
+        endTime = System.nanoTime();
+    }
+
+    void record(long nanos, int numObjects) {
+        latency.record(nanos);
+        objects.addAndGet(numObjects);
+    }
+
+    void addBytes(long n) {
+        bytes.addAndGet(n);
+    }
+
+    void failed() {
+        failures.incrementAndGet();
+    }
+
+    static void printHeader(PrintStream out) {
+        out.printf("%-10s %8s %7s %10s %9s %9s %9s %9s %9s%n",
+                "phase", "ops", "failed", "objects/s", "MB/s",
+                "p50[ms]", "p90[ms]", "p99[ms]", "max[ms]");
+    }
+
+    void print(PrintStream out) {
+        double seconds = Math.max(endTime - startTime, 1) / 1e9;
+        out.printf("%-10s %8d %7d %10.1f %9.2f %9.1f %9.1f %9.1f %9.1f%n",
+                name,
+                latency.getCount(),
+                failures.get(),
+                objects.get() / seconds,
+                bytes.get() / seconds / 1e6,
+                latency.getValueAtQuantile(0.50) / 1e6,
+                latency.getValueAtQuantile(0.90) / 1e6,
+                latency.getValueAtQuantile(0.99) / 1e6,
+                latency.getMax() / 1e6);
+    }
+}
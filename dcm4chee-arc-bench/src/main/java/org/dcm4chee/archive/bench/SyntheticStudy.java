@@ -0,0 +1,132 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2011-2013
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4chee.archive.bench;
+
+import java.util.Random;
+
+import org.dcm4che.data.Attributes;
+import org.dcm4che.data.Tag;
+import org.dcm4che.data.UID;
+import org.dcm4che.data.VR;
+import org.dcm4che.util.UIDUtils;
+
+/**
+ * CT study with a configurable number of series and images of a
+ * configurable matrix size, all images sharing the same random pixel data.
+ * 
+ * @author Gunter Zeilinger <gunterze@gmail.com>
+ *
+ */
+class SyntheticStudy {
+
+    static final String SOP_CLASS_UID = UID.CTImageStorage;
+
+    private static final Random RANDOM = new Random();
+
+    final String patientID;
+    final String studyInstanceUID;
+    final String[] seriesInstanceUIDs;
+    final int instancesPerSeries;
+    private final Attributes studyAttrs;
+    private final byte[] pixelData;
+    private final int rows;
+    private final int columns;
+
+    SyntheticStudy(int numSeries, int instancesPerSeries, int rows,
+            int columns, byte[] pixelData) {
+        this.patientID = String.format("BENCH-%016X", RANDOM.nextLong());
+        this.studyInstanceUID = UIDUtils.createUID();
+        this.seriesInstanceUIDs = new String[numSeries];
+        for (int i = 0; i < numSeries; i++)
+            seriesInstanceUIDs[i] = UIDUtils.createUID();
+        this.instancesPerSeries = instancesPerSeries;
+        this.rows = rows;
+        this.columns = columns;
+        this.pixelData = pixelData;
+        this.studyAttrs = new Attributes();
+        studyAttrs.setString(Tag.PatientName, VR.PN, "BENCH^" + patientID);
+        studyAttrs.setString(Tag.PatientID, VR.LO, patientID);
+        studyAttrs.setString(Tag.PatientBirthDate, VR.DA, "19700101");
+        studyAttrs.setString(Tag.PatientSex, VR.CS, "O");
+        studyAttrs.setString(Tag.StudyInstanceUID, VR.UI, studyInstanceUID);
+        studyAttrs.setString(Tag.StudyDate, VR.DA, "20140101");
+        studyAttrs.setString(Tag.StudyTime, VR.TM, "120000");
+        studyAttrs.setString(Tag.AccessionNumber, VR.SH,
+                patientID.substring(6));
+        studyAttrs.setString(Tag.StudyID, VR.SH, "1");
+        studyAttrs.setString(Tag.StudyDescription, VR.LO, "BENCHMARK");
+        studyAttrs.setString(Tag.ReferringPhysicianName, VR.PN, "BENCH^REF");
+        studyAttrs.setString(Tag.Modality, VR.CS, "CT");
+    }
+
+    static byte[] randomPixelData(int rows, int columns) {
+        byte[] b = new byte[rows * columns * 2];
+        RANDOM.nextBytes(b);
+        // restrict to 12 bits stored
+        for (int i = 1; i < b.length; i += 2)
+            b[i] &= 0x0f;
+        return b;
+    }
+
+    int numberOfInstances() {
+        return seriesInstanceUIDs.length * instancesPerSeries;
+    }
+
+    Attributes instance(int series, int instance) {
+        Attributes attrs = new Attributes(studyAttrs.size() + 20);
+        attrs.addAll(studyAttrs);
+        attrs.setString(Tag.SOPClassUID, VR.UI, SOP_CLASS_UID);
+        attrs.setString(Tag.SOPInstanceUID, VR.UI, UIDUtils.createUID());
+        attrs.setString(Tag.ImageType, VR.CS, "ORIGINAL", "PRIMARY", "AXIAL");
+        attrs.setString(Tag.SeriesInstanceUID, VR.UI,
+                seriesInstanceUIDs[series]);
+        attrs.setInt(Tag.SeriesNumber, VR.IS, series + 1);
+        attrs.setInt(Tag.InstanceNumber, VR.IS, instance + 1);
+        attrs.setInt(Tag.SamplesPerPixel, VR.US, 1);
+        attrs.setString(Tag.PhotometricInterpretation, VR.CS, "MONOCHROME2");
+        attrs.setInt(Tag.Rows, VR.US, rows);
+        attrs.setInt(Tag.Columns, VR.US, columns);
+        attrs.setInt(Tag.BitsAllocated, VR.US, 16);
+        attrs.setInt(Tag.BitsStored, VR.US, 12);
+        attrs.setInt(Tag.HighBit, VR.US, 11);
+        attrs.setInt(Tag.PixelRepresentation, VR.US, 0);
+        attrs.setBytes(Tag.PixelData, VR.OW, pixelData);
+        return attrs;
+    }
+}
@@ -38,14 +38,17 @@
 
 package org.dcm4chee.archive.code.impl;
 
+import java.util.concurrent.Callable;
+
+import javax.ejb.EJB;
 import javax.ejb.Stateless;
+import javax.inject.Inject;
 import javax.persistence.EntityManager;
-import javax.persistence.NoResultException;
 import javax.persistence.PersistenceContext;
-import javax.persistence.TypedQuery;
 
 import org.dcm4chee.archive.code.CodeService;
 import org.dcm4chee.archive.entity.Code;
+import org.dcm4chee.archive.lock.ConstraintViolations;
 
 /**
  * @author Gunter Zeilinger <gunterze@gmail.com>
@@ -54,37 +57,50 @@ import org.dcm4chee.archive.entity.Code;
 @Stateless
 public class CodeServiceBean implements CodeService {
 
+    static final int MAX_RETRIES = 2;
+
     @PersistenceContext(unitName="dcm4chee-arc")
     private EntityManager em;
 
+    @Inject
+    private CodeCache cache;
+
+    @EJB
+    private CodeFinder finder;
+
     @Override
-    public Code findOrCreate(Code code) {
+    public Code findOrCreate(final Code code) {
         try {
-            Code result = findOrCreate(em, code);
-            return result;
+            CodeCache.Key key = new CodeCache.Key(code);
+            Long pk = cache.get(key);
+            if (pk != null) {
+                Code result = em.find(Code.class, pk);
+                if (result != null)
+                    return result;
+                // deleted or not visible in the snapshot of this transaction
+                cache.remove(key);
+            }
+            return em.getReference(Code.class,
+                    cache.findOrCreate(key, new Callable<Long>() {
+                        @Override
+                        public Long call() {
+                            return findOrCreatePk(code);
+                        }
+                    }));
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
     }
 
-    private Code findOrCreate(EntityManager em, Code code) {
-        try {
-            String codingSchemeVersion = code.getCodingSchemeVersion();
-            TypedQuery<Code> query = em.createNamedQuery(
-                    codingSchemeVersion == null
-                            ? Code.FIND_BY_CODE_VALUE_WITHOUT_SCHEME_VERSION
-                            : Code.FIND_BY_CODE_VALUE_WITH_SCHEME_VERSION,
-                        Code.class)
-                    .setParameter(1, code.getCodeValue())
-                    .setParameter(2, code.getCodingSchemeDesignator());
-            if (codingSchemeVersion != null)
-                query.setParameter(3, codingSchemeVersion);
-            return query.getSingleResult();
-        } catch (NoResultException e) {
-            em.persist(code);
-            em.flush();
-            em.refresh(code);
-            return code;
+    private long findOrCreatePk(Code code) {
+        for (int retry = 0;; retry++) {
+            try {
+                return finder.findOrCreate(code);
+            } catch (RuntimeException e) {
+                // inserted by a concurrent transaction, e.g. on another node
+                if (retry >= MAX_RETRIES || !ConstraintViolations.isCausedBy(e))
+                    throw e;
+            }
         }
     }
 
@@ -0,0 +1,306 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2011-2013
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+
+package org.dcm4chee.archive.compress.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.ejb.EJB;
+import javax.ejb.EJBException;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.jms.ConnectionFactory;
+import javax.jms.JMSContext;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.Queue;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.dcm4che.data.Attributes;
+import org.dcm4che.data.BulkData;
+import org.dcm4che.data.Tag;
+import org.dcm4che.imageio.codec.CompressionRule;
+import org.dcm4che.io.DicomInputStream;
+import org.dcm4che.io.DicomInputStream.IncludeBulkData;
+import org.dcm4che.net.ApplicationEntity;
+import org.dcm4che.util.TagUtils;
+import org.dcm4chee.archive.ArchiveService;
+import org.dcm4chee.archive.compress.CompressionService;
+import org.dcm4chee.archive.compress.DeferredCompressionService;
+import org.dcm4chee.archive.conf.ArchiveAEExtension;
+import org.dcm4chee.archive.digest.MessageDigests;
+import org.dcm4chee.archive.entity.FileRef;
+import org.dcm4chee.archive.store.StoreService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compresses stored objects outside of the association thread. Scheduled
+ * compressions are queued persistently in {@code queue/compress}, processed
+ * by {@link DeferredCompressionMDB} and limited to the number of available
+ * processors. If all processors are busy, the compression is queued again
+ * with a delay of {@value #BUSY_DELAY} ms, instead of blocking the MDB.
+ * The compressed file replaces the original file reference in one
+ * transaction. The original file is deleted {@value #DELETE_DELAY} ms
+ * later, so retrieves which already got the original file reference may
+ * still read it.
+ * 
+ * @author Gunter Zeilinger <gunterze@gmail.com>
+ *
+ */
+@ApplicationScoped
+public class DeferredCompressionServiceImpl implements DeferredCompressionService {
+
+    private static final Logger LOG =
+            LoggerFactory.getLogger(DeferredCompressionServiceImpl.class);
+
+    private static final String OBJECT_NAME =
+            "org.dcm4chee.archive:type=DeferredCompression";
+
+    static final long BUSY_DELAY = 1000L;
+
+    static final long DELETE_DELAY = 600000L;
+
+    @Resource(mappedName="java:/ConnectionFactory")
+    private ConnectionFactory connFactory;
+
+    @Resource(mappedName="java:/queue/compress")
+    private Queue compressQueue;
+
+    @EJB
+    private StoreService storeService;
+
+    @Inject
+    private CompressionService compressionService;
+
+    @Inject
+    private ArchiveService archiveService;
+
+    private DeferredCompressionStats stats;
+
+    @PostConstruct
+    public void init() {
+        stats = new DeferredCompressionStats(connFactory, compressQueue);
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(objectName))
+                server.unregisterMBean(objectName);
+            server.registerMBean(stats, objectName);
+        } catch (Exception e) {
+            LOG.warn("Failed to register Deferred Compression MBean:", e);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        try {
+            ManagementFactory.getPlatformMBeanServer()
+                    .unregisterMBean(new ObjectName(OBJECT_NAME));
+        } catch (Exception e) {
+            LOG.info("Failed to unregister Deferred Compression MBean:", e);
+        }
+    }
+
+    @Override
+    public void scheduleCompression(String localAET, String sourceAET,
+            long fileRefPk) {
+        try {
+            scheduleCompression(localAET, sourceAET, fileRefPk, 0L);
+        } catch (Exception e) {
+            LOG.warn("Failed to schedule compression of file[pk={}] - keep it uncompressed:",
+                    fileRefPk, e);
+        }
+    }
+
+    private void scheduleCompression(String localAET, String sourceAET,
+            long fileRefPk, long delay) {
+        try (JMSContext jmsContext = connFactory.createContext()) {
+            jmsContext.createProducer()
+                .setProperty("LocalAET", localAET)
+                .setProperty("SourceAET", sourceAET)
+                .setDeliveryDelay(delay)
+                .send(compressQueue, Long.valueOf(fileRefPk));
+        }
+    }
+
+    private void scheduleDeletion(long replacedFileRefPk, Path path) {
+        try (JMSContext jmsContext = connFactory.createContext()) {
+            jmsContext.createProducer()
+                .setProperty("DeletePath", path.toString())
+                .setDeliveryDelay(DELETE_DELAY)
+                .send(compressQueue, Long.valueOf(replacedFileRefPk));
+        }
+    }
+
+    /**
+     * Processes a scheduled compression or deletion of a replaced file. A
+     * failed compression is thrown, so the message is redelivered.
+     */
+    public void onMessage(Message msg) throws JMSException {
+        long fileRefPk = msg.getBody(Long.class);
+        String deletePath = msg.getStringProperty("DeletePath");
+        if (deletePath != null) {
+            deleteReplaced(fileRefPk, Paths.get(deletePath));
+            return;
+        }
+        String localAET = msg.getStringProperty("LocalAET");
+        String sourceAET = msg.getStringProperty("SourceAET");
+        if (!stats.tryBegin()) {
+            scheduleCompression(localAET, sourceAET, fileRefPk, BUSY_DELAY);
+            return;
+        }
+        try {
+            if (compress(localAET, sourceAET, fileRefPk))
+                stats.compressed();
+            else
+                stats.skipped();
+        } catch (Exception e) {
+            stats.failed();
+            LOG.warn("Failed to compress file[pk={}] - redeliver:",
+                    fileRefPk, e);
+            throw new EJBException(e);
+        } finally {
+            stats.end();
+        }
+    }
+
+    private void deleteReplaced(long fileRefPk, Path path) {
+        if (storeService.findFileRef(fileRefPk) != null) {
+            // replacement rolled back
+            LOG.info("file[pk={}] was not replaced - keep {}", fileRefPk, path);
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            LOG.warn("Failed to delete uncompressed {}:", path, e);
+        }
+    }
+
+    private boolean compress(String localAET, String sourceAET, long fileRefPk)
+            throws IOException, NoSuchAlgorithmException {
+        ApplicationEntity ae = archiveService.getDevice()
+                .getApplicationEntity(localAET);
+        ArchiveAEExtension aeExt = ae != null
+                ? ae.getAEExtension(ArchiveAEExtension.class)
+                : null;
+        if (aeExt == null) {
+            LOG.info("No ArchiveAEExtension configured for {}", localAET);
+            return false;
+        }
+        FileRef fileRef = storeService.findFileRef(fileRefPk);
+        if (fileRef == null) {
+            LOG.info("file[pk={}] no longer exists", fileRefPk);
+            return false;
+        }
+        Path fsPath = fileRef.getFileSystem().getPath();
+        Path srcPath = fsPath.resolve(
+                fileRef.getFilePath().replace('/', File.separatorChar));
+        File srcFile = srcPath.toFile();
+        Attributes fmi;
+        Attributes attrs;
+        try (DicomInputStream in = new DicomInputStream(srcFile)) {
+            in.setURI(srcFile.toURI().toString());
+            in.setIncludeBulkData(IncludeBulkData.URI);
+            attrs = in.readDataset(-1, -1);
+            fmi = in.getFileMetaInformation();
+        }
+        if (!(attrs.getValue(Tag.PixelData) instanceof BulkData))
+            return false;
+
+        CompressionRule compressionRule = aeExt.getCompressionRules()
+                .findCompressionRule(sourceAET, attrs);
+        if (compressionRule == null)
+            return false;
+
+        MessageDigest digest =
+                MessageDigests.getInstance(aeExt.getDigestAlgorithm());
+        Path destPath = createFile(srcPath);
+        try {
+            compressionService.compress(compressionRule, srcFile,
+                    destPath.toFile(), digest, fmi, attrs);
+            FileRef compressed = new FileRef(
+                    fileRef.getFileSystem(),
+                    fsPath.relativize(destPath).toString()
+                        .replace(File.separatorChar, '/'),
+                    fmi.getString(Tag.TransferSyntaxUID),
+                    Files.size(destPath),
+                    digest != null
+                        ? TagUtils.toHexString(digest.digest())
+                        : null);
+            if (!storeService.replaceFileRef(fileRefPk, compressed)) {
+                Files.deleteIfExists(destPath);
+                return false;
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(destPath);
+            throw e;
+        }
+        try {
+            scheduleDeletion(fileRefPk, srcPath);
+        } catch (RuntimeException e) {
+            LOG.warn("Failed to schedule deletion of uncompressed {}:",
+                    srcPath, e);
+        }
+        return true;
+    }
+
+    private Path createFile(Path path) throws IOException {
+        for (;;) {
+            path = path.resolveSibling(path.getFileName().toString() + '-');
+            try {
+                return Files.createFile(path);
+            } catch (FileAlreadyExistsException e) {
+            }
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2011-2013
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+
+package org.dcm4chee.archive.compress.impl;
+
+import java.util.Enumeration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.jms.ConnectionFactory;
+import javax.jms.JMSContext;
+import javax.jms.Queue;
+import javax.jms.QueueBrowser;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Limits the number of concurrent deferred compressions to the number of
+ * available processors without blocking the caller and counts their
+ * outcome.
+ * 
+ * @author Gunter Zeilinger <gunterze@gmail.com>
+ *
+ */
+class DeferredCompressionStats implements DeferredCompressionStatsMBean {
+
+    private static final Logger LOG =
+            LoggerFactory.getLogger(DeferredCompressionStats.class);
+
+    private final ConnectionFactory connFactory;
+    private final Queue queue;
+    private final int maxInProgress =
+            Runtime.getRuntime().availableProcessors();
+    private final Semaphore permits = new Semaphore(maxInProgress);
+    private final AtomicInteger inProgress = new AtomicInteger();
+    private final AtomicLong compressed = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    DeferredCompressionStats(ConnectionFactory connFactory, Queue queue) {
+        this.connFactory = connFactory;
+        this.queue = queue;
+    }
+
+    /**
+     * Returns {@code false} without waiting, if the maximal number of
+     * compressions are already in progress.
+     */
+    boolean tryBegin() {
+        if (!permits.tryAcquire())
+            return false;
+        inProgress.incrementAndGet();
+        return true;
+    }
+
+    void end() {
+        inProgress.decrementAndGet();
+        permits.release();
+    }
+
+    void compressed() {
+        compressed.incrementAndGet();
+    }
+
+    void skipped() {
+        skipped.incrementAndGet();
+    }
+
+    void failed() {
+        failed.incrementAndGet();
+    }
+
+    @Override
+    public int getBacklog() {
+        try (JMSContext jmsContext = connFactory.createContext();
+                QueueBrowser browser = jmsContext.createBrowser(queue)) {
+            int count = 0;
+            for (Enumeration<?> e = browser.getEnumeration(); e.hasMoreElements();
+                    e.nextElement())
+                count++;
+            return count;
+        } catch (Exception e) {
+            LOG.info("Failed to browse {}: {}", queue, e);
+            return -1;
+        }
+    }
+
+    @Override
+    public int getInProgress() {
+        return inProgress.get();
+    }
+
+    @Override
+    public int getMaxInProgress() {
+        return maxInProgress;
+    }
+
+    @Override
+    public long getCompressed() {
+        return compressed.get();
+    }
+
+    @Override
+    public long getSkipped() {
+        return skipped.get();
+    }
+
+    @Override
+    public long getFailed() {
+        return failed.get();
+    }
+}
@@ -38,6 +38,7 @@
 
 package org.dcm4chee.archive.conf;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.EnumSet;
@@ -77,6 +78,8 @@ public class ArchiveAEExtension extends AEExtension {
     private String digestAlgorithm;
     private String spoolDirectoryPath;
     private AttributesFormat storageFilePathFormat;
+    private transient volatile CompiledAttributesFormat
+            compiledStorageFilePathFormat;
     private boolean storeOriginalAttributes;
     private boolean suppressWarningCoercionOfDataElements;
     private boolean preserveSpoolFileOnFailure;
@@ -101,6 +104,11 @@ public class ArchiveAEExtension extends AEExtension {
     private String pixManagerApplication;
     private String pixConsumerApplication;
     private int qidoMaxNumberOfResults;
+    private boolean deferredCompression;
+    private FileSystemSelectionStrategy fileSystemSelectionStrategy =
+            FileSystemSelectionStrategy.ROUND_ROBIN;
+    private int spoolMemoryThreshold;
+    private int queryFetchSize;
 
     public AttributeCoercion getAttributeCoercion(String sopClass,
             Dimse dimse, Role role, String aeTitle) {
@@ -226,6 +234,17 @@ public class ArchiveAEExtension extends AEExtension {
 
     public void setStorageFilePathFormat(AttributesFormat storageFilePathFormat) {
         this.storageFilePathFormat = storageFilePathFormat;
+        this.compiledStorageFilePathFormat = storageFilePathFormat != null
+                ? new CompiledAttributesFormat(storageFilePathFormat.toString())
+                : null;
+    }
+
+    public CompiledAttributesFormat getCompiledStorageFilePathFormat() {
+        CompiledAttributesFormat compiled = compiledStorageFilePathFormat;
+        if (compiled == null && storageFilePathFormat != null)
+            compiledStorageFilePathFormat = compiled =
+                new CompiledAttributesFormat(storageFilePathFormat.toString());
+        return compiled;
     }
 
     public Templates getAttributeCoercionTemplates(String cuid, Dimse dimse,
@@ -237,6 +256,16 @@ public class ArchiveAEExtension extends AEExtension {
                 : null;
     }
 
+    public AttributesCoercion getAttributesCoercion(String cuid, Dimse dimse,
+            TransferCapability.Role role, String aet)
+            throws IOException, TransformerConfigurationException {
+        AttributeCoercion ac = getAttributeCoercion(cuid, dimse, role, aet);
+        return ac != null
+                ? AttributesCoercionCache.getDefault().get(
+                        StringUtils.replaceSystemProperties(ac.getURI()))
+                : null;
+    }
+
     public boolean isStoreOriginalAttributes() {
         return storeOriginalAttributes;
     }
@@ -411,6 +440,39 @@ public class ArchiveAEExtension extends AEExtension {
         this.qidoMaxNumberOfResults = qidoMaxNumberOfResults;
     }
 
+    public boolean isDeferredCompression() {
+        return deferredCompression;
+    }
+
+    public void setDeferredCompression(boolean deferredCompression) {
+        this.deferredCompression = deferredCompression;
+    }
+
+    public FileSystemSelectionStrategy getFileSystemSelectionStrategy() {
+        return fileSystemSelectionStrategy;
+    }
+
+    public void setFileSystemSelectionStrategy(
+            FileSystemSelectionStrategy fileSystemSelectionStrategy) {
+        this.fileSystemSelectionStrategy = fileSystemSelectionStrategy;
+    }
+
+    public int getSpoolMemoryThreshold() {
+        return spoolMemoryThreshold;
+    }
+
+    public void setSpoolMemoryThreshold(int spoolMemoryThreshold) {
+        this.spoolMemoryThreshold = spoolMemoryThreshold;
+    }
+
+    public int getQueryFetchSize() {
+        return queryFetchSize;
+    }
+
+    public void setQueryFetchSize(int queryFetchSize) {
+        this.queryFetchSize = queryFetchSize;
+    }
+
     @Override
     public void reconfigure(AEExtension from) {
         ArchiveAEExtension arcae = (ArchiveAEExtension) from;
@@ -443,6 +505,10 @@ public class ArchiveAEExtension extends AEExtension {
         setRemotePIXManagerApplication(arcae.pixManagerApplication);
         setLocalPIXConsumerApplication(arcae.pixConsumerApplication);
         setQIDOMaxNumberOfResults(arcae.qidoMaxNumberOfResults);
+        setDeferredCompression(arcae.deferredCompression);
+        setFileSystemSelectionStrategy(arcae.fileSystemSelectionStrategy);
+        setSpoolMemoryThreshold(arcae.spoolMemoryThreshold);
+        setQueryFetchSize(arcae.queryFetchSize);
         setStoreDuplicates(arcae.getStoreDuplicates());
         setAttributeCoercions(arcae.getAttributeCoercions());
         setCompressionRules(arcae.getCompressionRules());
@@ -476,6 +542,7 @@ public class ArchiveAEExtension extends AEExtension {
         queryParam.setShowRejectedInstances(showRejectedInstances);
         queryParam.setReturnOtherPatientIDs(returnOtherPatientIDs);
         queryParam.setReturnOtherPatientNames(returnOtherPatientNames);
+        queryParam.setFetchSize(queryFetchSize);
 
         return queryParam;
     }
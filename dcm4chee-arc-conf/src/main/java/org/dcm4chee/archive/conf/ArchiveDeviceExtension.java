@@ -55,6 +55,14 @@ public class ArchiveDeviceExtension extends DeviceExtension {
 
     private static final long serialVersionUID = -3611223780276386740L;
 
+    public static final int DEF_STORE_BATCH_DELAY = 10;
+    public static final int DEF_UID_CACHE_MAX_SIZE = 1000;
+    public static final int DEF_UID_CACHE_TIMEOUT = 60;
+    public static final int DEF_FILE_SYSTEM_CHECK_INTERVAL = 60;
+    public static final int DEF_FILE_SYSTEM_MIN_FREE_SPACE = 1024;
+    public static final int DEF_FILE_SYSTEM_NEXT_MIN_FREE_SPACE = 2048;
+    public static final int DEF_SPOOL_MEMORY_LIMIT = 64;
+
     private Code incorrectWorklistEntrySelectedCode;
     private Code rejectedForQualityReasonsCode;
     private Code rejectedForPatientSafetyReasonsCode;
@@ -65,6 +73,17 @@ public class ArchiveDeviceExtension extends DeviceExtension {
             new AttributeFilter[Entity.values().length];
     private int configurationStaleTimeout;
     private int wadoAttributesStaleTimeout;
+    private int storeBatchSize;
+    private int storeBatchDelay = DEF_STORE_BATCH_DELAY;
+    private int uidCacheMaxSize = DEF_UID_CACHE_MAX_SIZE;
+    private int uidCacheTimeout = DEF_UID_CACHE_TIMEOUT;
+    private int fileSystemCheckInterval = DEF_FILE_SYSTEM_CHECK_INTERVAL;
+    private int fileSystemMinFreeSpace = DEF_FILE_SYSTEM_MIN_FREE_SPACE;
+    private boolean compressEncodedAttributes;
+    private int instanceUIDFilterCapacity;
+    private int spoolMemoryLimit = DEF_SPOOL_MEMORY_LIMIT;
+    private int fileSystemNextMinFreeSpace = DEF_FILE_SYSTEM_NEXT_MIN_FREE_SPACE;
+    private boolean instanceUIDFilterSkipLookup;
 
     private transient FuzzyStr fuzzyStr;
     private transient TemplatesCache templatesCache;
@@ -152,6 +171,38 @@ public class ArchiveDeviceExtension extends DeviceExtension {
         this.wadoAttributesStaleTimeout = wadoAttributesStaleTimeout;
     }
 
+    public int getStoreBatchSize() {
+        return storeBatchSize;
+    }
+
+    public void setStoreBatchSize(int storeBatchSize) {
+        this.storeBatchSize = storeBatchSize;
+    }
+
+    public int getStoreBatchDelay() {
+        return storeBatchDelay;
+    }
+
+    public void setStoreBatchDelay(int storeBatchDelay) {
+        this.storeBatchDelay = storeBatchDelay;
+    }
+
+    public int getUIDCacheMaxSize() {
+        return uidCacheMaxSize;
+    }
+
+    public void setUIDCacheMaxSize(int uidCacheMaxSize) {
+        this.uidCacheMaxSize = uidCacheMaxSize;
+    }
+
+    public int getUIDCacheTimeout() {
+        return uidCacheTimeout;
+    }
+
+    public void setUIDCacheTimeout(int uidCacheTimeout) {
+        this.uidCacheTimeout = uidCacheTimeout;
+    }
+
     public void clearTemplatesCache() {
         TemplatesCache cache = templatesCache;
         if (cache != null)
@@ -177,6 +228,62 @@ public class ArchiveDeviceExtension extends DeviceExtension {
         return attributeFilters;
     }
 
+    public int getFileSystemCheckInterval() {
+        return fileSystemCheckInterval;
+    }
+
+    public void setFileSystemCheckInterval(int fileSystemCheckInterval) {
+        this.fileSystemCheckInterval = fileSystemCheckInterval;
+    }
+
+    public int getFileSystemMinFreeSpace() {
+        return fileSystemMinFreeSpace;
+    }
+
+    public void setFileSystemMinFreeSpace(int fileSystemMinFreeSpace) {
+        this.fileSystemMinFreeSpace = fileSystemMinFreeSpace;
+    }
+
+    public boolean isCompressEncodedAttributes() {
+        return compressEncodedAttributes;
+    }
+
+    public void setCompressEncodedAttributes(boolean compressEncodedAttributes) {
+        this.compressEncodedAttributes = compressEncodedAttributes;
+    }
+
+    public int getInstanceUIDFilterCapacity() {
+        return instanceUIDFilterCapacity;
+    }
+
+    public void setInstanceUIDFilterCapacity(int instanceUIDFilterCapacity) {
+        this.instanceUIDFilterCapacity = instanceUIDFilterCapacity;
+    }
+
+    public int getSpoolMemoryLimit() {
+        return spoolMemoryLimit;
+    }
+
+    public void setSpoolMemoryLimit(int spoolMemoryLimit) {
+        this.spoolMemoryLimit = spoolMemoryLimit;
+    }
+
+    public int getFileSystemNextMinFreeSpace() {
+        return fileSystemNextMinFreeSpace;
+    }
+
+    public void setFileSystemNextMinFreeSpace(int fileSystemNextMinFreeSpace) {
+        this.fileSystemNextMinFreeSpace = fileSystemNextMinFreeSpace;
+    }
+
+    public boolean isInstanceUIDFilterSkipLookup() {
+        return instanceUIDFilterSkipLookup;
+    }
+
+    public void setInstanceUIDFilterSkipLookup(boolean instanceUIDFilterSkipLookup) {
+        this.instanceUIDFilterSkipLookup = instanceUIDFilterSkipLookup;
+    }
+
     @Override
     public void reconfigure(DeviceExtension from) {
         ArchiveDeviceExtension arcdev = (ArchiveDeviceExtension) from;
@@ -187,6 +294,18 @@ public class ArchiveDeviceExtension extends DeviceExtension {
         setDataRetentionPeriodExpiredCode(arcdev.getDataRetentionPeriodExpiredCode());
         setFuzzyAlgorithmClass(arcdev.fuzzyAlgorithmClass);
         setConfigurationStaleTimeout(arcdev.configurationStaleTimeout);
+        setWadoAttributesStaleTimeout(arcdev.wadoAttributesStaleTimeout);
+        setStoreBatchSize(arcdev.storeBatchSize);
+        setStoreBatchDelay(arcdev.storeBatchDelay);
+        setUIDCacheMaxSize(arcdev.uidCacheMaxSize);
+        setUIDCacheTimeout(arcdev.uidCacheTimeout);
+        setFileSystemCheckInterval(arcdev.fileSystemCheckInterval);
+        setFileSystemMinFreeSpace(arcdev.fileSystemMinFreeSpace);
+        setCompressEncodedAttributes(arcdev.compressEncodedAttributes);
+        setInstanceUIDFilterCapacity(arcdev.instanceUIDFilterCapacity);
+        setSpoolMemoryLimit(arcdev.spoolMemoryLimit);
+        setFileSystemNextMinFreeSpace(arcdev.fileSystemNextMinFreeSpace);
+        setInstanceUIDFilterSkipLookup(arcdev.instanceUIDFilterSkipLookup);
         System.arraycopy(arcdev.attributeFilters, 0,
                 attributeFilters, 0, attributeFilters.length);
     }
@@ -205,6 +324,9 @@ public class ArchiveDeviceExtension extends DeviceExtension {
                 dataRetentionPeriodExpiredCode);
         storeParam.setFuzzyStr(getFuzzyStr());
         storeParam.setAttributeFilters(attributeFilters);
+        storeParam.setUIDCacheMaxSize(uidCacheMaxSize);
+        storeParam.setUIDCacheTimeout(uidCacheTimeout);
+        storeParam.setInstanceUIDFilterSkipLookup(instanceUIDFilterSkipLookup);
         return storeParam;
         
     }
@@ -0,0 +1,313 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2011-2013
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4chee.archive.conf;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.dcm4che.data.Attributes;
+import org.dcm4che.data.ElementDictionary;
+import org.dcm4che.data.VR;
+import org.dcm4che.util.StringUtils;
+
+/**
+ * Declarative attribute coercion, compiled into direct operations on
+ * {@link Attributes}, as fast alternative to a XSL transformation. Each
+ * line specifies one rule:
+ * 
+ * <pre>
+ * [if|unless &lt;tag&gt;] set &lt;tag&gt; &lt;value&gt;[\&lt;value&gt;...]
+ * [if|unless &lt;tag&gt;] copy &lt;source-tag&gt; &lt;tag&gt;
+ * [if|unless &lt;tag&gt;] prefix &lt;tag&gt; &lt;prefix&gt;
+ * [if|unless &lt;tag&gt;] suffix &lt;tag&gt; &lt;suffix&gt;
+ * [if|unless &lt;tag&gt;] map &lt;tag&gt; &lt;from&gt;=&lt;to&gt; ...
+ * [if|unless &lt;tag&gt;] nullify &lt;tag&gt;
+ * </pre>
+ * 
+ * Tags are specified by keyword or as 8 hex digits. Conditions test if the
+ * received attribute has a value; values are read from attributes coerced
+ * by preceding rules, if any. Lines starting with {@code #} are ignored.
+ * Coercions of nested data sets still require XSLT.
+ * 
+ * @author Gunter Zeilinger <gunterze@gmail.com>
+ *
+ */
+public final class CompiledAttributesCoercion implements AttributesCoercion {
+
+    private final Rule[] rules;
+
+    public CompiledAttributesCoercion(Reader reader) throws IOException {
+        BufferedReader in = new BufferedReader(reader);
+        List<Rule> list = new ArrayList<Rule>();
+        String line;
+        int lineNumber = 0;
+        while ((line = in.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.charAt(0) == '#')
+                continue;
+            try {
+                list.add(parseRule(line));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(
+                        "line " + lineNumber + ": " + e.getMessage());
+            }
+        }
+        this.rules = list.toArray(new Rule[list.size()]);
+    }
+
+    public static CompiledAttributesCoercion load(String uri)
+            throws IOException {
+        try (Reader reader = new InputStreamReader(
+                new URL(uri).openStream(), "UTF-8")) {
+            return new CompiledAttributesCoercion(reader);
+        }
+    }
+
+    @Override
+    public Attributes coerce(Attributes attrs) {
+        Attributes coerced = new Attributes();
+        for (Rule rule : rules)
+            if (rule.matches(attrs))
+                rule.apply(attrs, coerced);
+        return coerced;
+    }
+
+    private static Rule parseRule(String line) {
+        String[] ss = line.split("\\s+", 2);
+        int condTag = 0;
+        boolean condValue = false;
+        if (ss[0].equals("if") || ss[0].equals("unless")) {
+            condValue = ss[0].equals("if");
+            ss = next(ss, line);
+            condTag = toTag(ss[0]);
+            ss = next(ss, line);
+        }
+        String op = ss[0];
+        ss = next(ss, line);
+        int tag = toTag(ss[0]);
+        String arg = ss.length > 1 ? ss[1] : null;
+        Rule rule;
+        switch (op) {
+        case "set":
+            rule = new SetValue(tag, StringUtils.split(required(arg, line), '\\'));
+            break;
+        case "copy":
+            rule = new Copy(toTag(required(arg, line)), tag);
+            break;
+        case "prefix":
+            rule = new Affix(tag, required(arg, line), "");
+            break;
+        case "suffix":
+            rule = new Affix(tag, "", required(arg, line));
+            break;
+        case "map":
+            rule = new MapValue(tag, toMap(required(arg, line)));
+            break;
+        case "nullify":
+            rule = new Nullify(tag);
+            break;
+        default:
+            throw new IllegalArgumentException("unknown operation: " + op);
+        }
+        rule.condTag = condTag;
+        rule.condValue = condValue;
+        if (!(rule instanceof Nullify) && !rule.vr.isStringType())
+            throw new IllegalArgumentException(
+                    "not a string attribute: " + ss[0]);
+        return rule;
+    }
+
+    private static String[] next(String[] ss, String line) {
+        if (ss.length < 2)
+            throw new IllegalArgumentException("incomplete rule: " + line);
+        return ss[1].split("\\s+", 2);
+    }
+
+    private static String required(String arg, String line) {
+        if (arg == null)
+            throw new IllegalArgumentException("incomplete rule: " + line);
+        return arg;
+    }
+
+    private static int toTag(String s) {
+        int tag = ElementDictionary.tagForKeyword(s, null);
+        if (tag != -1)
+            return tag;
+        try {
+            if (s.length() == 8)
+                return (int) Long.parseLong(s, 16);
+        } catch (NumberFormatException e) {}
+        throw new IllegalArgumentException("invalid tag: " + s);
+    }
+
+    private static Map<String, String> toMap(String s) {
+        Map<String, String> map = new HashMap<String, String>();
+        for (String entry : s.split("\\s+")) {
+            int index = entry.indexOf('=');
+            if (index <= 0)
+                throw new IllegalArgumentException("invalid mapping: " + entry);
+            map.put(entry.substring(0, index), entry.substring(index + 1));
+        }
+        return map;
+    }
+
+    private static abstract class Rule {
+        final int tag;
+        final VR vr;
+        int condTag;
+        boolean condValue;
+
+        Rule(int tag) {
+            this.tag = tag;
+            this.vr = ElementDictionary.vrOf(tag, null);
+        }
+
+        boolean matches(Attributes attrs) {
+            return condTag == 0 || attrs.containsValue(condTag) == condValue;
+        }
+
+        abstract void apply(Attributes attrs, Attributes coerced);
+
+        static String[] valuesOf(int tag, Attributes attrs,
+                Attributes coerced) {
+            return coerced.contains(tag)
+                    ? coerced.getStrings(tag)
+                    : attrs.getStrings(tag);
+        }
+    }
+
+    private static final class SetValue extends Rule {
+        final String[] values;
+
+        SetValue(int tag, String[] values) {
+            super(tag);
+            this.values = values;
+        }
+
+        @Override
+        void apply(Attributes attrs, Attributes coerced) {
+            coerced.setString(tag, vr, values);
+        }
+    }
+
+    private static final class Copy extends Rule {
+        final int srcTag;
+
+        Copy(int srcTag, int tag) {
+            super(tag);
+            this.srcTag = srcTag;
+        }
+
+        @Override
+        void apply(Attributes attrs, Attributes coerced) {
+            String[] values = valuesOf(srcTag, attrs, coerced);
+            if (values != null && values.length > 0)
+                coerced.setString(tag, vr, values);
+        }
+    }
+
+    private static final class Affix extends Rule {
+        final String prefix;
+        final String suffix;
+
+        Affix(int tag, String prefix, String suffix) {
+            super(tag);
+            this.prefix = prefix;
+            this.suffix = suffix;
+        }
+
+        @Override
+        void apply(Attributes attrs, Attributes coerced) {
+            String[] values = valuesOf(tag, attrs, coerced);
+            if (values == null || values.length == 0)
+                return;
+
+            String[] affixed = new String[values.length];
+            for (int i = 0; i < values.length; i++)
+                affixed[i] = prefix + values[i] + suffix;
+            coerced.setString(tag, vr, affixed);
+        }
+    }
+
+    private static final class MapValue extends Rule {
+        final Map<String, String> map;
+
+        MapValue(int tag, Map<String, String> map) {
+            super(tag);
+            this.map = map;
+        }
+
+        @Override
+        void apply(Attributes attrs, Attributes coerced) {
+            String[] values = valuesOf(tag, attrs, coerced);
+            if (values == null || values.length == 0)
+                return;
+
+            String[] mapped = new String[values.length];
+            boolean changed = false;
+            for (int i = 0; i < values.length; i++) {
+                String value = map.get(values[i]);
+                changed |= value != null;
+                mapped[i] = value != null ? value : values[i];
+            }
+            if (changed)
+                coerced.setString(tag, vr, mapped);
+        }
+    }
+
+    private static final class Nullify extends Rule {
+
+        Nullify(int tag) {
+            super(tag);
+        }
+
+        @Override
+        void apply(Attributes attrs, Attributes coerced) {
+            coerced.setNull(tag, vr);
+        }
+    }
+}
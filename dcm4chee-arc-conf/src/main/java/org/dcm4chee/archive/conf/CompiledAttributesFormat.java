@@ -0,0 +1,304 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2011-2013
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+
+package org.dcm4chee.archive.conf;
+
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.dcm4che.data.Attributes;
+import org.dcm4che.data.Sequence;
+import org.dcm4che.util.AttributesFormat;
+import org.dcm4che.util.TagUtils;
+
+/**
+ * Immutable, thread-safe alternative to {@link AttributesFormat}, compiling
+ * the pattern once into a sequence of segments. Supports literal text,
+ * {@code {now,date|time,<pattern>}} and {@code {<tag>[/<tag>...][,type]}}
+ * with type {@code hash}, {@code rnd}, {@code uuid} or
+ * {@code date|time,<pattern>}. Quotes in literal text are interpreted as
+ * by {@link java.text.MessageFormat}. Other patterns are formatted by a
+ * {@link AttributesFormat} instance per thread.
+ * 
+ * @author Gunter Zeilinger <gunterze@gmail.com>
+ *
+ */
+public final class CompiledAttributesFormat {
+
+    private final String pattern;
+    private final Segment[] segments;
+    private final ThreadLocal<AttributesFormat> fallback;
+
+    public CompiledAttributesFormat(String pattern) {
+        this.pattern = pattern;
+        Segment[] segments;
+        try {
+            segments = compile(pattern);
+        } catch (RuntimeException e) {
+            // throws IllegalArgumentException, if the pattern is invalid
+            new AttributesFormat(pattern);
+            segments = null;
+        }
+        this.segments = segments;
+        this.fallback = segments == null
+                ? new ThreadLocal<AttributesFormat>() {
+                    @Override
+                    protected AttributesFormat initialValue() {
+                        return new AttributesFormat(
+                                CompiledAttributesFormat.this.pattern);
+                    }
+                }
+                : null;
+    }
+
+    public String format(Attributes attrs) {
+        if (segments == null)
+            return fallback.get().format(attrs);
+
+        Date now = new Date();
+        StringBuilder sb = new StringBuilder(pattern.length() + 32);
+        for (Segment segment : segments)
+            segment.appendTo(sb, attrs, now);
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return pattern;
+    }
+
+    private static Segment[] compile(String pattern) {
+        List<Segment> segments = new ArrayList<Segment>();
+        StringBuilder text = new StringBuilder();
+        boolean quoted = false;
+        int len = pattern.length();
+        for (int i = 0; i < len; i++) {
+            char ch = pattern.charAt(i);
+            switch (ch) {
+            case '\'':
+                // '' is a single quote, inside or outside quoted text;
+                // an unterminated quote extends to the end of the pattern
+                if (i + 1 < len && pattern.charAt(i + 1) == '\'') {
+                    text.append('\'');
+                    i++;
+                } else {
+                    quoted = !quoted;
+                }
+                break;
+            case '{':
+                // AttributesFormat does not respect quotes around braces
+                if (quoted)
+                    throw new UnsupportedOperationException(pattern);
+                int close = pattern.indexOf('}', i + 1);
+                if (close < 0)
+                    throw new UnsupportedOperationException(pattern);
+                if (text.length() > 0) {
+                    segments.add(new Text(text.toString()));
+                    text.setLength(0);
+                }
+                segments.add(placeholder(pattern.substring(i + 1, close)));
+                i = close;
+                break;
+            case '}':
+                throw new UnsupportedOperationException(pattern);
+            default:
+                text.append(ch);
+            }
+        }
+        if (text.length() > 0)
+            segments.add(new Text(text.toString()));
+        return segments.toArray(new Segment[segments.size()]);
+    }
+
+    private static Segment placeholder(String s) {
+        if (s.indexOf('{') >= 0)
+            throw new UnsupportedOperationException(s);
+
+        String[] ss = s.split(",", 3);
+        String name = ss[0].trim();
+        String type = ss.length > 1 ? ss[1].trim() : "";
+        String style = ss.length > 2 ? ss[2] : null;
+        boolean now = name.equals("now");
+        int[] tagPath = now ? null : tagPath(name);
+        switch (type) {
+        case "":
+            if (now)
+                throw new UnsupportedOperationException(s);
+            return new Value(tagPath);
+        case "hash":
+            if (now)
+                throw new UnsupportedOperationException(s);
+            return new Hash(tagPath);
+        case "rnd":
+            return new Random();
+        case "uuid":
+            return new RandomUUID();
+        case "date":
+        case "time":
+            if (style == null)
+                throw new UnsupportedOperationException(s);
+            return new DateValue(tagPath, style);
+        default:
+            throw new UnsupportedOperationException(s);
+        }
+    }
+
+    private static int[] tagPath(String s) {
+        String[] ss = s.split("/");
+        int[] tagPath = new int[ss.length];
+        for (int i = 0; i < ss.length; i++)
+            try {
+                tagPath[i] = (int) Long.parseLong(ss[i].trim(), 16);
+            } catch (NumberFormatException e) {
+                throw new UnsupportedOperationException(s);
+            }
+        return tagPath;
+    }
+
+    private static Attributes itemOf(Attributes attrs, int[] tagPath) {
+        for (int i = 0, n = tagPath.length - 1; attrs != null && i < n; i++) {
+            Sequence seq = attrs.getSequence(tagPath[i]);
+            attrs = seq != null && !seq.isEmpty() ? seq.get(0) : null;
+        }
+        return attrs;
+    }
+
+    private static String stringOf(Attributes attrs, int[] tagPath) {
+        Attributes item = itemOf(attrs, tagPath);
+        return item != null
+                ? item.getString(tagPath[tagPath.length - 1])
+                : null;
+    }
+
+    private interface Segment {
+        void appendTo(StringBuilder sb, Attributes attrs, Date now);
+    }
+
+    private static final class Text implements Segment {
+        private final String text;
+
+        Text(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public void appendTo(StringBuilder sb, Attributes attrs, Date now) {
+            sb.append(text);
+        }
+    }
+
+    private static final class Value implements Segment {
+        private final int[] tagPath;
+
+        Value(int[] tagPath) {
+            this.tagPath = tagPath;
+        }
+
+        @Override
+        public void appendTo(StringBuilder sb, Attributes attrs, Date now) {
+            sb.append(stringOf(attrs, tagPath));
+        }
+    }
+
+    private static final class Hash implements Segment {
+        private final int[] tagPath;
+
+        Hash(int[] tagPath) {
+            this.tagPath = tagPath;
+        }
+
+        @Override
+        public void appendTo(StringBuilder sb, Attributes attrs, Date now) {
+            String s = stringOf(attrs, tagPath);
+            sb.append(s != null ? TagUtils.toHexString(s.hashCode()) : null);
+        }
+    }
+
+    private static final class Random implements Segment {
+
+        @Override
+        public void appendTo(StringBuilder sb, Attributes attrs, Date now) {
+            sb.append(TagUtils.toHexString(
+                    ThreadLocalRandom.current().nextInt()));
+        }
+    }
+
+    private static final class RandomUUID implements Segment {
+
+        @Override
+        public void appendTo(StringBuilder sb, Attributes attrs, Date now) {
+            sb.append(UUID.randomUUID());
+        }
+    }
+
+    private static final class DateValue implements Segment {
+        private final int[] tagPath;
+        private final ThreadLocal<DateFormat> format;
+
+        DateValue(int[] tagPath, final String style) {
+            this.tagPath = tagPath;
+            new SimpleDateFormat(style); // validate pattern
+            this.format = new ThreadLocal<DateFormat>() {
+                @Override
+                protected DateFormat initialValue() {
+                    return new SimpleDateFormat(style);
+                }
+            };
+        }
+
+        @Override
+        public void appendTo(StringBuilder sb, Attributes attrs, Date now) {
+            Date date;
+            if (tagPath == null) {
+                date = now;
+            } else {
+                Attributes item = itemOf(attrs, tagPath);
+                date = item != null
+                        ? item.getDate(tagPath[tagPath.length - 1])
+                        : null;
+            }
+            sb.append(date != null ? format.get().format(date) : null);
+        }
+    }
+}
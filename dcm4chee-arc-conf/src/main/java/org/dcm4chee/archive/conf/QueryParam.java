@@ -59,6 +59,7 @@ public class QueryParam {
     private boolean returnOtherPatientNames;
     private Issuer defaultIssuerOfPatientID;
     private Issuer defaultIssuerOfAccessionNumber;
+    private int fetchSize;
 
     public final boolean isCombinedDatetimeMatching() {
         return combinedDatetimeMatching;
@@ -132,6 +133,14 @@ public class QueryParam {
         this.showRejectedInstances = showRejectedInstances;
     }
 
+    public final int getFetchSize() {
+        return fetchSize;
+    }
+
+    public final void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
     public Issuer getDefaultIssuerOfPatientID() {
         return defaultIssuerOfPatientID;
     }
@@ -60,6 +60,9 @@ public class StoreParam {
     private String[] retrieveAETs;
     private String externalRetrieveAET;
     private List<StoreDuplicate> storeDuplicates;
+    private int uidCacheMaxSize;
+    private int uidCacheTimeout;
+    private boolean instanceUIDFilterSkipLookup;
 
     public final boolean isStoreOriginalAttributes() {
         return storeOriginalAttributes;
@@ -157,6 +160,31 @@ public class StoreParam {
         return attributeFilters[entity.ordinal()];
     }
 
+    public final int getUIDCacheMaxSize() {
+        return uidCacheMaxSize;
+    }
+
+    public final void setUIDCacheMaxSize(int uidCacheMaxSize) {
+        this.uidCacheMaxSize = uidCacheMaxSize;
+    }
+
+    public final int getUIDCacheTimeout() {
+        return uidCacheTimeout;
+    }
+
+    public final void setUIDCacheTimeout(int uidCacheTimeout) {
+        this.uidCacheTimeout = uidCacheTimeout;
+    }
+
+    public final boolean isInstanceUIDFilterSkipLookup() {
+        return instanceUIDFilterSkipLookup;
+    }
+
+    public final void setInstanceUIDFilterSkipLookup(
+            boolean instanceUIDFilterSkipLookup) {
+        this.instanceUIDFilterSkipLookup = instanceUIDFilterSkipLookup;
+    }
+
     public StoreDuplicate.Action getStoreDuplicate(boolean noFiles,
             boolean eqChecksum, boolean eqFsGroup) {
         for (StoreDuplicate sd : storeDuplicates)
@@ -70,6 +70,7 @@ import org.dcm4chee.archive.conf.ArchiveDeviceExtension;
 import org.dcm4chee.archive.conf.ArchiveHL7ApplicationExtension;
 import org.dcm4chee.archive.conf.AttributeFilter;
 import org.dcm4chee.archive.conf.Entity;
+import org.dcm4chee.archive.conf.FileSystemSelectionStrategy;
 import org.dcm4chee.archive.conf.StoreDuplicate;
 import org.dcm4chee.archive.conf.StoreDuplicate.Condition;
 
@@ -103,6 +104,27 @@ public class LdapArchiveConfiguration extends LdapDicomConfigurationExtension
                 arcDev.getConfigurationStaleTimeout(), 0);
         LdapUtils.storeNotDef(attrs, "dcmWadoAttributesStaleTimeout",
                 arcDev.getWadoAttributesStaleTimeout(), 0);
+        LdapUtils.storeNotDef(attrs, "dcmStoreBatchSize", arcDev.getStoreBatchSize(), 0);
+        LdapUtils.storeNotDef(attrs, "dcmStoreBatchDelay",
+                arcDev.getStoreBatchDelay(), ArchiveDeviceExtension.DEF_STORE_BATCH_DELAY);
+        LdapUtils.storeNotDef(attrs, "dcmUIDCacheMaxSize",
+                arcDev.getUIDCacheMaxSize(), ArchiveDeviceExtension.DEF_UID_CACHE_MAX_SIZE);
+        LdapUtils.storeNotDef(attrs, "dcmUIDCacheTimeout",
+                arcDev.getUIDCacheTimeout(), ArchiveDeviceExtension.DEF_UID_CACHE_TIMEOUT);
+        LdapUtils.storeNotDef(attrs, "dcmFileSystemCheckInterval",
+                arcDev.getFileSystemCheckInterval(), ArchiveDeviceExtension.DEF_FILE_SYSTEM_CHECK_INTERVAL);
+        LdapUtils.storeNotDef(attrs, "dcmFileSystemMinFreeSpace",
+                arcDev.getFileSystemMinFreeSpace(), ArchiveDeviceExtension.DEF_FILE_SYSTEM_MIN_FREE_SPACE);
+        LdapUtils.storeNotDef(attrs, "dcmCompressEncodedAttributes",
+                arcDev.isCompressEncodedAttributes(), false);
+        LdapUtils.storeNotDef(attrs, "dcmInstanceUIDFilterCapacity",
+                arcDev.getInstanceUIDFilterCapacity(), 0);
+        LdapUtils.storeNotDef(attrs, "dcmSpoolMemoryLimit",
+                arcDev.getSpoolMemoryLimit(), ArchiveDeviceExtension.DEF_SPOOL_MEMORY_LIMIT);
+        LdapUtils.storeNotDef(attrs, "dcmFileSystemNextMinFreeSpace",
+                arcDev.getFileSystemNextMinFreeSpace(), ArchiveDeviceExtension.DEF_FILE_SYSTEM_NEXT_MIN_FREE_SPACE);
+        LdapUtils.storeNotDef(attrs, "dcmInstanceUIDFilterSkipLookup",
+                arcDev.isInstanceUIDFilterSkipLookup(), false);
     }
 
     @Override
@@ -204,6 +226,12 @@ public class LdapArchiveConfiguration extends LdapDicomConfigurationExtension
         LdapUtils.storeNotNull(attrs, "hl7PIXConsumerApplication", arcAE.getLocalPIXConsumerApplication());
         LdapUtils.storeNotNull(attrs, "hl7PIXManagerApplication", arcAE.getRemotePIXManagerApplication());
         LdapUtils.storeNotDef(attrs, "dcmQidoMaxNumberOfResults", arcAE.getQIDOMaxNumberOfResults(), 0);
+        LdapUtils.storeNotDef(attrs, "dcmDeferredCompression",
+                arcAE.isDeferredCompression(), false);
+        LdapUtils.storeNotNull(attrs, "dcmFileSystemSelectionStrategy",
+                arcAE.getFileSystemSelectionStrategy());
+        LdapUtils.storeNotDef(attrs, "dcmSpoolMemoryThreshold", arcAE.getSpoolMemoryThreshold(), 0);
+        LdapUtils.storeNotDef(attrs, "dcmQueryFetchSize", arcAE.getQueryFetchSize(), 0);
     }
 
     @Override
@@ -240,6 +268,27 @@ public class LdapArchiveConfiguration extends LdapDicomConfigurationExtension
                 LdapUtils.intValue(attrs.get("dcmConfigurationStaleTimeout"), 0));
         arcdev.setWadoAttributesStaleTimeout(
                 LdapUtils.intValue(attrs.get("dcmWadoAttributesStaleTimeout"), 0));
+        arcdev.setStoreBatchSize(LdapUtils.intValue(attrs.get("dcmStoreBatchSize"), 0));
+        arcdev.setStoreBatchDelay(
+                LdapUtils.intValue(attrs.get("dcmStoreBatchDelay"), ArchiveDeviceExtension.DEF_STORE_BATCH_DELAY));
+        arcdev.setUIDCacheMaxSize(
+                LdapUtils.intValue(attrs.get("dcmUIDCacheMaxSize"), ArchiveDeviceExtension.DEF_UID_CACHE_MAX_SIZE));
+        arcdev.setUIDCacheTimeout(
+                LdapUtils.intValue(attrs.get("dcmUIDCacheTimeout"), ArchiveDeviceExtension.DEF_UID_CACHE_TIMEOUT));
+        arcdev.setFileSystemCheckInterval(
+                LdapUtils.intValue(attrs.get("dcmFileSystemCheckInterval"), ArchiveDeviceExtension.DEF_FILE_SYSTEM_CHECK_INTERVAL));
+        arcdev.setFileSystemMinFreeSpace(
+                LdapUtils.intValue(attrs.get("dcmFileSystemMinFreeSpace"), ArchiveDeviceExtension.DEF_FILE_SYSTEM_MIN_FREE_SPACE));
+        arcdev.setCompressEncodedAttributes(
+                LdapUtils.booleanValue(attrs.get("dcmCompressEncodedAttributes"), false));
+        arcdev.setInstanceUIDFilterCapacity(
+                LdapUtils.intValue(attrs.get("dcmInstanceUIDFilterCapacity"), 0));
+        arcdev.setSpoolMemoryLimit(
+                LdapUtils.intValue(attrs.get("dcmSpoolMemoryLimit"), ArchiveDeviceExtension.DEF_SPOOL_MEMORY_LIMIT));
+        arcdev.setFileSystemNextMinFreeSpace(
+                LdapUtils.intValue(attrs.get("dcmFileSystemNextMinFreeSpace"), ArchiveDeviceExtension.DEF_FILE_SYSTEM_NEXT_MIN_FREE_SPACE));
+        arcdev.setInstanceUIDFilterSkipLookup(
+                LdapUtils.booleanValue(attrs.get("dcmInstanceUIDFilterSkipLookup"), false));
     }
 
     @Override
@@ -334,6 +383,13 @@ public class LdapArchiveConfiguration extends LdapDicomConfigurationExtension
        arcae.setLocalPIXConsumerApplication(LdapUtils.stringValue(attrs.get("hl7PIXConsumerApplication"), null));
        arcae.setRemotePIXManagerApplication(LdapUtils.stringValue(attrs.get("hl7PIXManagerApplication"), null));
        arcae.setQIDOMaxNumberOfResults(LdapUtils.intValue(attrs.get("dcmQidoMaxNumberOfResults"), 0));
+       arcae.setDeferredCompression(
+               LdapUtils.booleanValue(attrs.get("dcmDeferredCompression"), false));
+       arcae.setFileSystemSelectionStrategy(FileSystemSelectionStrategy.valueOf(
+               LdapUtils.stringValue(attrs.get("dcmFileSystemSelectionStrategy"),
+                       "ROUND_ROBIN")));
+       arcae.setSpoolMemoryThreshold(LdapUtils.intValue(attrs.get("dcmSpoolMemoryThreshold"), 0));
+       arcae.setQueryFetchSize(LdapUtils.intValue(attrs.get("dcmQueryFetchSize"), 0));
     }
 
     @Override
@@ -412,6 +468,50 @@ public class LdapArchiveConfiguration extends LdapDicomConfigurationExtension
                 aa.getWadoAttributesStaleTimeout(),
                 bb.getWadoAttributesStaleTimeout(),
                 0);
+        LdapUtils.storeDiff(mods, "dcmStoreBatchSize",
+                aa.getStoreBatchSize(),
+                bb.getStoreBatchSize(),
+                0);
+        LdapUtils.storeDiff(mods, "dcmStoreBatchDelay",
+                aa.getStoreBatchDelay(),
+                bb.getStoreBatchDelay(),
+                ArchiveDeviceExtension.DEF_STORE_BATCH_DELAY);
+        LdapUtils.storeDiff(mods, "dcmUIDCacheMaxSize",
+                aa.getUIDCacheMaxSize(),
+                bb.getUIDCacheMaxSize(),
+                ArchiveDeviceExtension.DEF_UID_CACHE_MAX_SIZE);
+        LdapUtils.storeDiff(mods, "dcmUIDCacheTimeout",
+                aa.getUIDCacheTimeout(),
+                bb.getUIDCacheTimeout(),
+                ArchiveDeviceExtension.DEF_UID_CACHE_TIMEOUT);
+        LdapUtils.storeDiff(mods, "dcmFileSystemCheckInterval",
+                aa.getFileSystemCheckInterval(),
+                bb.getFileSystemCheckInterval(),
+                ArchiveDeviceExtension.DEF_FILE_SYSTEM_CHECK_INTERVAL);
+        LdapUtils.storeDiff(mods, "dcmFileSystemMinFreeSpace",
+                aa.getFileSystemMinFreeSpace(),
+                bb.getFileSystemMinFreeSpace(),
+                ArchiveDeviceExtension.DEF_FILE_SYSTEM_MIN_FREE_SPACE);
+        LdapUtils.storeDiff(mods, "dcmCompressEncodedAttributes",
+                aa.isCompressEncodedAttributes(),
+                bb.isCompressEncodedAttributes(),
+                false);
+        LdapUtils.storeDiff(mods, "dcmInstanceUIDFilterCapacity",
+                aa.getInstanceUIDFilterCapacity(),
+                bb.getInstanceUIDFilterCapacity(),
+                0);
+        LdapUtils.storeDiff(mods, "dcmSpoolMemoryLimit",
+                aa.getSpoolMemoryLimit(),
+                bb.getSpoolMemoryLimit(),
+                ArchiveDeviceExtension.DEF_SPOOL_MEMORY_LIMIT);
+        LdapUtils.storeDiff(mods, "dcmFileSystemNextMinFreeSpace",
+                aa.getFileSystemNextMinFreeSpace(),
+                bb.getFileSystemNextMinFreeSpace(),
+                ArchiveDeviceExtension.DEF_FILE_SYSTEM_NEXT_MIN_FREE_SPACE);
+        LdapUtils.storeDiff(mods, "dcmInstanceUIDFilterSkipLookup",
+                aa.isInstanceUIDFilterSkipLookup(),
+                bb.isInstanceUIDFilterSkipLookup(),
+                false);
     }
 
     @Override
@@ -526,6 +626,21 @@ public class LdapArchiveConfiguration extends LdapDicomConfigurationExtension
                 aa.getQIDOMaxNumberOfResults(),
                 bb.getQIDOMaxNumberOfResults(),
                 0);
+        LdapUtils.storeDiff(mods, "dcmDeferredCompression",
+                aa.isDeferredCompression(),
+                bb.isDeferredCompression(),
+                false);
+        LdapUtils.storeDiff(mods, "dcmFileSystemSelectionStrategy",
+                aa.getFileSystemSelectionStrategy(),
+                bb.getFileSystemSelectionStrategy());
+        LdapUtils.storeDiff(mods, "dcmSpoolMemoryThreshold",
+                aa.getSpoolMemoryThreshold(),
+                bb.getSpoolMemoryThreshold(),
+                0);
+        LdapUtils.storeDiff(mods, "dcmQueryFetchSize",
+                aa.getQueryFetchSize(),
+                bb.getQueryFetchSize(),
+                0);
     }
 
     @Override
@@ -62,6 +62,7 @@ import org.dcm4chee.archive.conf.ArchiveDeviceExtension;
 import org.dcm4chee.archive.conf.ArchiveHL7ApplicationExtension;
 import org.dcm4chee.archive.conf.AttributeFilter;
 import org.dcm4chee.archive.conf.Entity;
+import org.dcm4chee.archive.conf.FileSystemSelectionStrategy;
 import org.dcm4chee.archive.conf.StoreDuplicate;
 
 /**
@@ -96,6 +97,27 @@ public class PreferencesArchiveConfiguration
                 arcDev.getConfigurationStaleTimeout(), 0);
         PreferencesUtils.storeNotDef(prefs, "dcmWadoAttributesStaleTimeout",
                 arcDev.getWadoAttributesStaleTimeout(), 0);
+        PreferencesUtils.storeNotDef(prefs, "dcmStoreBatchSize", arcDev.getStoreBatchSize(), 0);
+        PreferencesUtils.storeNotDef(prefs, "dcmStoreBatchDelay",
+                arcDev.getStoreBatchDelay(), ArchiveDeviceExtension.DEF_STORE_BATCH_DELAY);
+        PreferencesUtils.storeNotDef(prefs, "dcmUIDCacheMaxSize",
+                arcDev.getUIDCacheMaxSize(), ArchiveDeviceExtension.DEF_UID_CACHE_MAX_SIZE);
+        PreferencesUtils.storeNotDef(prefs, "dcmUIDCacheTimeout",
+                arcDev.getUIDCacheTimeout(), ArchiveDeviceExtension.DEF_UID_CACHE_TIMEOUT);
+        PreferencesUtils.storeNotDef(prefs, "dcmFileSystemCheckInterval",
+                arcDev.getFileSystemCheckInterval(), ArchiveDeviceExtension.DEF_FILE_SYSTEM_CHECK_INTERVAL);
+        PreferencesUtils.storeNotDef(prefs, "dcmFileSystemMinFreeSpace",
+                arcDev.getFileSystemMinFreeSpace(), ArchiveDeviceExtension.DEF_FILE_SYSTEM_MIN_FREE_SPACE);
+        PreferencesUtils.storeNotDef(prefs, "dcmCompressEncodedAttributes",
+                arcDev.isCompressEncodedAttributes(), false);
+        PreferencesUtils.storeNotDef(prefs, "dcmInstanceUIDFilterCapacity",
+                arcDev.getInstanceUIDFilterCapacity(), 0);
+        PreferencesUtils.storeNotDef(prefs, "dcmSpoolMemoryLimit",
+                arcDev.getSpoolMemoryLimit(), ArchiveDeviceExtension.DEF_SPOOL_MEMORY_LIMIT);
+        PreferencesUtils.storeNotDef(prefs, "dcmFileSystemNextMinFreeSpace",
+                arcDev.getFileSystemNextMinFreeSpace(), ArchiveDeviceExtension.DEF_FILE_SYSTEM_NEXT_MIN_FREE_SPACE);
+        PreferencesUtils.storeNotDef(prefs, "dcmInstanceUIDFilterSkipLookup",
+                arcDev.isInstanceUIDFilterSkipLookup(), false);
     }
 
     @Override
@@ -192,6 +214,13 @@ public class PreferencesArchiveConfiguration
         PreferencesUtils.storeNotNull(prefs, "hl7PIXConsumerApplication", arcAE.getLocalPIXConsumerApplication());
         PreferencesUtils.storeNotNull(prefs, "hl7PIXManagerApplication", arcAE.getRemotePIXManagerApplication());
         PreferencesUtils.storeNotDef(prefs, "dcmQidoMaxNumberOfResults", arcAE.getQIDOMaxNumberOfResults(), 0);
+        PreferencesUtils.storeNotDef(prefs, "dcmDeferredCompression",
+                arcAE.isDeferredCompression(), false);
+        PreferencesUtils.storeNotNull(prefs, "dcmFileSystemSelectionStrategy",
+                arcAE.getFileSystemSelectionStrategy());
+        PreferencesUtils.storeNotDef(prefs, "dcmSpoolMemoryThreshold",
+                arcAE.getSpoolMemoryThreshold(), 0);
+        PreferencesUtils.storeNotDef(prefs, "dcmQueryFetchSize", arcAE.getQueryFetchSize(), 0);
     }
 
     @Override
@@ -229,6 +258,26 @@ public class PreferencesArchiveConfiguration
                 prefs.getInt("dcmConfigurationStaleTimeout", 0));
         arcdev.setWadoAttributesStaleTimeout(
                 prefs.getInt("dcmWadoAttributesStaleTimeout", 0));
+        arcdev.setStoreBatchSize(prefs.getInt("dcmStoreBatchSize", 0));
+        arcdev.setStoreBatchDelay(
+                prefs.getInt("dcmStoreBatchDelay", ArchiveDeviceExtension.DEF_STORE_BATCH_DELAY));
+        arcdev.setUIDCacheMaxSize(
+                prefs.getInt("dcmUIDCacheMaxSize", ArchiveDeviceExtension.DEF_UID_CACHE_MAX_SIZE));
+        arcdev.setUIDCacheTimeout(
+                prefs.getInt("dcmUIDCacheTimeout", ArchiveDeviceExtension.DEF_UID_CACHE_TIMEOUT));
+        arcdev.setFileSystemCheckInterval(
+                prefs.getInt("dcmFileSystemCheckInterval", ArchiveDeviceExtension.DEF_FILE_SYSTEM_CHECK_INTERVAL));
+        arcdev.setFileSystemMinFreeSpace(
+                prefs.getInt("dcmFileSystemMinFreeSpace", ArchiveDeviceExtension.DEF_FILE_SYSTEM_MIN_FREE_SPACE));
+        arcdev.setCompressEncodedAttributes(
+                prefs.getBoolean("dcmCompressEncodedAttributes", false));
+        arcdev.setInstanceUIDFilterCapacity(prefs.getInt("dcmInstanceUIDFilterCapacity", 0));
+        arcdev.setSpoolMemoryLimit(
+                prefs.getInt("dcmSpoolMemoryLimit", ArchiveDeviceExtension.DEF_SPOOL_MEMORY_LIMIT));
+        arcdev.setFileSystemNextMinFreeSpace(
+                prefs.getInt("dcmFileSystemNextMinFreeSpace", ArchiveDeviceExtension.DEF_FILE_SYSTEM_NEXT_MIN_FREE_SPACE));
+        arcdev.setInstanceUIDFilterSkipLookup(
+                prefs.getBoolean("dcmInstanceUIDFilterSkipLookup", false));
     }
 
     @Override
@@ -289,6 +338,11 @@ public class PreferencesArchiveConfiguration
         arcae.setLocalPIXConsumerApplication(prefs.get("hl7PIXConsumerApplication", null));
         arcae.setRemotePIXManagerApplication(prefs.get("hl7PIXManagerApplication", null));
         arcae.setQIDOMaxNumberOfResults(prefs.getInt("dcmQidoMaxNumberOfResults", 0));
+        arcae.setDeferredCompression(prefs.getBoolean("dcmDeferredCompression", false));
+        arcae.setFileSystemSelectionStrategy(FileSystemSelectionStrategy.valueOf(
+                prefs.get("dcmFileSystemSelectionStrategy", "ROUND_ROBIN")));
+        arcae.setSpoolMemoryThreshold(prefs.getInt("dcmSpoolMemoryThreshold", 0));
+        arcae.setQueryFetchSize(prefs.getInt("dcmQueryFetchSize", 0));
     }
 
     @Override
@@ -386,6 +440,50 @@ public class PreferencesArchiveConfiguration
                 aa.getWadoAttributesStaleTimeout(),
                 bb.getWadoAttributesStaleTimeout(),
                 0);
+        PreferencesUtils.storeDiff(prefs, "dcmStoreBatchSize",
+                aa.getStoreBatchSize(),
+                bb.getStoreBatchSize(),
+                0);
+        PreferencesUtils.storeDiff(prefs, "dcmStoreBatchDelay",
+                aa.getStoreBatchDelay(),
+                bb.getStoreBatchDelay(),
+                ArchiveDeviceExtension.DEF_STORE_BATCH_DELAY);
+        PreferencesUtils.storeDiff(prefs, "dcmUIDCacheMaxSize",
+                aa.getUIDCacheMaxSize(),
+                bb.getUIDCacheMaxSize(),
+                ArchiveDeviceExtension.DEF_UID_CACHE_MAX_SIZE);
+        PreferencesUtils.storeDiff(prefs, "dcmUIDCacheTimeout",
+                aa.getUIDCacheTimeout(),
+                bb.getUIDCacheTimeout(),
+                ArchiveDeviceExtension.DEF_UID_CACHE_TIMEOUT);
+        PreferencesUtils.storeDiff(prefs, "dcmFileSystemCheckInterval",
+                aa.getFileSystemCheckInterval(),
+                bb.getFileSystemCheckInterval(),
+                ArchiveDeviceExtension.DEF_FILE_SYSTEM_CHECK_INTERVAL);
+        PreferencesUtils.storeDiff(prefs, "dcmFileSystemMinFreeSpace",
+                aa.getFileSystemMinFreeSpace(),
+                bb.getFileSystemMinFreeSpace(),
+                ArchiveDeviceExtension.DEF_FILE_SYSTEM_MIN_FREE_SPACE);
+        PreferencesUtils.storeDiff(prefs, "dcmCompressEncodedAttributes",
+                aa.isCompressEncodedAttributes(),
+                bb.isCompressEncodedAttributes(),
+                false);
+        PreferencesUtils.storeDiff(prefs, "dcmInstanceUIDFilterCapacity",
+                aa.getInstanceUIDFilterCapacity(),
+                bb.getInstanceUIDFilterCapacity(),
+                0);
+        PreferencesUtils.storeDiff(prefs, "dcmSpoolMemoryLimit",
+                aa.getSpoolMemoryLimit(),
+                bb.getSpoolMemoryLimit(),
+                ArchiveDeviceExtension.DEF_SPOOL_MEMORY_LIMIT);
+        PreferencesUtils.storeDiff(prefs, "dcmFileSystemNextMinFreeSpace",
+                aa.getFileSystemNextMinFreeSpace(),
+                bb.getFileSystemNextMinFreeSpace(),
+                ArchiveDeviceExtension.DEF_FILE_SYSTEM_NEXT_MIN_FREE_SPACE);
+        PreferencesUtils.storeDiff(prefs, "dcmInstanceUIDFilterSkipLookup",
+                aa.isInstanceUIDFilterSkipLookup(),
+                bb.isInstanceUIDFilterSkipLookup(),
+                false);
     }
 
     @Override
@@ -500,6 +598,21 @@ public class PreferencesArchiveConfiguration
                  aa.getQIDOMaxNumberOfResults(),
                  bb.getQIDOMaxNumberOfResults(),
                  0);
+         PreferencesUtils.storeDiff(prefs, "dcmDeferredCompression",
+                 aa.isDeferredCompression(),
+                 bb.isDeferredCompression(),
+                 false);
+         PreferencesUtils.storeDiff(prefs, "dcmFileSystemSelectionStrategy",
+                 aa.getFileSystemSelectionStrategy(),
+                 bb.getFileSystemSelectionStrategy());
+         PreferencesUtils.storeDiff(prefs, "dcmSpoolMemoryThreshold",
+                 aa.getSpoolMemoryThreshold(),
+                 bb.getSpoolMemoryThreshold(),
+                 0);
+         PreferencesUtils.storeDiff(prefs, "dcmQueryFetchSize",
+                 aa.getQueryFetchSize(),
+                 bb.getQueryFetchSize(),
+                 0);
     }
 
     @Override
@@ -0,0 +1,113 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2011-2013
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4chee.archive.conf;
+
+import java.io.File;
+
+import javax.xml.transform.stream.StreamSource;
+
+import org.dcm4che.data.Attributes;
+import org.dcm4che.data.Tag;
+import org.dcm4che.data.VR;
+import org.dcm4che.io.SAXTransformer;
+
+/**
+ * Compares the throughput of {@link CompiledAttributesCoercion} with
+ * {@link XSLTAttributesCoercion} for the sample ensure-pid coercion.
+ * Run with the module directory as working directory:
+ * 
+ * <pre>
+ * java -cp ... org.dcm4chee.archive.conf.AttributesCoercionBenchmark [iterations]
+ * </pre>
+ * 
+ * @author Gunter Zeilinger <gunterze@gmail.com>
+ *
+ */
+public class AttributesCoercionBenchmark {
+
+    private static final String CONFIG_DIR =
+            "src/main/config/configuration/dcm4chee-arc/";
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        AttributesCoercion compiled = CompiledAttributesCoercion.load(
+                new File(CONFIG_DIR + "ensure-pid.coerce").toURI().toString());
+        AttributesCoercion xslt = new XSLTAttributesCoercion(
+                SAXTransformer.newTemplates(
+                        new StreamSource(new File(CONFIG_DIR + "ensure-pid.xsl"))));
+        Attributes attrs = sampleAttributes();
+        Attributes noStudyUID = new Attributes(attrs);
+        noStudyUID.remove(Tag.StudyInstanceUID);
+        for (Attributes sample : new Attributes[] { attrs, noStudyUID })
+            if (!compiled.coerce(sample).equals(xslt.coerce(sample)))
+                throw new AssertionError("coercions differ");
+
+        // warm up
+        run(compiled, attrs, iterations / 10);
+        run(xslt, attrs, iterations / 10);
+        report("compiled", run(compiled, attrs, iterations), iterations);
+        report("xslt", run(xslt, attrs, iterations), iterations);
+    }
+
+    private static Attributes sampleAttributes() {
+        Attributes attrs = new Attributes();
+        attrs.setString(Tag.SOPClassUID, VR.UI, "1.2.840.10008.5.1.4.1.1.2");
+        attrs.setString(Tag.SOPInstanceUID, VR.UI, "1.2.3.4.5.6");
+        attrs.setString(Tag.StudyInstanceUID, VR.UI, "1.2.3.4");
+        attrs.setString(Tag.SeriesInstanceUID, VR.UI, "1.2.3.4.5");
+        attrs.setString(Tag.PatientName, VR.PN, "Doe^John");
+        attrs.setString(Tag.StudyDate, VR.DA, "20140101");
+        attrs.setString(Tag.Modality, VR.CS, "CT");
+        attrs.setInt(Tag.Rows, VR.US, 512);
+        attrs.setInt(Tag.Columns, VR.US, 512);
+        return attrs;
+    }
+
+    private static long run(AttributesCoercion coercion, Attributes attrs,
+            int iterations) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++)
+            coercion.coerce(attrs);
+        return System.nanoTime() - start;
+    }
+
+    private static void report(String name, long nanos, int iterations) {
+        System.out.printf("%-8s %8d ns/coercion%n", name, nanos / iterations);
+    }
+}
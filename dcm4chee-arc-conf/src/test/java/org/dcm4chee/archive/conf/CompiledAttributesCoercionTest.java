@@ -0,0 +1,133 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2011-2013
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4chee.archive.conf;
+
+import static org.junit.Assert.*;
+
+import java.io.StringReader;
+
+import org.dcm4che.data.Attributes;
+import org.dcm4che.data.Tag;
+import org.dcm4che.data.VR;
+import org.junit.Test;
+
+/**
+ * @author Gunter Zeilinger <gunterze@gmail.com>
+ *
+ */
+public class CompiledAttributesCoercionTest {
+
+    private static final String ENSURE_PID =
+            "# ensure-pid\n"
+            + "unless PatientID nullify PatientID\n"
+            + "unless PatientID copy StudyInstanceUID PatientID\n"
+            + "unless PatientID set IssuerOfPatientID DCM4CHEE-ARC\n";
+
+    private static CompiledAttributesCoercion compile(String rules)
+            throws Exception {
+        return new CompiledAttributesCoercion(new StringReader(rules));
+    }
+
+    private static Attributes attrs(String pid) {
+        Attributes attrs = new Attributes();
+        attrs.setString(Tag.StudyInstanceUID, VR.UI, "1.2.3");
+        attrs.setString(Tag.AccessionNumber, VR.SH, "A1");
+        if (pid != null)
+            attrs.setString(Tag.PatientID, VR.LO, pid);
+        return attrs;
+    }
+
+    @Test
+    public void testEnsurePID() throws Exception {
+        Attributes coerced = compile(ENSURE_PID).coerce(attrs(null));
+        assertEquals(2, coerced.size());
+        assertEquals("1.2.3", coerced.getString(Tag.PatientID));
+        assertEquals("DCM4CHEE-ARC",
+                coerced.getString(Tag.IssuerOfPatientID));
+    }
+
+    @Test
+    public void testEnsurePIDWithoutStudyUID() throws Exception {
+        Attributes attrs = attrs(null);
+        attrs.remove(Tag.StudyInstanceUID);
+        Attributes coerced = compile(ENSURE_PID).coerce(attrs);
+        assertEquals(2, coerced.size());
+        assertTrue(coerced.contains(Tag.PatientID));
+        assertFalse(coerced.containsValue(Tag.PatientID));
+        assertEquals("DCM4CHEE-ARC",
+                coerced.getString(Tag.IssuerOfPatientID));
+    }
+
+    @Test
+    public void testEnsurePIDUnchanged() throws Exception {
+        assertTrue(compile(ENSURE_PID).coerce(attrs("P1")).isEmpty());
+    }
+
+    @Test
+    public void testAffixMapAndNullify() throws Exception {
+        Attributes coerced = compile(
+                "prefix AccessionNumber X-\n"
+                + "suffix 00080050 -Y\n"
+                + "map PatientID P1=P2 P3=P4\n"
+                + "if PatientID nullify StudyInstanceUID\n")
+                .coerce(attrs("P1"));
+        assertEquals("X-A1-Y", coerced.getString(Tag.AccessionNumber));
+        assertEquals("P2", coerced.getString(Tag.PatientID));
+        assertTrue(coerced.contains(Tag.StudyInstanceUID));
+        assertFalse(coerced.containsValue(Tag.StudyInstanceUID));
+    }
+
+    @Test
+    public void testSetMultipleValues() throws Exception {
+        Attributes coerced = compile("set ImageType ORIGINAL\\PRIMARY")
+                .coerce(new Attributes());
+        assertArrayEquals(new String[] { "ORIGINAL", "PRIMARY" },
+                coerced.getStrings(Tag.ImageType));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownOperation() throws Exception {
+        compile("delete PatientID");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNonStringAttribute() throws Exception {
+        compile("set Rows 512");
+    }
+}
@@ -0,0 +1,117 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2011-2013
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4chee.archive.conf;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.dcm4che.data.Attributes;
+import org.dcm4che.data.Sequence;
+import org.dcm4che.data.Tag;
+import org.dcm4che.data.VR;
+import org.dcm4che.util.AttributesFormat;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * @author Gunter Zeilinger <gunterze@gmail.com>
+ *
+ */
+@RunWith(Parameterized.class)
+public class CompiledAttributesFormatTest {
+
+    private final String pattern;
+    private final String expected;
+
+    public CompiledAttributesFormatTest(String pattern, String expected) {
+        this.pattern = pattern;
+        this.expected = expected;
+    }
+
+    @Parameters
+    public static Collection<Object[]> patterns() {
+        return Arrays.asList(new Object[][] {
+            { "{00100020}/{00080050}", "P1/A1" },
+            { "{00100021}", "null" },
+            { "It''s/{00100020}", "It's/P1" },
+            { "'It''s'/{00100020}", "It's/P1" },
+            { "'a/b'/{00100020}", "a/b/P1" },
+            { "''", "'" },
+            { "{00100020}/'abc", "P1/abc" },
+            { "'abc/{00100020}", null },
+            { "'{00100020}'", null },
+            { "{0020000D,hash}/{0020000E,hash}", null },
+            { "{00080020,date,yyyy/MM/dd}", "2013/01/31" },
+            { "{00080020,date,yyyy'-'MM}", "2013-01" },
+            { "{00080030,time,HHmm}", null },
+            { "{now,date,yyyy}/{00100020}", null },
+            { "{00400275/00401001}", "RP1" },
+            { "{00400275/00401001,hash}", null },
+            { "{00400275/00321060}", "null" },
+        });
+    }
+
+    private static Attributes attrs() {
+        Attributes attrs = new Attributes();
+        attrs.setString(Tag.PatientID, VR.LO, "P1");
+        attrs.setString(Tag.AccessionNumber, VR.SH, "A1");
+        attrs.setString(Tag.StudyDate, VR.DA, "20130131");
+        attrs.setString(Tag.StudyTime, VR.TM, "123456");
+        attrs.setString(Tag.StudyInstanceUID, VR.UI, "1.2.3");
+        attrs.setString(Tag.SeriesInstanceUID, VR.UI, "1.2.3.4");
+        Sequence seq = attrs.newSequence(Tag.RequestAttributesSequence, 1);
+        Attributes item = new Attributes();
+        item.setString(Tag.RequestedProcedureID, VR.SH, "RP1");
+        seq.add(item);
+        return attrs;
+    }
+
+    @Test
+    public void testFormat() {
+        Attributes attrs = attrs();
+        String s = new CompiledAttributesFormat(pattern).format(attrs);
+        assertEquals(new AttributesFormat(pattern).format(attrs), s);
+        if (expected != null)
+            assertEquals(expected, s);
+    }
+}
@@ -38,12 +38,18 @@
 
 package org.dcm4chee.archive.ctrl;
 
+import java.io.IOException;
+
 import javax.enterprise.context.RequestScoped;
 import javax.inject.Inject;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
 
 import org.dcm4chee.archive.ArchiveService;
+import org.dcm4chee.archive.conf.AttributesCoercionCache;
+import org.dcm4chee.archive.store.StorageFileSystems;
+import org.dcm4chee.archive.store.StoreMetrics;
 
 /**
  * @author Gunter Zeilinger <gunterze@gmail.com>
@@ -56,6 +62,12 @@ public class ArchiveCtrl {
     @Inject
     private ArchiveService service;
 
+    @Inject
+    private StorageFileSystems storageFileSystems;
+
+    @Inject
+    private StoreMetrics storeMetrics;
+
     @GET
     @Path("running")
     public String isRunning() {
@@ -78,6 +90,23 @@ public class ArchiveCtrl {
     @Path("reload")
     public void reload() throws Exception {
         service.reload();
+        storageFileSystems.invalidateAll();
+        AttributesCoercionCache.getDefault().clear();
+    }
+
+    @GET
+    @Path("metrics")
+    @Produces("text/plain")
+    public String metrics() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        storeMetrics.writeTo(sb);
+        return sb.toString();
+    }
+
+    @GET
+    @Path("metrics/reset")
+    public void resetMetrics() {
+        storeMetrics.reset();
     }
 
 }
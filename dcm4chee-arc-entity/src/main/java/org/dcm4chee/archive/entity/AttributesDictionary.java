@@ -0,0 +1,171 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2011-2013
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4chee.archive.entity;
+
+import java.io.ByteArrayOutputStream;
+
+import org.dcm4che.data.Tag;
+import org.dcm4che.data.VR;
+
+/**
+ * Preset dictionaries for the deflate compression of encoded attributes.
+ * The dictionary of an entity consists of the Explicit VR Little Endian
+ * element headers of the attributes typically contained in its encoded
+ * attributes, supplemented by frequent values.
+ * 
+ * The identifier of the dictionary is stored in the header of each
+ * compressed blob, so the content of an existing dictionary must never be
+ * changed. Add a new constant instead. For that reason, the VR of each tag
+ * is listed explicitly and not taken from the {@code ElementDictionary} of
+ * the dcm4che version in use.
+ * 
+ * @author Gunter Zeilinger <gunterze@gmail.com>
+ */
+public enum AttributesDictionary {
+    NONE(0, new int[0]),
+    PATIENT(1, new int[] {
+        Tag.SpecificCharacterSet, VR.CS.code(),
+        Tag.PatientName, VR.PN.code(),
+        Tag.PatientID, VR.LO.code(),
+        Tag.IssuerOfPatientID, VR.LO.code(),
+        Tag.IssuerOfPatientIDQualifiersSequence, VR.SQ.code(),
+        Tag.PatientBirthDate, VR.DA.code(),
+        Tag.PatientSex, VR.CS.code(),
+        Tag.OtherPatientIDsSequence, VR.SQ.code(),
+        Tag.PatientComments, VR.LT.code()
+    }, "ISO_IR 100", "ISO_IR 192"),
+    STUDY(2, new int[] {
+        Tag.SpecificCharacterSet, VR.CS.code(),
+        Tag.StudyDate, VR.DA.code(),
+        Tag.StudyTime, VR.TM.code(),
+        Tag.AccessionNumber, VR.SH.code(),
+        Tag.IssuerOfAccessionNumberSequence, VR.SQ.code(),
+        Tag.ReferringPhysicianName, VR.PN.code(),
+        Tag.StudyDescription, VR.LO.code(),
+        Tag.ProcedureCodeSequence, VR.SQ.code(),
+        Tag.PatientAge, VR.AS.code(),
+        Tag.PatientSize, VR.DS.code(),
+        Tag.PatientWeight, VR.DS.code(),
+        Tag.StudyInstanceUID, VR.UI.code(),
+        Tag.StudyID, VR.SH.code()
+    }, "ISO_IR 100", "ISO_IR 192"),
+    SERIES(3, new int[] {
+        Tag.SpecificCharacterSet, VR.CS.code(),
+        Tag.Modality, VR.CS.code(),
+        Tag.Manufacturer, VR.LO.code(),
+        Tag.InstitutionName, VR.LO.code(),
+        Tag.InstitutionalDepartmentName, VR.LO.code(),
+        Tag.StationName, VR.SH.code(),
+        Tag.SeriesDescription, VR.LO.code(),
+        Tag.PerformingPhysicianName, VR.PN.code(),
+        Tag.OperatorsName, VR.PN.code(),
+        Tag.ManufacturerModelName, VR.LO.code(),
+        Tag.BodyPartExamined, VR.CS.code(),
+        Tag.ProtocolName, VR.LO.code(),
+        Tag.SeriesInstanceUID, VR.UI.code(),
+        Tag.SeriesNumber, VR.IS.code(),
+        Tag.Laterality, VR.CS.code(),
+        Tag.PerformedProcedureStepStartDate, VR.DA.code(),
+        Tag.PerformedProcedureStepStartTime, VR.TM.code(),
+        Tag.RequestAttributesSequence, VR.SQ.code(),
+        Tag.ScheduledProcedureStepID, VR.SH.code(),
+        Tag.RequestedProcedureID, VR.SH.code()
+    }, "ISO_IR 100", "ISO_IR 192"),
+    INSTANCE(4, new int[] {
+        Tag.SpecificCharacterSet, VR.CS.code(),
+        Tag.ImageType, VR.CS.code(),
+        Tag.InstanceCreationDate, VR.DA.code(),
+        Tag.InstanceCreationTime, VR.TM.code(),
+        Tag.SOPClassUID, VR.UI.code(),
+        Tag.SOPInstanceUID, VR.UI.code(),
+        Tag.ContentDate, VR.DA.code(),
+        Tag.ContentTime, VR.TM.code(),
+        Tag.InstanceNumber, VR.IS.code(),
+        Tag.NumberOfFrames, VR.IS.code(),
+        Tag.Rows, VR.US.code(),
+        Tag.Columns, VR.US.code(),
+        Tag.BitsAllocated, VR.US.code()
+    }, "ISO_IR 100", "ORIGINAL\\PRIMARY\\", "DERIVED\\SECONDARY\\",
+        "1.2.840.10008.5.1.4.1.1.");
+
+    private final int id;
+    private final byte[] dictionary;
+
+    private AttributesDictionary(int id, int[] tagAndVRs, String... values) {
+        this.id = id;
+        this.dictionary = toDictionary(tagAndVRs, values);
+    }
+
+    public int id() {
+        return id;
+    }
+
+    public boolean isEmpty() {
+        return dictionary.length == 0;
+    }
+
+    byte[] dictionary() {
+        return dictionary;
+    }
+
+    public static AttributesDictionary valueOf(int id) {
+        for (AttributesDictionary dict : values())
+            if (dict.id == id)
+                return dict;
+        throw new IllegalArgumentException("id: " + id);
+    }
+
+    private static byte[] toDictionary(int[] tagAndVRs, String[] values) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (String value : values)
+            for (int i = 0, n = value.length(); i < n; i++)
+                out.write(value.charAt(i));
+        for (int i = 0; i < tagAndVRs.length; i += 2) {
+            int tag = tagAndVRs[i];
+            int code = tagAndVRs[i + 1];
+            out.write(tag >>> 16);
+            out.write(tag >>> 24);
+            out.write(tag);
+            out.write(tag >>> 8);
+            out.write(code >>> 8);
+            out.write(code);
+        }
+        return out.toByteArray();
+    }
+}
@@ -51,4 +51,12 @@ public class BlobCorruptedException extends RuntimeException {
         super(e);
     }
 
+    public BlobCorruptedException(String message) {
+        super(message);
+    }
+
+    public BlobCorruptedException(Throwable cause) {
+        super(cause);
+    }
+
 }
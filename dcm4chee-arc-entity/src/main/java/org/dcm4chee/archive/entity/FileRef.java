@@ -50,6 +50,8 @@ import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
 import javax.persistence.PrePersist;
 import javax.persistence.Table;
 
@@ -58,12 +60,20 @@ import javax.persistence.Table;
  * @author Justin Falk <jfalkmu@gmail.com>
  * @author Gunter Zeilinger <gunterze@gmail.com>
  */
+@NamedQueries({
+@NamedQuery(
+    name="FileRef.findByPkFetchFileSystem",
+    query="SELECT f FROM FileRef f JOIN FETCH f.fileSystem WHERE f.pk = ?1")
+})
 @Entity
 @Table(name = "file_ref")
 public class FileRef implements Serializable {
 
     private static final long serialVersionUID = 1735835006678974580L;
 
+    public static final String FIND_BY_PK_FETCH_FILE_SYSTEM =
+            "FileRef.findByPkFetchFileSystem";
+
     @Id
     @GeneratedValue(strategy=GenerationType.IDENTITY)
     @Column(name = "pk")
@@ -71,6 +71,9 @@ import javax.persistence.Table;
 @NamedQuery(
     name = "FileSystem.findByGroupIDAndStatus",
     query = "SELECT fs FROM FileSystem fs WHERE fs.groupID = ?1 AND fs.status = ?2"),
+@NamedQuery(
+    name = "FileSystem.findByStatusNot",
+    query = "SELECT fs FROM FileSystem fs WHERE fs.status <> ?1"),
 @NamedQuery(
     name = "FileSystem.getGroupIDs",
     query = "SELECT DISTINCT fs.groupID FROM FileSystem fs")
@@ -81,6 +84,7 @@ public class FileSystem implements Serializable {
 
     public static final String FIND_BY_GROUP_ID = "FileSystem.findByGroupID";
     public static final String FIND_BY_GROUP_ID_AND_STATUS = "FileSystem.findByGroupIDAndStatus";
+    public static final String FIND_BY_STATUS_NOT = "FileSystem.findByStatusNot";
     public static final String GET_GROUP_IDS = "FileSystem.getGroupIDs";
 
     @Id
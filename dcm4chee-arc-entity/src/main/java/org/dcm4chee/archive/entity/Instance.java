@@ -474,6 +474,7 @@ public class Instance implements Serializable {
                 AttributeFilter.selectStringValue(attrs, filter.getCustomAttribute3(), "*");
 
         encodedAttributes = Utils.encodeAttributes(
-                cachedAttributes = new Attributes(attrs, filter.getSelection()));
+                cachedAttributes = new Attributes(attrs, filter.getSelection()),
+                AttributesDictionary.INSTANCE);
     }
 }
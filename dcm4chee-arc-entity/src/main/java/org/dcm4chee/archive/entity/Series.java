@@ -113,7 +113,17 @@ import org.dcm4chee.archive.conf.AttributeFilter;
     query="UPDATE Series s "
             + "SET s.numberOfInstances = ?1, "
                 + "s.numberOfInstancesA = ?2 "
-            + "WHERE s.pk = ?3")
+            + "WHERE s.pk = ?3"),
+@NamedQuery(
+    name="Series.incrementNumberOfInstances",
+    query="UPDATE Series s "
+            + "SET s.numberOfInstances = s.numberOfInstances + ?1, "
+                + "s.numberOfInstancesA = s.numberOfInstancesA + ?2 "
+            + "WHERE s.pk = ?3 AND s.numberOfInstances >= 0"),
+@NamedQuery(
+    name="Series.numberOfInstances",
+    query="SELECT s.numberOfInstances, s.numberOfInstancesA "
+            + "FROM Series s WHERE s.pk = ?1")
 })
 @Entity
 @Table(name = "series")
@@ -126,6 +136,8 @@ public class Series implements Serializable {
     public static final String QUERY_PATIENT_STUDY_SERIES_ATTRIBUTES = "Series.queryPatientStudySeriesAttributes";
     public static final String NUMBER_OF_SERIES = "Series.numberOfSeries";
     public static final String UPDATE_NUMBER_OF_INSTANCES = "Series.updateNumberOfInstances";
+    public static final String INCREMENT_NUMBER_OF_INSTANCES = "Series.incrementNumberOfInstances";
+    public static final String NUMBER_OF_INSTANCES = "Series.numberOfInstances";
 
     @Id
     @GeneratedValue(strategy=GenerationType.IDENTITY)
@@ -225,11 +237,11 @@ public class Series implements Serializable {
     private String seriesCustomAttribute3;
 
     @Basic(optional = false)
-    @Column(name = "num_instances")
+    @Column(name = "num_instances", updatable = false)
     private int numberOfInstances = -1;
 
     @Basic(optional = false)
-    @Column(name = "num_instances_a")
+    @Column(name = "num_instances_a", updatable = false)
     private int numberOfInstancesA = -1;
 
     @Column(name = "src_aet")
@@ -410,11 +422,6 @@ public class Series implements Serializable {
         this.numberOfInstancesA = numberOfInstancesA;
     }
 
-    public void resetNumberOfInstances() {
-        this.numberOfInstances = -1;
-        this.numberOfInstancesA = -1;
-    }
-
     public String getSourceAET() {
         return sourceAET;
     }
@@ -553,7 +560,8 @@ public class Series implements Serializable {
             AttributeFilter.selectStringValue(attrs, filter.getCustomAttribute3(), "*");
 
         encodedAttributes = Utils.encodeAttributes(
-                cachedAttributes = new Attributes(attrs, filter.getSelection()));
+                cachedAttributes = new Attributes(attrs, filter.getSelection()),
+                AttributesDictionary.SERIES);
         
     }
 }
@@ -88,7 +88,23 @@ import org.dcm4chee.archive.conf.AttributeFilter;
             + "s.numberOfSeriesA = ?2, "
             + "s.numberOfInstances = ?3, "
             + "s.numberOfInstancesA = ?4 "
-        + "WHERE s.pk = ?5")
+        + "WHERE s.pk = ?5"),
+@NamedQuery(
+    name="Study.incrementNumberOfInstances",
+    query="UPDATE Study s "
+        + "SET s.numberOfSeries = s.numberOfSeries + ?1, "
+            + "s.numberOfSeriesA = s.numberOfSeriesA + ?2, "
+            + "s.numberOfInstances = s.numberOfInstances + ?3, "
+            + "s.numberOfInstancesA = s.numberOfInstancesA + ?4 "
+        + "WHERE s.pk = ?5 AND s.numberOfInstances >= 0"),
+@NamedQuery(
+    name="Study.resetNumberOfInstances",
+    query="UPDATE Study s "
+        + "SET s.numberOfSeries = -1, "
+            + "s.numberOfSeriesA = -1, "
+            + "s.numberOfInstances = -1, "
+            + "s.numberOfInstancesA = -1 "
+        + "WHERE s.pk = ?1")
 })
 @Entity
 @Table(name = "study")
@@ -98,6 +114,8 @@ public class Study implements Serializable {
 
     public static final String FIND_BY_STUDY_INSTANCE_UID = "Study.findByStudyInstanceUID";
     public static final String UPDATE_NUMBER_OF_INSTANCES = "Study.updateNumberOfInstances";
+    public static final String INCREMENT_NUMBER_OF_INSTANCES = "Study.incrementNumberOfInstances";
+    public static final String RESET_NUMBER_OF_INSTANCES = "Study.resetNumberOfInstances";
 
     @Id
     @GeneratedValue(strategy=GenerationType.IDENTITY)
@@ -176,19 +194,19 @@ public class Study implements Serializable {
     private String accessControlID;
 
     @Basic(optional = false)
-    @Column(name = "num_series")
+    @Column(name = "num_series", updatable = false)
     private int numberOfSeries = -1;
 
     @Basic(optional = false)
-    @Column(name = "num_series_a")
+    @Column(name = "num_series_a", updatable = false)
     private int numberOfSeriesA = -1;
 
     @Basic(optional = false)
-    @Column(name = "num_instances")
+    @Column(name = "num_instances", updatable = false)
     private int numberOfInstances = -1;
 
     @Basic(optional = false)
-    @Column(name = "num_instances_a")
+    @Column(name = "num_instances_a", updatable = false)
     private int numberOfInstancesA = -1;
 
     @Column(name = "mods_in_study")
@@ -366,13 +384,6 @@ public class Study implements Serializable {
         this.numberOfInstancesA = numberOfInstancesA;
     }
 
-    public void resetNumberOfInstances() {
-        this.numberOfSeries = -1;
-        this.numberOfSeriesA = -1;
-        this.numberOfInstances = -1;
-        this.numberOfInstancesA = -1;
-    }
-
     public String[] getModalitiesInStudy() {
         return StringUtils.split(modalitiesInStudy, '\\');
     }
@@ -382,8 +393,13 @@ public class Study implements Serializable {
     }
 
     public void addModalityInStudy(String modality) {
-        if (!Utils.contains(getModalitiesInStudy(), modality))
-            this.modalitiesInStudy = this.modalitiesInStudy + '\\' + modality;
+        if (modality == null || modality.isEmpty()
+                || Utils.contains(getModalitiesInStudy(), modality))
+            return;
+
+        this.modalitiesInStudy = modalitiesInStudy == null || modalitiesInStudy.isEmpty()
+                ? modality
+                : modalitiesInStudy + '\\' + modality;
     }
 
     public String[] getSOPClassesInStudy() {
@@ -395,8 +411,13 @@ public class Study implements Serializable {
     }
 
     public void addSOPClassInStudy(String sopClass) {
-        if (!Utils.contains(getSOPClassesInStudy(), sopClass))
-            this.sopClassesInStudy = this.sopClassesInStudy + '\\' + sopClass;
+        if (sopClass == null || sopClass.isEmpty()
+                || Utils.contains(getSOPClassesInStudy(), sopClass))
+            return;
+
+        this.sopClassesInStudy = sopClassesInStudy == null || sopClassesInStudy.isEmpty()
+                ? sopClass
+                : sopClassesInStudy + '\\' + sopClass;
     }
 
     public String[] getRetrieveAETs() {
@@ -506,6 +527,7 @@ public class Study implements Serializable {
             AttributeFilter.selectStringValue(attrs, filter.getCustomAttribute3(), "*");
 
         encodedAttributes = Utils.encodeAttributes(
-                cachedAttributes = new Attributes(attrs, filter.getSelection()));
+                cachedAttributes = new Attributes(attrs, filter.getSelection()),
+                AttributesDictionary.STUDY);
     }
 }
@@ -42,6 +42,9 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
 import org.dcm4che.data.Attributes;
 import org.dcm4che.data.Tag;
@@ -51,13 +54,69 @@ import org.dcm4che.io.DicomInputStream;
 import org.dcm4che.io.DicomOutputStream;
 import org.dcm4che.soundex.FuzzyStr;
 import org.dcm4che.util.StringUtils;
+import org.dcm4che.util.TagUtils;
 
 /**
  * @author Gunter Zeilinger <gunterze@gmail.com>
  */
 public class Utils {
 
+    /**
+     * Encoded attributes with this header are deflate compressed. Tag
+     * (FFFF,FFFF) cannot start an uncompressed Explicit VR Little Endian
+     * dataset, so blobs without header are read as uncompressed.
+     * 
+     * Header: FF FF, format version, codec, dictionary id, uncompressed
+     * length (4 bytes, big endian).
+     */
+    private static final int HEADER_LENGTH = 9;
+    private static final int FORMAT_VERSION = 1;
+    private static final int CODEC_DEFLATE = 1;
+    private static final int MIN_COMPRESS_LENGTH = 64;
+
+    private static volatile boolean compressEncodedAttributes;
+
+    private static final ThreadLocal<Deflater> deflater =
+            new ThreadLocal<Deflater>() {
+                @Override
+                protected Deflater initialValue() {
+                    return new Deflater();
+                }
+            };
+
+    private static final ThreadLocal<Inflater> inflater =
+            new ThreadLocal<Inflater>() {
+                @Override
+                protected Inflater initialValue() {
+                    return new Inflater();
+                }
+            };
+
+    public static boolean isCompressEncodedAttributes() {
+        return compressEncodedAttributes;
+    }
+
+    /**
+     * Sets if {@link #encodeAttributes(Attributes, AttributesDictionary)},
+     * used by the entities, compresses encoded attributes. Code depending
+     * on a consistent setting over several calls, like the migration of
+     * existing rows, shall pass the setting explicitly instead.
+     */
+    public static void setCompressEncodedAttributes(boolean compress) {
+        compressEncodedAttributes = compress;
+    }
+
     public static byte[] encodeAttributes(Attributes attrs) {
+        return encodeAttributes(attrs, AttributesDictionary.NONE);
+    }
+
+    public static byte[] encodeAttributes(Attributes attrs,
+            AttributesDictionary dict) {
+        return encodeAttributes(attrs, dict, compressEncodedAttributes);
+    }
+
+    public static byte[] encodeAttributes(Attributes attrs,
+            AttributesDictionary dict, boolean compress) {
         ByteArrayOutputStream out = new ByteArrayOutputStream(512);
         try {
             @SuppressWarnings("resource")
@@ -67,13 +126,101 @@ public class Utils {
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
-        return out.toByteArray();
+        byte[] b = out.toByteArray();
+        return compress ? compress(b, dict) : b;
+    }
+
+    public static boolean isCompressed(byte[] b) {
+        return b != null && b.length >= HEADER_LENGTH
+                && b[0] == (byte) 0xFF && b[1] == (byte) 0xFF;
+    }
+
+    /**
+     * Returns if encoded attributes are not in the format
+     * {@link #encodeAttributes(Attributes, AttributesDictionary, boolean)}
+     * writes.
+     */
+    public static boolean needsReencoding(byte[] b, AttributesDictionary dict,
+            boolean compress) {
+        if (b == null || b.length == 0)
+            return false;
+        if (!isCompressed(b))
+            return compress && b.length >= MIN_COMPRESS_LENGTH;
+        return !compress
+                || b[2] != FORMAT_VERSION
+                || b[4] != dict.id();
+    }
+
+    public static byte[] reencodeAttributes(byte[] b, AttributesDictionary dict,
+            boolean compress) {
+        byte[] dataset = uncompress(b);
+        return compress ? compress(dataset, dict) : dataset;
+    }
+
+    private static byte[] compress(byte[] b, AttributesDictionary dict) {
+        if (b.length < MIN_COMPRESS_LENGTH)
+            return b;
+
+        byte[] out = new byte[b.length];
+        Deflater def = deflater.get();
+        def.reset();
+        if (!dict.isEmpty())
+            def.setDictionary(dict.dictionary());
+        def.setInput(b);
+        def.finish();
+        int len = HEADER_LENGTH;
+        while (!def.finished() && len < out.length)
+            len += def.deflate(out, len, out.length - len);
+        if (!def.finished())
+            return b;
+
+        out[0] = (byte) 0xFF;
+        out[1] = (byte) 0xFF;
+        out[2] = FORMAT_VERSION;
+        out[3] = CODEC_DEFLATE;
+        out[4] = (byte) dict.id();
+        out[5] = (byte) (b.length >>> 24);
+        out[6] = (byte) (b.length >>> 16);
+        out[7] = (byte) (b.length >>> 8);
+        out[8] = (byte) b.length;
+        return Arrays.copyOf(out, len);
+    }
+
+    private static byte[] uncompress(byte[] b) {
+        if (!isCompressed(b))
+            return b;
+
+        if (b[2] != FORMAT_VERSION || b[3] != CODEC_DEFLATE)
+            throw new BlobCorruptedException(
+                    "Unsupported format version " + b[2] + " / codec " + b[3]);
+
+        byte[] out = new byte[((b[5] & 0xff) << 24) | ((b[6] & 0xff) << 16)
+                | ((b[7] & 0xff) << 8) | (b[8] & 0xff)];
+        Inflater inf = inflater.get();
+        inf.reset();
+        inf.setInput(b, HEADER_LENGTH, b.length - HEADER_LENGTH);
+        try {
+            int len = inf.inflate(out);
+            if (inf.needsDictionary()) {
+                inf.setDictionary(AttributesDictionary.valueOf(b[4])
+                        .dictionary());
+                len += inf.inflate(out, len, out.length - len);
+            }
+            if (!inf.finished() || len != out.length)
+                throw new BlobCorruptedException(
+                        "Uncompressed length mismatch");
+        } catch (DataFormatException e) {
+            throw new BlobCorruptedException(e);
+        } catch (IllegalArgumentException e) {
+            throw new BlobCorruptedException(e);
+        }
+        return out;
     }
 
     public static Attributes decodeAttributes(byte[] b) {
         if (b == null || b.length == 0)
             return new Attributes(0);
-        ByteArrayInputStream is = new ByteArrayInputStream(b);
+        ByteArrayInputStream is = new ByteArrayInputStream(uncompress(b));
         try {
             @SuppressWarnings("resource")
             DicomInputStream dis = new DicomInputStream(is);
@@ -86,7 +233,7 @@ public class Utils {
     public static void decodeAttributes(Attributes attrs, byte[] b) {
         if (b == null || b.length == 0)
             return;
-        ByteArrayInputStream is = new ByteArrayInputStream(b);
+        ByteArrayInputStream is = new ByteArrayInputStream(uncompress(b));
         try {
             @SuppressWarnings("resource")
             DicomInputStream dis = new DicomInputStream(is);
@@ -97,6 +244,128 @@ public class Utils {
         }
     }
 
+    /**
+     * Decodes only attributes with the specified tags - and Specific
+     * Character Set - from encoded attributes. The values of other top level
+     * attributes are skipped without being copied, and decoding stops after
+     * the last selected tag. Selected values are kept encoded, as
+     * {@link DicomInputStream} does.
+     * 
+     * @param selection tags sorted by {@link Arrays#sort(int[])}, or
+     *        {@code null} to decode all attributes
+     */
+    public static void decodeAttributes(Attributes attrs, byte[] b,
+            int[] selection) {
+        if (selection == null) {
+            decodeAttributes(attrs, b);
+            return;
+        }
+        if (b == null || b.length == 0)
+            return;
+
+        byte[] ds = uncompress(b);
+        long last = Tag.SpecificCharacterSet;
+        for (int tag : selection)
+            last = Math.max(last, tag & 0xffffffffL);
+        try {
+            int off = 0;
+            while (off < ds.length) {
+                int tag = tagAt(ds, off);
+                if ((tag & 0xffffffffL) > last)
+                    break;
+
+                VR vr = VR.valueOf(((ds[off + 4] & 0xff) << 8)
+                        | (ds[off + 5] & 0xff));
+                int headerLength = vr.headerLength();
+                int valueLength = headerLength == 12
+                        ? intAt(ds, off + 8)
+                        : ((ds[off + 7] & 0xff) << 8) | (ds[off + 6] & 0xff);
+                int valueOff = off + headerLength;
+                int end = valueLength == -1
+                        ? skipItems(ds, valueOff)
+                        : valueOff + valueLength;
+                if (end < valueOff || end > ds.length)
+                    throw new BlobCorruptedException(
+                            "Invalid length of " + TagUtils.toString(tag));
+                if (tag == Tag.SpecificCharacterSet
+                        || Arrays.binarySearch(selection, tag) >= 0) {
+                    if (vr == VR.SQ || valueLength == -1)
+                        decodeElement(attrs, ds, off, end - off);
+                    else if (valueLength == 0)
+                        attrs.setNull(tag, vr);
+                    else
+                        attrs.setBytes(tag, vr,
+                                Arrays.copyOfRange(ds, valueOff, end));
+                }
+                off = end;
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new BlobCorruptedException(e);
+        } catch (IllegalArgumentException e) {
+            throw new BlobCorruptedException(e);
+        }
+    }
+
+    private static void decodeElement(Attributes attrs, byte[] b, int off,
+            int len) {
+        try {
+            @SuppressWarnings("resource")
+            DicomInputStream dis = new DicomInputStream(
+                    new ByteArrayInputStream(b, off, len),
+                    UID.ExplicitVRLittleEndian);
+            dis.readAttributes(attrs, -1, -1);
+        } catch (IOException e) {
+            throw new BlobCorruptedException(e);
+        }
+    }
+
+    /**
+     * Returns the offset after the Sequence Delimitation Item of a value
+     * with undefined length starting at the specified offset.
+     */
+    private static int skipItems(byte[] b, int off) {
+        for (;;) {
+            int tag = tagAt(b, off);
+            int len = intAt(b, off + 4);
+            off += 8;
+            if (tag == Tag.SequenceDelimitationItem)
+                return off;
+            if (tag != Tag.Item)
+                throw new BlobCorruptedException(
+                        "Unexpected " + TagUtils.toString(tag));
+            off = len == -1 ? skipItemAttributes(b, off) : off + len;
+        }
+    }
+
+    /**
+     * Returns the offset after the Item Delimitation Item of an item with
+     * undefined length starting at the specified offset.
+     */
+    private static int skipItemAttributes(byte[] b, int off) {
+        for (;;) {
+            int tag = tagAt(b, off);
+            if (tag == Tag.ItemDelimitationItem)
+                return off + 8;
+            VR vr = VR.valueOf(((b[off + 4] & 0xff) << 8) | (b[off + 5] & 0xff));
+            int headerLength = vr.headerLength();
+            int len = headerLength == 12
+                    ? intAt(b, off + 8)
+                    : ((b[off + 7] & 0xff) << 8) | (b[off + 6] & 0xff);
+            off += headerLength;
+            off = len == -1 ? skipItems(b, off) : off + len;
+        }
+    }
+
+    private static int tagAt(byte[] b, int off) {
+        return ((b[off + 1] & 0xff) << 24) | ((b[off] & 0xff) << 16)
+                | ((b[off + 3] & 0xff) << 8) | (b[off + 2] & 0xff);
+    }
+
+    private static int intAt(byte[] b, int off) {
+        return ((b[off + 3] & 0xff) << 24) | ((b[off + 2] & 0xff) << 16)
+                | ((b[off + 1] & 0xff) << 8) | (b[off] & 0xff);
+    }
+
     public static void setStudyQueryAttributes(Attributes attrs,
             int numberOfStudyRelatedSeries,
             int numberOfStudyRelatedInstances,
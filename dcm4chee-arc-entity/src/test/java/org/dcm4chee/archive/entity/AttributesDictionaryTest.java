@@ -0,0 +1,93 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2011-2013
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4chee.archive.entity;
+
+import static org.junit.Assert.*;
+
+import java.util.zip.Adler32;
+
+import org.junit.Test;
+
+/**
+ * @author Gunter Zeilinger <gunterze@gmail.com>
+ *
+ */
+public class AttributesDictionaryTest {
+
+    private static void assertDictionary(int length, long adler32,
+            AttributesDictionary dict) {
+        byte[] b = dict.dictionary();
+        Adler32 checksum = new Adler32();
+        checksum.update(b, 0, b.length);
+        assertEquals(dict.name(), length, b.length);
+        assertEquals(dict.name(), adler32, checksum.getValue());
+    }
+
+    @Test
+    public void testNone() {
+        assertTrue(AttributesDictionary.NONE.isEmpty());
+        assertDictionary(0, 1L, AttributesDictionary.NONE);
+    }
+
+    @Test
+    public void testPatient() {
+        assertDictionary(74, 0x071b0c69L, AttributesDictionary.PATIENT);
+    }
+
+    @Test
+    public void testStudy() {
+        assertDictionary(98, 0x7aeb1070L, AttributesDictionary.STUDY);
+    }
+
+    @Test
+    public void testSeries() {
+        assertDictionary(140, 0x280c18e8L, AttributesDictionary.SERIES);
+    }
+
+    @Test
+    public void testInstance() {
+        assertDictionary(147, 0x67491b94L, AttributesDictionary.INSTANCE);
+    }
+
+    @Test
+    public void testValueOf() {
+        for (AttributesDictionary dict : AttributesDictionary.values())
+            assertSame(dict, AttributesDictionary.valueOf(dict.id()));
+    }
+}
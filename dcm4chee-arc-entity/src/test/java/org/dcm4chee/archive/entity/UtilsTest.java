@@ -0,0 +1,245 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2011-2013
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4chee.archive.entity;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.dcm4che.data.Attributes;
+import org.dcm4che.data.Fragments;
+import org.dcm4che.data.Sequence;
+import org.dcm4che.data.Tag;
+import org.dcm4che.data.VR;
+import org.junit.Test;
+
+/**
+ * @author Gunter Zeilinger <gunterze@gmail.com>
+ *
+ */
+public class UtilsTest {
+
+    private static Attributes study() {
+        Attributes attrs = new Attributes();
+        attrs.setString(Tag.SpecificCharacterSet, VR.CS, "ISO_IR 100");
+        attrs.setString(Tag.StudyDate, VR.DA, "20130131");
+        attrs.setString(Tag.StudyTime, VR.TM, "123456");
+        attrs.setString(Tag.AccessionNumber, VR.SH, "A1234");
+        attrs.setString(Tag.ReferringPhysicianName, VR.PN, "Doe^John");
+        attrs.setString(Tag.StudyDescription, VR.LO, 
+                "CHEST CHEST CHEST CHEST CHEST CHEST CHEST CHEST");
+        attrs.setString(Tag.StudyInstanceUID, VR.UI,
+                "1.2.40.0.13.1.1.1.1234567890.1234567890.1234567890");
+        attrs.setString(Tag.StudyID, VR.SH, "S1");
+        return attrs;
+    }
+
+    private static byte[] compressed(AttributesDictionary dict) {
+        return compressed(study(), dict);
+    }
+
+    private static byte[] compressed(Attributes attrs,
+            AttributesDictionary dict) {
+        byte[] b = Utils.encodeAttributes(attrs, dict, true);
+        assertTrue(Utils.isCompressed(b));
+        return b;
+    }
+
+    @Test
+    public void testRoundTrip() {
+        byte[] raw = Utils.encodeAttributes(study(), AttributesDictionary.NONE,
+                false);
+        byte[] b = compressed(AttributesDictionary.NONE);
+        assertFalse(Utils.isCompressed(raw));
+        assertTrue(b.length < raw.length);
+        assertEquals(study(), Utils.decodeAttributes(b));
+        assertEquals(study(), Utils.decodeAttributes(raw));
+    }
+
+    @Test
+    public void testRoundTripWithDictionary() {
+        byte[] b = compressed(AttributesDictionary.STUDY);
+        assertEquals(AttributesDictionary.STUDY.id(), b[4]);
+        assertEquals(study(), Utils.decodeAttributes(b));
+    }
+
+    @Test
+    public void testShortBlobsStayUncompressed() {
+        Attributes attrs = new Attributes();
+        attrs.setString(Tag.StudyID, VR.SH, "S1");
+        byte[] b = Utils.encodeAttributes(attrs, AttributesDictionary.STUDY,
+                true);
+        assertFalse(Utils.isCompressed(b));
+        assertEquals(attrs, Utils.decodeAttributes(b));
+    }
+
+    @Test
+    public void testReencode() {
+        AttributesDictionary dict = AttributesDictionary.STUDY;
+        byte[] raw = Utils.encodeAttributes(study(), dict, false);
+        byte[] b = compressed(dict);
+        assertTrue(Utils.needsReencoding(raw, dict, true));
+        assertFalse(Utils.needsReencoding(raw, dict, false));
+        assertTrue(Utils.needsReencoding(b, dict, false));
+        assertFalse(Utils.needsReencoding(b, dict, true));
+        assertTrue(Utils.needsReencoding(b, AttributesDictionary.NONE, true));
+        assertArrayEquals(raw, Utils.reencodeAttributes(b, dict, false));
+        assertArrayEquals(b, Utils.reencodeAttributes(raw, dict, true));
+    }
+
+    private static final int PRIVATE_CREATOR = 0x00090010;
+    private static final int PRIVATE_TAG = 0x00091010;
+
+    private static final int[][] SELECTIONS = {
+        {},
+        { Tag.PatientName },
+        { PRIVATE_CREATOR, PRIVATE_TAG },
+        { Tag.ReferencedSeriesSequence },
+        { Tag.StudyInstanceUID, Tag.OtherPatientIDsSequence },
+        { Tag.PixelData },
+        { Tag.PatientName, Tag.ReferencedSeriesSequence, Tag.PixelData },
+    };
+
+    private static Attributes instance() {
+        Attributes attrs = new Attributes();
+        attrs.setString(Tag.SpecificCharacterSet, VR.CS, "ISO_IR 100");
+        attrs.setString(Tag.SOPInstanceUID, VR.UI, "1.2.3.4.5");
+        Sequence refSeries = attrs.newSequence(Tag.ReferencedSeriesSequence, 1);
+        Attributes series = new Attributes();
+        series.setString(Tag.SeriesInstanceUID, VR.UI, "1.2.3.4");
+        Sequence refSOPs = series.newSequence(Tag.ReferencedSOPSequence, 2);
+        for (int i = 1; i <= 2; i++) {
+            Attributes sop = new Attributes();
+            sop.setString(Tag.ReferencedSOPClassUID, VR.UI,
+                    "1.2.840.10008.5.1.4.1.1.2");
+            sop.setString(Tag.ReferencedSOPInstanceUID, VR.UI, "1.2.3.4." + i);
+            refSOPs.add(sop);
+        }
+        refSeries.add(series);
+        attrs.setString(PRIVATE_CREATOR, VR.LO, "ACME 1.0");
+        attrs.setString(PRIVATE_TAG, VR.LO, "private value");
+        attrs.setString(Tag.PatientName, VR.PN, "M\u00fcller^Hans");
+        attrs.newSequence(Tag.OtherPatientIDsSequence, 0);
+        attrs.setString(Tag.StudyInstanceUID, VR.UI, "1.2.3");
+        attrs.setInt(Tag.Rows, VR.US, 2);
+        Fragments frags = attrs.newFragments(Tag.PixelData, VR.OB, 2);
+        frags.add(new byte[0]);
+        frags.add(new byte[] { 1, 2, 3, 4 });
+        return attrs;
+    }
+
+    private static byte[] encode(Attributes attrs) {
+        return Utils.encodeAttributes(attrs, AttributesDictionary.NONE, false);
+    }
+
+    @Test
+    public void testDecodeAll() {
+        byte[] b = encode(instance());
+        Attributes attrs = new Attributes();
+        Utils.decodeAttributes(attrs, b, null);
+        assertArrayEquals(b, encode(attrs));
+        assertArrayEquals(b, encode(Utils.decodeAttributes(b)));
+    }
+
+    @Test
+    public void testDecodeSelected() {
+        testDecodeSelected(encode(instance()));
+    }
+
+    @Test
+    public void testDecodeSelectedCompressed() {
+        testDecodeSelected(
+                compressed(instance(), AttributesDictionary.INSTANCE));
+    }
+
+    /**
+     * Compares the selective decoding with the selection of attributes
+     * decoded by DicomInputStream, by their encoding, because decoded
+     * values are kept encoded.
+     */
+    private static void testDecodeSelected(byte[] b) {
+        Attributes all = Utils.decodeAttributes(b);
+        for (int[] selection : SELECTIONS) {
+            int[] withCharset = Arrays.copyOf(selection, selection.length + 1);
+            withCharset[selection.length] = Tag.SpecificCharacterSet;
+            Arrays.sort(withCharset);
+            Attributes expected = new Attributes();
+            expected.addSelected(all, withCharset);
+            Attributes attrs = new Attributes();
+            Utils.decodeAttributes(attrs, b, selection);
+            assertArrayEquals(Arrays.toString(selection),
+                    encode(expected), encode(attrs));
+        }
+    }
+
+    @Test(expected = BlobCorruptedException.class)
+    public void testLengthTooLarge() {
+        byte[] b = compressed(AttributesDictionary.STUDY);
+        b[7]++;
+        Utils.decodeAttributes(b);
+    }
+
+    @Test(expected = BlobCorruptedException.class)
+    public void testLengthTooSmall() {
+        byte[] b = compressed(AttributesDictionary.STUDY);
+        b[8]--;
+        Utils.decodeAttributes(b);
+    }
+
+    @Test(expected = BlobCorruptedException.class)
+    public void testUnsupportedFormatVersion() {
+        byte[] b = compressed(AttributesDictionary.STUDY);
+        b[2] = 99;
+        Utils.decodeAttributes(b);
+    }
+
+    @Test(expected = BlobCorruptedException.class)
+    public void testUnsupportedCodec() {
+        byte[] b = compressed(AttributesDictionary.NONE);
+        b[3] = 99;
+        Utils.decodeAttributes(b);
+    }
+
+    @Test(expected = BlobCorruptedException.class)
+    public void testCorruptedData() {
+        byte[] b = compressed(AttributesDictionary.NONE);
+        b[b.length - 1] ^= 0xFF;
+        Utils.decodeAttributes(b);
+    }
+}
@@ -0,0 +1,97 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2011-2013
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+package org.dcm4chee.archive.issuer.impl;
+
+import javax.enterprise.context.ApplicationScoped;
+
+import org.dcm4chee.archive.cache.KeyedLookupCache;
+import org.dcm4chee.archive.entity.Issuer;
+
+/**
+ * Application wide cache of primary keys of already persisted issuers, keyed
+ * by Local Namespace Entity ID, Universal Entity ID and Universal Entity ID
+ * Type.
+ * 
+ * @author Gunter Zeilinger <gunterze@gmail.com>
+ *
+ */
+@ApplicationScoped
+public class IssuerCache extends KeyedLookupCache<IssuerCache.Key> {
+
+    static final class Key {
+        private final String localNamespaceEntityID;
+        private final String universalEntityID;
+        private final String universalEntityIDType;
+
+        Key(Issuer issuer) {
+            this.localNamespaceEntityID = issuer.getLocalNamespaceEntityID();
+            this.universalEntityID = issuer.getUniversalEntityID();
+            this.universalEntityIDType = universalEntityID != null
+                    ? issuer.getUniversalEntityIDType()
+                    : null;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = hashCode(localNamespaceEntityID);
+            result = 31 * result + hashCode(universalEntityID);
+            result = 31 * result + hashCode(universalEntityIDType);
+            return result;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof Key))
+                return false;
+            Key other = (Key) obj;
+            return equals(localNamespaceEntityID, other.localNamespaceEntityID)
+                    && equals(universalEntityID, other.universalEntityID)
+                    && equals(universalEntityIDType, other.universalEntityIDType);
+        }
+
+        private static int hashCode(String s) {
+            return s != null ? s.hashCode() : 0;
+        }
+
+        private static boolean equals(String s1, String s2) {
+            return s1 == null ? s2 == null : s1.equals(s2);
+        }
+    }
+}
@@ -38,14 +38,17 @@
 
 package org.dcm4chee.archive.issuer.impl;
 
+import java.util.concurrent.Callable;
+
+import javax.ejb.EJB;
 import javax.ejb.Stateless;
+import javax.inject.Inject;
 import javax.persistence.EntityManager;
-import javax.persistence.NoResultException;
 import javax.persistence.PersistenceContext;
-import javax.persistence.TypedQuery;
 
 import org.dcm4chee.archive.entity.Issuer;
 import org.dcm4chee.archive.issuer.IssuerService;
+import org.dcm4chee.archive.lock.ConstraintViolations;
 
 /**
  * @author Gunter Zeilinger <gunterze@gmail.com>
@@ -54,45 +57,50 @@ import org.dcm4chee.archive.issuer.IssuerService;
 @Stateless
 public class IssuerServiceBean implements IssuerService {
 
+    static final int MAX_RETRIES = 2;
+
     @PersistenceContext(unitName="dcm4chee-arc")
     private EntityManager em;
 
+    @Inject
+    private IssuerCache cache;
+
+    @EJB
+    private IssuerFinder finder;
+
     @Override
-    public Issuer findOrCreate(Issuer issuer) {
-        
+    public Issuer findOrCreate(final Issuer issuer) {
         try {
-            Issuer result = findOrCreate(em, issuer);
-            return result;
+            IssuerCache.Key key = new IssuerCache.Key(issuer);
+            Long pk = cache.get(key);
+            if (pk != null) {
+                Issuer result = em.find(Issuer.class, pk);
+                if (result != null)
+                    return result;
+                // deleted or not visible in the snapshot of this transaction
+                cache.remove(key);
+            }
+            return em.getReference(Issuer.class,
+                    cache.findOrCreate(key, new Callable<Long>() {
+                        @Override
+                        public Long call() {
+                            return findOrCreatePk(issuer);
+                        }
+                    }));
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
     }
 
-    private Issuer findOrCreate(EntityManager em, Issuer issuer) {
-        try {
-            String entityID = issuer.getLocalNamespaceEntityID();
-            String entityUID = issuer.getUniversalEntityID();
-            String entityUIDType = issuer.getUniversalEntityIDType();
-            TypedQuery<Issuer> query;
-            if (entityID == null) {
-                query = em.createNamedQuery(Issuer.FIND_BY_ENTITY_UID, Issuer.class)
-                    .setParameter(1, entityUID)
-                    .setParameter(2, entityUIDType);
-            } else if (entityUID == null) {
-                query = em.createNamedQuery(Issuer.FIND_BY_ENTITY_ID, Issuer.class)
-                    .setParameter(1, entityID);
-            } else {
-                query = em.createNamedQuery(Issuer.FIND_BY_ENTITY_ID_OR_UID, Issuer.class)
-                    .setParameter(1, entityID)
-                    .setParameter(2, entityUID)
-                    .setParameter(3, entityUIDType);
+    private long findOrCreatePk(Issuer issuer) {
+        for (int retry = 0;; retry++) {
+            try {
+                return finder.findOrCreate(issuer);
+            } catch (RuntimeException e) {
+                // inserted by a concurrent transaction, e.g. on another node
+                if (retry >= MAX_RETRIES || !ConstraintViolations.isCausedBy(e))
+                    throw e;
             }
-            return query.getSingleResult();
-        } catch (NoResultException e) {
-            em.persist(issuer);
-            em.flush();
-            em.refresh(issuer);
-            return issuer;
         }
     }
 }
@@ -44,6 +44,7 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 
+import javax.annotation.Resource;
 import javax.ejb.EJB;
 import javax.ejb.Stateless;
 import javax.persistence.EntityManager;
@@ -51,6 +52,7 @@ import javax.persistence.NoResultException;
 import javax.persistence.NonUniqueResultException;
 import javax.persistence.PersistenceContext;
 import javax.persistence.TypedQuery;
+import javax.transaction.TransactionSynchronizationRegistry;
 
 import org.dcm4che.data.Attributes;
 import org.dcm4che.data.IDWithIssuer;
@@ -62,6 +64,7 @@ import org.dcm4chee.archive.entity.Patient;
 import org.dcm4chee.archive.entity.QPatient;
 import org.dcm4chee.archive.entity.Utils;
 import org.dcm4chee.archive.issuer.IssuerService;
+import org.dcm4chee.archive.lock.EntityLocks;
 import org.dcm4chee.archive.patient.PatientCircularMergedException;
 import org.dcm4chee.archive.patient.PatientMergedException;
 import org.dcm4chee.archive.patient.PatientService;
@@ -85,6 +88,9 @@ public class PatientServiceBean implements PatientService {
     @EJB
     private IssuerService issuerService;
 
+    @Resource
+    private TransactionSynchronizationRegistry tsr;
+
     @Override
     public Patient findUniqueOrCreatePatient(
             AttributeFilter filter, FuzzyStr fuzzyStr, Attributes data,
@@ -95,7 +101,9 @@ public class PatientServiceBean implements PatientService {
 
         Patient patient;
         try {
-            patient = findPatient(pid);
+            patient = findPatientOrLock(pid);
+            if (patient == null)
+                return createNewPatient(filter, fuzzyStr, data, pid);
             Patient mergedWith = patient.getMergedWith();
             if (mergedWith != null)
                 if (followMergedWith)
@@ -107,13 +115,31 @@ public class PatientServiceBean implements PatientService {
                 mergeAttributes(filter, fuzzyStr, patient, data, pid);
         } catch (NonUniqueResultException e) {
             patient = createNewPatient(filter, fuzzyStr, data, pid);
-        } catch (NoResultException e) {
-            patient = createNewPatient(filter, fuzzyStr, data, pid);
-            // TO DO check if patient was inserted concurrently
         }
         return patient;
     }
 
+    /**
+     * Returns the Patient with the specified Patient ID, or {@code null} if
+     * it does not exist. In that case, the lock for the Patient ID is held
+     * until the transaction completes, so concurrent transactions wait for
+     * the Patient created by this transaction, instead of creating it again.
+     * If the lock cannot be acquired, {@code LockTimeoutException} is thrown.
+     */
+    private Patient findPatientOrLock(IDWithIssuer pid) {
+        try {
+            return findPatient(pid);
+        } catch (NoResultException e) {
+            EntityLocks.lock(tsr, pid.getID());
+        }
+        // check if the Patient was created by a concurrent transaction
+        try {
+            return findPatient(pid);
+        } catch (NoResultException e) {
+            return null;
+        }
+    }
+
     private Patient followMergedWith(Patient patient) {
         ArrayList<Patient> mergedPatients = new ArrayList<Patient>();
         Patient mergedWith;
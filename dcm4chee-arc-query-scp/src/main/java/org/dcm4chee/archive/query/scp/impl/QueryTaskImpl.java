@@ -39,6 +39,9 @@
 package org.dcm4chee.archive.query.scp.impl;
 
 import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 import org.dcm4che.data.Attributes;
 import org.dcm4che.data.IDWithIssuer;
@@ -62,6 +65,11 @@ import org.dcm4chee.archive.query.Query;
  */
 class QueryTaskImpl extends BasicQueryTask {
 
+    private static final int PREFETCH_SIZE = 16;
+
+    // marks the end of prefetched matches
+    private static final Attributes END = new Attributes(0);
+
     private final Query query;
     private final IDWithIssuer[] pids;
     private final String[] patientNames;
@@ -70,6 +78,12 @@ class QueryTaskImpl extends BasicQueryTask {
     private final boolean returnOtherPatientIDs;
     private final boolean returnOtherPatientNames;
     private final boolean skipMatchesWithoutPatientID;
+    private final BlockingQueue<Attributes> prefetched =
+            new ArrayBlockingQueue<Attributes>(PREFETCH_SIZE);
+    private volatile boolean stopped;
+    private volatile Exception prefetchException;
+    private boolean prefetching;
+    private Attributes next;
 
     public QueryTaskImpl(Association as, PresentationContext pc, Attributes rq,
             Attributes keys, IDWithIssuer[] pids, QueryParam queryParam,
@@ -94,10 +108,76 @@ class QueryTaskImpl extends BasicQueryTask {
                 ? patientService.patientNamesOf(pids)
                 : null;
         this.skipMatchesWithoutPatientID = skipMatchesWithoutPatientID;
+        query.setReturnKeys(returnKeys(keys));
      }
 
+    /**
+     * Returns the tags of attributes of a match accessed by
+     * {@link #adjust(Attributes)}: the requested keys and the attributes
+     * needed to adjust Patient ID and Accession Number.
+     */
+    private int[] returnKeys(Attributes keys) {
+        int[] tags = keys.tags();
+        int[] returnKeys = Arrays.copyOf(tags, tags.length + 8);
+        int i = tags.length;
+        returnKeys[i++] = Tag.RetrieveAETitle;
+        returnKeys[i++] = Tag.InstanceAvailability;
+        returnKeys[i++] = Tag.PatientID;
+        returnKeys[i++] = Tag.IssuerOfPatientID;
+        returnKeys[i++] = Tag.IssuerOfPatientIDQualifiersSequence;
+        returnKeys[i++] = Tag.AccessionNumber;
+        returnKeys[i++] = Tag.IssuerOfAccessionNumberSequence;
+        returnKeys[i++] = Tag.PatientName;
+        return returnKeys;
+    }
+
+    /**
+     * Fetches, decodes and adjusts matches ahead into a bounded queue, so
+     * the database is accessed while previous pending C-FIND-RSPs are sent.
+     * The query - and its StatelessSession - is only accessed and closed
+     * by this worker.
+     */
+    private class Prefetcher implements Runnable {
+
+        @Override
+        public void run() {
+            try {
+                while (!stopped && query.hasMoreMatches()) {
+                    Attributes match = adjustMatch(query.nextMatch());
+                    if (match != null)
+                        prefetched.put(match);
+                }
+            } catch (InterruptedException e) {
+                stopped = true;
+            } catch (Exception e) {
+                prefetchException = e;
+            } finally {
+                closeQuery();
+                putEnd();
+            }
+        }
+
+        private void putEnd() {
+            if (!stopped) {
+                try {
+                    prefetched.put(END);
+                    return;
+                } catch (InterruptedException e) {
+                    stopped = true;
+                }
+            }
+            prefetched.clear();
+            prefetched.offer(END);
+        }
+    }
+
     @Override
     protected Attributes adjust(Attributes match) {
+        // already adjusted by the Prefetcher
+        return match;
+    }
+
+    private Attributes adjustMatch(Attributes match) {
         if (match == null)
             return null;
 
@@ -174,33 +254,61 @@ class QueryTaskImpl extends BasicQueryTask {
         }
     }
 
+    @Override
+    public void onCancelRQ(Association as) {
+        super.onCancelRQ(as);
+        stopPrefetch();
+    }
+
+    private void stopPrefetch() {
+        stopped = true;
+        // unblock the Prefetcher waiting for space in the queue
+        prefetched.clear();
+    }
+
     @Override
     protected void close() {
+        if (prefetching)
+            stopPrefetch();
+        else
+            closeQuery();
+//         AuditUtils.logQuery(as, rq, keys);
+    }
+
+    private void closeQuery() {
          try {
             query.close();
         } catch (SQLException e) {
             // TODO Auto-generated catch block
             e.printStackTrace();
         }
-//         AuditUtils.logQuery(as, rq, keys);
     }
 
     @Override
     protected boolean hasMoreMatches() throws DicomServiceException {
+        if (!prefetching) {
+            prefetching = true;
+            as.getApplicationEntity().getDevice().execute(new Prefetcher());
+        }
         try {
-            return query.hasMoreMatches();
-        }  catch (Exception e) {
+            if (next == null)
+                next = prefetched.take();
+        } catch (InterruptedException e) {
             throw wrapException(Status.UnableToProcess, e);
         }
+        if (next != END)
+            return true;
+
+        if (prefetchException != null)
+            throw wrapException(Status.UnableToProcess, prefetchException);
+        return false;
     }
 
     @Override
     protected Attributes nextMatch() throws DicomServiceException {
-        try {
-            return query.nextMatch();
-        }  catch (Exception e) {
-            throw wrapException(Status.UnableToProcess, e);
-        }
+        Attributes match = next;
+        next = null;
+        return match;
     }
 
     @Override
@@ -39,19 +39,28 @@
 package org.dcm4chee.archive.query.impl;
 
 import java.sql.SQLException;
+import java.util.Arrays;
 import java.util.NoSuchElementException;
 
 import org.dcm4che.data.Attributes;
 import org.dcm4che.data.IDWithIssuer;
+import org.dcm4che.data.Tag;
 import org.dcm4chee.archive.conf.QueryParam;
 import org.dcm4chee.archive.query.Query;
 import org.hibernate.ScrollMode;
 import org.hibernate.ScrollableResults;
 import org.hibernate.StatelessSession;
 
+import com.mysema.query.BooleanBuilder;
 import com.mysema.query.jpa.hibernate.HibernateQuery;
+import com.mysema.query.types.ConstantImpl;
 import com.mysema.query.types.Expression;
+import com.mysema.query.types.ExpressionUtils;
+import com.mysema.query.types.Ops;
+import com.mysema.query.types.Order;
 import com.mysema.query.types.OrderSpecifier;
+import com.mysema.query.types.Predicate;
+import com.mysema.query.types.path.NumberPath;
 
 /**
  * @author Gunter Zeilinger <gunterze@gmail.com>
@@ -72,6 +81,24 @@ public abstract class AbstractQuery implements Query {
 
     private boolean optionalKeyNotSupported;
 
+    private long limit;
+
+    private boolean limitExceeded;
+
+    private long rowCount;
+
+    private QueryCountCache.Key countKey;
+
+    private OrderSpecifier<?>[] orderSpecifiers;
+
+    private String continueAfter;
+
+    private int sortKeyIndex;
+
+    private Object[] lastSortKeys;
+
+    protected int[] returnKeys;
+
     public AbstractQuery(QueryServiceBean service) {
         this.service = service;
     }
@@ -82,31 +109,112 @@ public abstract class AbstractQuery implements Query {
 //        connection = service.getConnection();
         session = service.openStatelessSession();
         query = createQuery(pids, keys);
+        if (queryParam.getFetchSize() > 0)
+            query.setFetchSize(queryParam.getFetchSize());
+        countKey = new QueryCountCache.Key(getClass(), pids, keys, queryParam);
         return this;
     }
 
     protected abstract Expression<?>[] select();
 
+    protected abstract NumberPath<Long> pk();
+
     protected abstract HibernateQuery createQuery(IDWithIssuer[] pids, Attributes keys);
 
     protected abstract Attributes toAttributes(ScrollableResults results);
 
     @Override
     public void executeQuery() {
-        results = query.scroll(ScrollMode.FORWARD_ONLY, select());
-        hasMoreMatches = results.next();
+        Expression<?>[] select = select();
+        if (orderSpecifiers != null) {
+            if (continueAfter != null)
+                query.where(seekPredicate(ContinuationToken.decode(
+                        continueAfter, orderSpecifiers.length + 1)));
+            select = selectWithSortKeys(select);
+        }
+        // fetch one more row to detect if there are more matches than the
+        // limit, without counting all matches by a separate query
+        if (limit > 0)
+            query.limit(limit + 1);
+        results = query.scroll(ScrollMode.FORWARD_ONLY, select);
+        hasMoreMatches = nextRow();
+    }
+
+    private Expression<?>[] selectWithSortKeys(Expression<?>[] select) {
+        Expression<?>[] result =
+                new Expression<?>[select.length + orderSpecifiers.length + 1];
+        System.arraycopy(select, 0, result, 0, select.length);
+        for (int i = 0; i < orderSpecifiers.length; i++)
+            result[select.length + i] = orderSpecifiers[i].getTarget();
+        result[result.length - 1] = pk();
+        sortKeyIndex = select.length;
+        return result;
+    }
+
+    /**
+     * Creates the predicate selecting rows following the row with the
+     * specified sort key values in the sort order:
+     * {@code k1 > v1 OR (k1 = v1 AND k2 > v2) OR ... OR
+     * (k1 = v1 AND ... AND kn = vn AND pk > vpk)}
+     */
+    private Predicate seekPredicate(Object[] values) {
+        BooleanBuilder seek = new BooleanBuilder();
+        BooleanBuilder equal = new BooleanBuilder();
+        for (int i = 0; i <= orderSpecifiers.length; i++) {
+            Expression<?> target;
+            boolean asc;
+            if (i < orderSpecifiers.length) {
+                target = orderSpecifiers[i].getTarget();
+                asc = orderSpecifiers[i].getOrder() == Order.ASC;
+            } else {
+                target = pk();
+                asc = true;
+            }
+            // ContinuationToken does not contain null values
+            Expression<Object> constant = ConstantImpl.create(values[i]);
+            Predicate follows = ExpressionUtils.predicate(
+                    asc ? Ops.GT : Ops.LT, target, constant);
+            seek.or(new BooleanBuilder().and(equal.getValue()).and(follows));
+            equal.and(ExpressionUtils.predicate(Ops.EQ, target, constant));
+        }
+        return seek;
+    }
+
+    private boolean nextRow() {
+        if (!results.next())
+            return false;
+
+        if (limit > 0 && ++rowCount > limit) {
+            limitExceeded = true;
+            return false;
+        }
+        return true;
     }
 
     @Override
     public long count() {
         checkQuery();
-        return query.count();
+        // executeQuery() restricts the query by the continuation token and
+        // the limit, so its count would not match the cache key anymore
+        if (results != null)
+            throw new IllegalStateException("query already executed");
+        long count = service.getCountCache().get(countKey);
+        if (count < 0) {
+            count = query.count();
+            service.getCountCache().put(countKey, count);
+        }
+        return count;
     }
 
     @Override
     public void limit(long limit) {
         checkQuery();
-        query.limit(limit);
+        this.limit = limit;
+    }
+
+    @Override
+    public boolean isLimitExceeded() {
+        return limitExceeded;
     }
 
     @Override
@@ -119,6 +227,50 @@ public abstract class AbstractQuery implements Query {
     public void orderBy(OrderSpecifier<?>... orderSpecifiers) {
         checkQuery();
         query.orderBy(orderSpecifiers);
+        // unique sort order, required to continue after the last match
+        query.orderBy(pk().asc());
+        this.orderSpecifiers = orderSpecifiers;
+    }
+
+    @Override
+    public void continueAfter(String continuationToken) {
+        checkQuery();
+        this.continueAfter = continuationToken;
+    }
+
+    @Override
+    public String getContinuationToken() {
+        return lastSortKeys != null
+                ? ContinuationToken.encode(lastSortKeys)
+                : null;
+    }
+
+    @Override
+    public void setReturnKeys(int... tags) {
+        int[] sorted = Arrays.copyOf(tags, tags.length * 2 + 1);
+        int n = tags.length;
+        sorted[n++] = Tag.SpecificCharacterSet;
+        for (int tag : tags)
+            if (isPrivateDataElement(tag))
+                sorted[n++] = privateCreatorOf(tag);
+        Arrays.sort(sorted, 0, n);
+        int unique = 0;
+        for (int i = 0; i < n; i++)
+            if (unique == 0 || sorted[i] != sorted[unique - 1])
+                sorted[unique++] = sorted[i];
+        this.returnKeys = Arrays.copyOf(sorted, unique);
+    }
+
+    /**
+     * Returns if the tag is a private data element (gggg,xxyy) with odd
+     * group gggg and xx &gt;= 10H, reserved by Private Creator (gggg,00xx).
+     */
+    private static boolean isPrivateDataElement(int tag) {
+        return (tag & 0x00010000) != 0 && (tag & 0x0000FF00) >= 0x00001000;
+    }
+
+    private static int privateCreatorOf(int tag) {
+        return (tag & 0xFFFF0000) | ((tag >>> 8) & 0xFF);
     }
 
     @Override
@@ -136,10 +288,19 @@ public abstract class AbstractQuery implements Query {
         if (!hasMoreMatches)
             throw new NoSuchElementException();
         Attributes attrs = toAttributes(results);
-        hasMoreMatches = results.next();
+        if (orderSpecifiers != null)
+            lastSortKeys = sortKeys();
+        hasMoreMatches = nextRow();
         return attrs;
     }
 
+    private Object[] sortKeys() {
+        Object[] values = new Object[orderSpecifiers.length + 1];
+        for (int i = 0; i < values.length; i++)
+            values[i] = results.get(sortKeyIndex + i);
+        return values;
+    }
+
     private void checkQuery() {
         if (query == null)
             throw new IllegalStateException("query not initalized");
@@ -0,0 +1,131 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2011-2013
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+
+package org.dcm4chee.archive.query.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import javax.xml.bind.DatatypeConverter;
+
+/**
+ * Encodes the sort key values and the primary key of the last returned
+ * match into an URL safe token, and decodes it again. Only values of types
+ * used as sort keys - strings and integral numbers - are supported. Null
+ * values are not supported, because the position of nulls in the sort
+ * order depends on the database.
+ * 
+ * @author Gunter Zeilinger <gunterze@gmail.com>
+ *
+ */
+class ContinuationToken {
+
+    private static final int STRING = 1;
+    private static final int INTEGER = 2;
+    private static final int LONG = 3;
+
+    /**
+     * @return token or {@code null}, if a value is {@code null} or of an
+     *         unsupported type
+     */
+    static String encode(Object[] values) {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bout);
+        try {
+            out.writeByte(values.length);
+            for (Object value : values) {
+                if (value instanceof String) {
+                    out.writeByte(STRING);
+                    out.writeUTF((String) value);
+                } else if (value instanceof Integer) {
+                    out.writeByte(INTEGER);
+                    out.writeInt((Integer) value);
+                } else if (value instanceof Long) {
+                    out.writeByte(LONG);
+                    out.writeLong((Long) value);
+                } else
+                    return null;
+            }
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return DatatypeConverter.printBase64Binary(bout.toByteArray())
+                .replace('+', '-').replace('/', '_');
+    }
+
+    /**
+     * @throws IllegalArgumentException if the token is malformed or does
+     *         not contain the specified number of values
+     */
+    static Object[] decode(String token, int length) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+                    DatatypeConverter.parseBase64Binary(
+                            token.replace('-', '+').replace('_', '/'))));
+            if (in.readUnsignedByte() != length)
+                throw new IllegalArgumentException(
+                        "continuation token does not match sort order: "
+                        + token);
+            Object[] values = new Object[length];
+            for (int i = 0; i < length; i++) {
+                switch (in.readUnsignedByte()) {
+                case STRING:
+                    values[i] = in.readUTF();
+                    break;
+                case INTEGER:
+                    values[i] = in.readInt();
+                    break;
+                case LONG:
+                    values[i] = in.readLong();
+                    break;
+                default:
+                    throw new IllegalArgumentException(
+                            "invalid continuation token: " + token);
+                }
+            }
+            return values;
+        } catch (IOException e) {
+            throw new IllegalArgumentException(
+                    "invalid continuation token: " + token, e);
+        }
+    }
+}
@@ -52,6 +52,7 @@ import org.hibernate.ScrollableResults;
 import com.mysema.query.BooleanBuilder;
 import com.mysema.query.jpa.hibernate.HibernateQuery;
 import com.mysema.query.types.Expression;
+import com.mysema.query.types.path.NumberPath;
 
 /**
  * @author Gunter Zeilinger <gunterze@gmail.com>
@@ -78,6 +79,11 @@ class InstanceQuery extends AbstractQuery {
         return SELECT;
     }
 
+    @Override
+    protected NumberPath<Long> pk() {
+        return QInstance.instance.pk;
+    }
+
     @Override
     protected HibernateQuery createQuery(IDWithIssuer[] pids, Attributes keys) {
         BooleanBuilder builder = new BooleanBuilder();
@@ -105,8 +111,14 @@ class InstanceQuery extends AbstractQuery {
                     .getAttributes(seriesPk, queryParam);
             this.seriesPk = seriesPk;
         }
-        Attributes attrs = new Attributes(seriesAttrs);
-        Utils.decodeAttributes(attrs, instAttributes);
+        Attributes attrs;
+        if (returnKeys != null) {
+            attrs = new Attributes(returnKeys.length);
+            attrs.addSelected(seriesAttrs, returnKeys);
+        } else {
+            attrs = new Attributes(seriesAttrs);
+        }
+        Utils.decodeAttributes(attrs, instAttributes, returnKeys);
         Utils.setRetrieveAET(attrs, retrieveAETs, externalRetrieveAET);
         Utils.setAvailability(attrs, availability);
         return attrs;
@@ -48,6 +48,7 @@ import org.hibernate.ScrollableResults;
 import com.mysema.query.BooleanBuilder;
 import com.mysema.query.jpa.hibernate.HibernateQuery;
 import com.mysema.query.types.Expression;
+import com.mysema.query.types.path.NumberPath;
 
 /**
  * @author Gunter Zeilinger <gunterze@gmail.com>
@@ -68,6 +69,11 @@ class PatientQuery extends AbstractQuery {
         return SELECT;
     }
 
+    @Override
+    protected NumberPath<Long> pk() {
+        return QPatient.patient.pk;
+    }
+
     @Override
     protected HibernateQuery createQuery(IDWithIssuer[] pids, Attributes keys) {
         BooleanBuilder builder = new BooleanBuilder();
@@ -80,7 +86,7 @@ class PatientQuery extends AbstractQuery {
     @Override
     public Attributes toAttributes(ScrollableResults results) {
         Attributes attrs = new Attributes();
-        Utils.decodeAttributes(attrs, results.getBinary(1));
+        Utils.decodeAttributes(attrs, results.getBinary(1), returnKeys);
         return attrs;
     }
 }
@@ -0,0 +1,180 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2011-2013
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+
+package org.dcm4chee.archive.query.impl;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.dcm4che.data.Attributes;
+import org.dcm4che.data.IDWithIssuer;
+import org.dcm4che.data.Issuer;
+import org.dcm4chee.archive.conf.AttributeFilter;
+import org.dcm4chee.archive.conf.QueryParam;
+
+/**
+ * Short-lived cache of the number of matches of recently executed queries,
+ * so paging through the result of a broad query by repeated requests with
+ * different offsets does not scan all matching rows for each page again.
+ * 
+ * @author Gunter Zeilinger <gunterze@gmail.com>
+ *
+ */
+class QueryCountCache {
+
+    private final int maxSize;
+    private final long timeToLive;
+
+    private final LinkedHashMap<Key, Entry> map =
+            new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                    return size() > maxSize;
+                }
+            };
+
+    private static final class Entry {
+        final long count;
+        final long expires;
+
+        Entry(long count, long expires) {
+            this.count = count;
+            this.expires = expires;
+        }
+    }
+
+    public QueryCountCache(int maxSize, long timeToLive) {
+        this.maxSize = maxSize;
+        this.timeToLive = timeToLive;
+    }
+
+    public synchronized long get(Key key) {
+        Entry entry = map.get(key);
+        if (entry == null)
+            return -1L;
+
+        if (entry.expires - System.currentTimeMillis() < 0) {
+            map.remove(key);
+            return -1L;
+        }
+        return entry.count;
+    }
+
+    public synchronized void put(Key key, long count) {
+        long now = System.currentTimeMillis();
+        for (Iterator<Entry> iter = map.values().iterator(); iter.hasNext();)
+            if (iter.next().expires - now < 0)
+                iter.remove();
+        map.put(key, new Entry(count, now + timeToLive));
+    }
+
+    /**
+     * Identifies a query by its type and all parameters which affect the
+     * set of matching entities, ignoring parameters which only affect the
+     * returned attributes. Attribute filters are compared by identity, so
+     * counts cached before a reconfiguration, which replaces the filters,
+     * are not used after it.
+     */
+    static final class Key {
+        private final Class<?> queryClass;
+        private final IDWithIssuer[] pids;
+        private final Attributes keys;
+        private final boolean combinedDatetimeMatching;
+        private final boolean fuzzySemanticMatching;
+        private final boolean matchUnknown;
+        private final boolean showRejectedInstances;
+        private final String[] accessControlIDs;
+        private final Issuer defaultIssuerOfAccessionNumber;
+        private final AttributeFilter[] attributeFilters;
+        private final int hash;
+
+        Key(Class<?> queryClass, IDWithIssuer[] pids, Attributes keys,
+                QueryParam queryParam) {
+            this.queryClass = queryClass;
+            this.pids = pids != null ? pids.clone() : null;
+            this.keys = new Attributes(keys);
+            this.combinedDatetimeMatching =
+                    queryParam.isCombinedDatetimeMatching();
+            this.fuzzySemanticMatching = queryParam.isFuzzySemanticMatching();
+            this.matchUnknown = queryParam.isMatchUnknown();
+            this.showRejectedInstances = queryParam.isShowRejectedInstances();
+            this.accessControlIDs = queryParam.getAccessControlIDs();
+            this.defaultIssuerOfAccessionNumber =
+                    queryParam.getDefaultIssuerOfAccessionNumber();
+            this.attributeFilters = queryParam.getAttributeFilters().clone();
+            this.hash = 31 * (31 * queryClass.hashCode()
+                    + Arrays.hashCode(pids)) + this.keys.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof Key))
+                return false;
+            Key other = (Key) obj;
+            return hash == other.hash
+                    && queryClass == other.queryClass
+                    && combinedDatetimeMatching == other.combinedDatetimeMatching
+                    && fuzzySemanticMatching == other.fuzzySemanticMatching
+                    && matchUnknown == other.matchUnknown
+                    && showRejectedInstances == other.showRejectedInstances
+                    && Arrays.equals(accessControlIDs, other.accessControlIDs)
+                    && equals(defaultIssuerOfAccessionNumber,
+                            other.defaultIssuerOfAccessionNumber)
+                    && Arrays.equals(attributeFilters, other.attributeFilters)
+                    && Arrays.equals(pids, other.pids)
+                    && keys.equals(other.keys);
+        }
+
+        private static boolean equals(Object o1, Object o2) {
+            return o1 == null ? o2 == null : o1.equals(o2);
+        }
+    }
+}
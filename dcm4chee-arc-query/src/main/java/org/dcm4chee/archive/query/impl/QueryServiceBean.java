@@ -59,6 +59,9 @@ import org.hibernate.StatelessSession;
 @Stateless
 public class QueryServiceBean implements QueryService {
 
+    private static final QueryCountCache countCache =
+            new QueryCountCache(1000, 10000L);
+
     @PersistenceContext(unitName="dcm4chee-arc")
     private EntityManager em;
 
@@ -69,6 +72,10 @@ public class QueryServiceBean implements QueryService {
         return seriesService;
     }
 
+    QueryCountCache getCountCache() {
+        return countCache;
+    }
+
     StatelessSession openStatelessSession() {
         return em.unwrap(Session.class).getSessionFactory().openStatelessSession();
     }
@@ -51,6 +51,7 @@ import org.hibernate.ScrollableResults;
 import com.mysema.query.BooleanBuilder;
 import com.mysema.query.jpa.hibernate.HibernateQuery;
 import com.mysema.query.types.Expression;
+import com.mysema.query.types.path.NumberPath;
 
 /**
  * @author Gunter Zeilinger <gunterze@gmail.com>
@@ -88,6 +89,11 @@ class SeriesQuery extends AbstractQuery {
         return SELECT;
     }
 
+    @Override
+    protected NumberPath<Long> pk() {
+        return QSeries.series.pk;
+    }
+
     @Override
     protected HibernateQuery createQuery(IDWithIssuer[] pids, Attributes keys) {
         BooleanBuilder builder = new BooleanBuilder();
@@ -117,7 +123,7 @@ class SeriesQuery extends AbstractQuery {
             this.studyPk = studyPk;
         }
         Attributes attrs = new Attributes(studyAttrs);
-        Utils.decodeAttributes(attrs, seriesAttributes);
+        Utils.decodeAttributes(attrs, seriesAttributes, returnKeys);
         if (a[0] == -1)
             a = service.getSeriesService()
                     .calculateNumberOfSeriesRelatedInstances(seriesPk);
@@ -147,8 +153,8 @@ class SeriesQuery extends AbstractQuery {
         byte[] studyAttributes = results.getBinary(14);
         byte[] patientAttributes = results.getBinary(15);
         Attributes attrs = new Attributes();
-        Utils.decodeAttributes(attrs, patientAttributes);
-        Utils.decodeAttributes(attrs, studyAttributes);
+        Utils.decodeAttributes(attrs, patientAttributes, returnKeys);
+        Utils.decodeAttributes(attrs, studyAttributes, returnKeys);
         if ((a[0] | a[1] | a[2] | a[3]) < 0)
             a = service.getSeriesService()
                     .calculateNumberOfStudyRelatedInstances(studyPk);
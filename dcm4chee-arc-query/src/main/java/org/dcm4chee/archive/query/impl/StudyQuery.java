@@ -50,6 +50,7 @@ import org.hibernate.ScrollableResults;
 import com.mysema.query.BooleanBuilder;
 import com.mysema.query.jpa.hibernate.HibernateQuery;
 import com.mysema.query.types.Expression;
+import com.mysema.query.types.path.NumberPath;
 
 /**
  * @author Gunter Zeilinger <gunterze@gmail.com>
@@ -80,6 +81,11 @@ class StudyQuery extends AbstractQuery {
         return SELECT;
     }
 
+    @Override
+    protected NumberPath<Long> pk() {
+        return QStudy.study.pk;
+    }
+
     @Override
     protected HibernateQuery createQuery(IDWithIssuer[] pids, Attributes keys) {
         BooleanBuilder builder = new BooleanBuilder();
@@ -107,8 +113,8 @@ class StudyQuery extends AbstractQuery {
         byte[] studyAttributes = results.getBinary(10);
         byte[] patientAttributes = results.getBinary(11);
         Attributes attrs = new Attributes();
-        Utils.decodeAttributes(attrs, patientAttributes);
-        Utils.decodeAttributes(attrs, studyAttributes);
+        Utils.decodeAttributes(attrs, patientAttributes, returnKeys);
+        Utils.decodeAttributes(attrs, studyAttributes, returnKeys);
         if (a[2] == -1)
             a = service.getSeriesService()
                     .calculateNumberOfStudyRelatedInstances(studyPk);
@@ -0,0 +1,104 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2011-2013
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4chee.archive.query.impl;
+
+import static org.junit.Assert.*;
+
+import java.util.Date;
+
+import org.junit.Test;
+
+/**
+ * @author Gunter Zeilinger <gunterze@gmail.com>
+ *
+ */
+public class ContinuationTokenTest {
+
+    private static final Object[] VALUES = {
+        "DOE^JOHN", "", "\u00e4\u00f6\u00fc/+?",
+        20140101, -1, Long.MAX_VALUE, 4711L
+    };
+
+    @Test
+    public void testRoundTrip() {
+        String token = ContinuationToken.encode(VALUES);
+        assertNotNull(token);
+        assertArrayEquals(VALUES,
+                ContinuationToken.decode(token, VALUES.length));
+    }
+
+    @Test
+    public void testURLSafe() {
+        for (int i = 0; i < 256; i++) {
+            String token = ContinuationToken.encode(new Object[] {
+                    "" + (char) i + (char) (i * 7), (long) i << 48 });
+            assertFalse(token, token.contains("+"));
+            assertFalse(token, token.contains("/"));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLengthMismatch() {
+        ContinuationToken.decode(ContinuationToken.encode(VALUES),
+                VALUES.length + 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTruncated() {
+        String token = ContinuationToken.encode(VALUES);
+        ContinuationToken.decode(token.substring(0, token.length() / 8 * 4),
+                VALUES.length);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidType() {
+        // length 1, type 0
+        ContinuationToken.decode("AQA=", 1);
+    }
+
+    @Test
+    public void testNullValue() {
+        assertNull(ContinuationToken.encode(new Object[] { "DOE", null, 1L }));
+    }
+
+    @Test
+    public void testUnsupportedType() {
+        assertNull(ContinuationToken.encode(new Object[] { new Date(), 1L }));
+    }
+}
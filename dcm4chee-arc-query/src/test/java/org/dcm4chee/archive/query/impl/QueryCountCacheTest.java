@@ -0,0 +1,109 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2011-2013
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+package org.dcm4chee.archive.query.impl;
+
+import static org.junit.Assert.*;
+
+import org.dcm4che.data.Attributes;
+import org.dcm4che.data.Issuer;
+import org.dcm4che.data.Tag;
+import org.dcm4che.data.VR;
+import org.dcm4chee.archive.conf.AttributeFilter;
+import org.dcm4chee.archive.conf.QueryParam;
+import org.junit.Test;
+
+/**
+ * @author Gunter Zeilinger <gunterze@gmail.com>
+ *
+ */
+public class QueryCountCacheTest {
+
+    private static final AttributeFilter[] FILTERS = {
+        new AttributeFilter(Tag.PatientID),
+        new AttributeFilter(Tag.StudyInstanceUID),
+        new AttributeFilter(Tag.SeriesInstanceUID),
+        new AttributeFilter(Tag.SOPInstanceUID)
+    };
+
+    private static Attributes keys() {
+        Attributes keys = new Attributes();
+        keys.setString(Tag.AccessionNumber, VR.SH, "A1234");
+        return keys;
+    }
+
+    private static QueryParam queryParam(String issuerOfAccessionNumber,
+            AttributeFilter... filters) {
+        QueryParam queryParam = new QueryParam();
+        queryParam.setAttributeFilters(filters);
+        if (issuerOfAccessionNumber != null)
+            queryParam.setDefaultIssuerOfAccessionNumber(
+                    new Issuer(issuerOfAccessionNumber, null, null));
+        return queryParam;
+    }
+
+    private static QueryCountCache.Key key(QueryParam queryParam) {
+        return new QueryCountCache.Key(StudyQuery.class, null, keys(),
+                queryParam);
+    }
+
+    @Test
+    public void testEqualKeys() {
+        assertEquals(key(queryParam(null, FILTERS)),
+                key(queryParam(null, FILTERS)));
+        assertEquals(key(queryParam("ISSUER", FILTERS)),
+                key(queryParam("ISSUER", FILTERS)));
+    }
+
+    @Test
+    public void testDefaultIssuerOfAccessionNumber() {
+        QueryCountCache cache = new QueryCountCache(10, 10000L);
+        cache.put(key(queryParam("ISSUER1", FILTERS)), 42L);
+        assertEquals(42L, cache.get(key(queryParam("ISSUER1", FILTERS))));
+        assertEquals(-1L, cache.get(key(queryParam("ISSUER2", FILTERS))));
+        assertEquals(-1L, cache.get(key(queryParam(null, FILTERS))));
+    }
+
+    @Test
+    public void testAttributeFilters() {
+        AttributeFilter[] filters = FILTERS.clone();
+        filters[1] = new AttributeFilter(Tag.StudyInstanceUID);
+        QueryCountCache cache = new QueryCountCache(10, 10000L);
+        cache.put(key(queryParam(null, FILTERS)), 42L);
+        assertEquals(-1L, cache.get(key(queryParam(null, filters))));
+    }
+}
@@ -41,8 +41,6 @@ package org.dcm4chee.archive.retrieve.scp.impl;
 import java.io.IOException;
 import java.util.List;
 
-import javax.xml.transform.Templates;
-
 import org.dcm4che.data.Attributes;
 import org.dcm4che.data.IDWithIssuer;
 import org.dcm4che.data.Issuer;
@@ -53,7 +51,6 @@ import org.dcm4che.data.VR;
 import org.dcm4che.imageio.codec.Decompressor;
 import org.dcm4che.io.DicomInputStream;
 import org.dcm4che.io.DicomInputStream.IncludeBulkData;
-import org.dcm4che.io.SAXTransformer;
 import org.dcm4che.net.ApplicationEntity;
 import org.dcm4che.net.Association;
 import org.dcm4che.net.DataWriter;
@@ -67,6 +64,7 @@ import org.dcm4che.net.service.InstanceLocator;
 import org.dcm4che.util.SafeClose;
 import org.dcm4che.util.StringUtils;
 import org.dcm4chee.archive.conf.ArchiveAEExtension;
+import org.dcm4chee.archive.conf.AttributesCoercion;
 import org.dcm4chee.archive.patient.PatientService;
 
 /**
@@ -140,10 +138,10 @@ class RetrieveTaskImpl extends BasicRetrieveTask {
         ApplicationEntity ae = as.getApplicationEntity();
         ArchiveAEExtension aeExt = ae.getAEExtension(ArchiveAEExtension.class);
         try {
-            Templates tpl = aeExt.getAttributeCoercionTemplates(
+            AttributesCoercion coercion = aeExt.getAttributesCoercion(
                     inst.cuid, Dimse.C_STORE_RQ, Role.SCU, as.getRemoteAET());
-            if (tpl != null)
-                attrs.update(SAXTransformer.transform(attrs, tpl, false, false), null);
+            if (coercion != null)
+                attrs.update(coercion.coerce(attrs), null);
         } catch (Exception e) {
             throw new IOException(e);
         }
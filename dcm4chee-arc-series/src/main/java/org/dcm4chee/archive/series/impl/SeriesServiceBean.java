@@ -77,10 +77,10 @@ public class SeriesServiceBean implements SeriesService {
                   .setParameter(1, seriesPk)
                   .getSingleResult();
         Attributes attrs = result.getAttributes();
-        if (result.isNumberOfSeriesRelatedInstancesInitialized())
+        if (!result.isNumberOfSeriesRelatedInstancesInitialized())
             result.initNumberOfSeriesRelatedInstances(
                     calculateNumberOfSeriesRelatedInstances(seriesPk));
-        if (result.isNumberOfStudyRelatedInstancesInitialized())
+        if (!result.isNumberOfStudyRelatedInstancesInitialized())
             result.initNumberOfStudyRelatedInstances(
                     calculateNumberOfStudyRelatedInstances(result.getStudyPk()));
         result.setQueryAttributes(attrs, queryParam.isShowRejectedInstances());
@@ -0,0 +1,113 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2011-2013
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+
+package org.dcm4chee.archive.cache;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Cache of primary keys of already persisted entities, keyed by the
+ * attributes identifying an entity. Entries of deleted entities are
+ * removed by the caller on lookup.
+ * <p>
+ * Concurrent look-ups of an equal key, which is not yet cached, wait for
+ * the first one, so only the first one inserts the entity. Look-ups of
+ * other keys are not blocked meanwhile.
+ * 
+ * @author Gunter Zeilinger <gunterze@gmail.com>
+ *
+ * @param <K> key type, which must implement {@code equals} and
+ *            {@code hashCode}
+ */
+public class KeyedLookupCache<K> {
+
+    private final ConcurrentHashMap<K, FutureTask<Long>> pks =
+            new ConcurrentHashMap<K, FutureTask<Long>>();
+
+    /**
+     * Returns the cached primary key, or {@code null} if there is none or
+     * its look-up is still in progress.
+     */
+    public Long get(K key) {
+        FutureTask<Long> task = pks.get(key);
+        if (task == null || !task.isDone())
+            return null;
+        try {
+            return task.get();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the cached primary key, or invokes {@code finder} to look it
+     * up and caches its result. If the look-up of an equal key is already in
+     * progress, waits for its result. A failed look-up is not cached.
+     */
+    public long findOrCreate(K key, Callable<Long> finder)
+            throws Exception {
+        FutureTask<Long> task = pks.get(key);
+        if (task == null) {
+            FutureTask<Long> newTask = new FutureTask<Long>(finder);
+            task = pks.putIfAbsent(key, newTask);
+            if (task == null) {
+                task = newTask;
+                newTask.run();
+            }
+        }
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            pks.remove(key, task);
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : e;
+        }
+    }
+
+    public void remove(K key) {
+        pks.remove(key);
+    }
+
+    public void clear() {
+        pks.clear();
+    }
+}
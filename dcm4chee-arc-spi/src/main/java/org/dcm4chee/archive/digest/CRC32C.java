@@ -0,0 +1,115 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2011-2013
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+
+package org.dcm4chee.archive.digest;
+
+import java.util.zip.Checksum;
+
+/**
+ * Table-driven CRC-32C (Castagnoli), processing 8 bytes per step
+ * (slicing-by-8).
+ * 
+ * @author Gunter Zeilinger <gunterze@gmail.com>
+ *
+ */
+final class CRC32C implements Checksum {
+
+    private static final int POLY = 0x82F63B78;
+    private static final int[][] T = new int[8][256];
+
+    static {
+        for (int n = 0; n < 256; n++) {
+            int crc = n;
+            for (int k = 0; k < 8; k++)
+                crc = (crc & 1) != 0 ? (crc >>> 1) ^ POLY : crc >>> 1;
+            T[0][n] = crc;
+        }
+        for (int n = 0; n < 256; n++) {
+            int crc = T[0][n];
+            for (int k = 1; k < 8; k++) {
+                crc = T[0][crc & 0xff] ^ (crc >>> 8);
+                T[k][n] = crc;
+            }
+        }
+    }
+
+    private int crc = 0xffffffff;
+
+    @Override
+    public void update(int b) {
+        crc = T[0][(crc ^ b) & 0xff] ^ (crc >>> 8);
+    }
+
+    @Override
+    public void update(byte[] b, int off, int len) {
+        int c = crc;
+        int end8 = off + (len & ~7);
+        int[] t0 = T[0], t1 = T[1], t2 = T[2], t3 = T[3],
+              t4 = T[4], t5 = T[5], t6 = T[6], t7 = T[7];
+        while (off < end8) {
+            int lo = c ^ ((b[off] & 0xff)
+                    | (b[off + 1] & 0xff) << 8
+                    | (b[off + 2] & 0xff) << 16
+                    | (b[off + 3] & 0xff) << 24);
+            c = t7[lo & 0xff]
+              ^ t6[(lo >>> 8) & 0xff]
+              ^ t5[(lo >>> 16) & 0xff]
+              ^ t4[lo >>> 24]
+              ^ t3[b[off + 4] & 0xff]
+              ^ t2[b[off + 5] & 0xff]
+              ^ t1[b[off + 6] & 0xff]
+              ^ t0[b[off + 7] & 0xff];
+            off += 8;
+        }
+        for (int end = off + (len & 7); off < end; off++)
+            c = t0[(c ^ b[off]) & 0xff] ^ (c >>> 8);
+        crc = c;
+    }
+
+    @Override
+    public long getValue() {
+        return ~crc & 0xffffffffL;
+    }
+
+    @Override
+    public void reset() {
+        crc = 0xffffffff;
+    }
+
+}
@@ -0,0 +1,115 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2011-2013
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+
+package org.dcm4chee.archive.digest;
+
+import java.security.MessageDigest;
+import java.util.zip.Checksum;
+
+/**
+ * CRC-32C (Castagnoli) checksum as {@link MessageDigest}. Uses the
+ * hardware accelerated {@code java.util.zip.CRC32C} if available
+ * (Java 9+), otherwise a table-driven implementation.
+ * 
+ * @author Gunter Zeilinger <gunterze@gmail.com>
+ *
+ */
+public final class CRC32CDigest extends MessageDigest {
+
+    public static final String ALGORITHM = "CRC32C";
+
+    private static final Class<? extends Checksum> INTRINSIC = intrinsic();
+
+    private final Checksum checksum;
+
+    public CRC32CDigest() {
+        super(ALGORITHM);
+        checksum = newChecksum();
+    }
+
+    private static Class<? extends Checksum> intrinsic() {
+        try {
+            return Class.forName("java.util.zip.CRC32C")
+                    .asSubclass(Checksum.class);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static Checksum newChecksum() {
+        if (INTRINSIC != null)
+            try {
+                return INTRINSIC.newInstance();
+            } catch (Exception e) {
+            }
+        return new CRC32C();
+    }
+
+    @Override
+    protected int engineGetDigestLength() {
+        return 4;
+    }
+
+    @Override
+    protected void engineUpdate(byte input) {
+        checksum.update(input);
+    }
+
+    @Override
+    protected void engineUpdate(byte[] input, int offset, int len) {
+        checksum.update(input, offset, len);
+    }
+
+    @Override
+    protected byte[] engineDigest() {
+        int crc = (int) checksum.getValue();
+        checksum.reset();
+        return new byte[] {
+                (byte) (crc >>> 24),
+                (byte) (crc >>> 16),
+                (byte) (crc >>> 8),
+                (byte) crc };
+    }
+
+    @Override
+    protected void engineReset() {
+        checksum.reset();
+    }
+
+}
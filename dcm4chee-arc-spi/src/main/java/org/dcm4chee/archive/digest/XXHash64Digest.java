@@ -0,0 +1,191 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2011-2013
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+
+package org.dcm4chee.archive.digest;
+
+import java.security.MessageDigest;
+
+/**
+ * xxHash64 (seed 0) as {@link MessageDigest}, with the hash value in big
+ * endian byte order.
+ * 
+ * @author Gunter Zeilinger <gunterze@gmail.com>
+ *
+ */
+public final class XXHash64Digest extends MessageDigest {
+
+    public static final String ALGORITHM = "XXHASH64";
+
+    private static final long P1 = 0x9E3779B185EBCA87L;
+    private static final long P2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long P3 = 0x165667B19E3779F9L;
+    private static final long P4 = 0x85EBCA77C2B2AE63L;
+    private static final long P5 = 0x27D4EB2F165667C5L;
+
+    private final byte[] buf = new byte[32];
+    private int bufLen;
+    private long totalLen;
+    private long v1, v2, v3, v4;
+
+    public XXHash64Digest() {
+        super(ALGORITHM);
+        engineReset();
+    }
+
+    @Override
+    protected int engineGetDigestLength() {
+        return 8;
+    }
+
+    @Override
+    protected void engineReset() {
+        v1 = P1 + P2;
+        v2 = P2;
+        v3 = 0;
+        v4 = -P1;
+        bufLen = 0;
+        totalLen = 0;
+    }
+
+    @Override
+    protected void engineUpdate(byte input) {
+        buf[bufLen++] = input;
+        totalLen++;
+        if (bufLen == 32) {
+            processStripe(buf, 0);
+            bufLen = 0;
+        }
+    }
+
+    @Override
+    protected void engineUpdate(byte[] b, int off, int len) {
+        totalLen += len;
+        if (bufLen > 0) {
+            int n = Math.min(32 - bufLen, len);
+            System.arraycopy(b, off, buf, bufLen, n);
+            bufLen += n;
+            off += n;
+            len -= n;
+            if (bufLen < 32)
+                return;
+            processStripe(buf, 0);
+            bufLen = 0;
+        }
+        int end = off + (len & ~31);
+        while (off < end) {
+            processStripe(b, off);
+            off += 32;
+        }
+        bufLen = len & 31;
+        System.arraycopy(b, off, buf, 0, bufLen);
+    }
+
+    private void processStripe(byte[] b, int off) {
+        v1 = round(v1, readLong(b, off));
+        v2 = round(v2, readLong(b, off + 8));
+        v3 = round(v3, readLong(b, off + 16));
+        v4 = round(v4, readLong(b, off + 24));
+    }
+
+    @Override
+    protected byte[] engineDigest() {
+        long h;
+        if (totalLen >= 32) {
+            h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7)
+              + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            h = mergeRound(h, v1);
+            h = mergeRound(h, v2);
+            h = mergeRound(h, v3);
+            h = mergeRound(h, v4);
+        } else {
+            h = P5;
+        }
+        h += totalLen;
+        int off = 0;
+        for (; off + 8 <= bufLen; off += 8) {
+            h ^= round(0, readLong(buf, off));
+            h = Long.rotateLeft(h, 27) * P1 + P4;
+        }
+        if (off + 4 <= bufLen) {
+            h ^= (readInt(buf, off) & 0xffffffffL) * P1;
+            h = Long.rotateLeft(h, 23) * P2 + P3;
+            off += 4;
+        }
+        for (; off < bufLen; off++) {
+            h ^= (buf[off] & 0xff) * P5;
+            h = Long.rotateLeft(h, 11) * P1;
+        }
+        h ^= h >>> 33;
+        h *= P2;
+        h ^= h >>> 29;
+        h *= P3;
+        h ^= h >>> 32;
+        engineReset();
+        byte[] digest = new byte[8];
+        for (int i = 7; i >= 0; i--) {
+            digest[i] = (byte) h;
+            h >>>= 8;
+        }
+        return digest;
+    }
+
+    private static long round(long acc, long input) {
+        acc += input * P2;
+        acc = Long.rotateLeft(acc, 31);
+        return acc * P1;
+    }
+
+    private static long mergeRound(long acc, long val) {
+        acc ^= round(0, val);
+        return acc * P1 + P4;
+    }
+
+    private static long readLong(byte[] b, int off) {
+        return (readInt(b, off) & 0xffffffffL)
+                | ((long) readInt(b, off + 4) << 32);
+    }
+
+    private static int readInt(byte[] b, int off) {
+        return (b[off] & 0xff)
+             | (b[off + 1] & 0xff) << 8
+             | (b[off + 2] & 0xff) << 16
+             | (b[off + 3] & 0xff) << 24;
+    }
+
+}
@@ -0,0 +1,499 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2011-2013
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+
+package org.dcm4chee.archive.json;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.zip.GZIPOutputStream;
+
+import javax.xml.bind.DatatypeConverter;
+
+import org.dcm4che.data.Attributes;
+import org.dcm4che.data.Sequence;
+import org.dcm4che.data.VR;
+import org.dcm4che.util.TagUtils;
+import org.dcm4chee.archive.query.Query;
+
+/**
+ * Writes data sets in the DICOM JSON Model (PS3.18 Annex F) directly to a
+ * character or byte stream, without building an intermediate XML or JSON
+ * representation. Matches of a {@link Query} are written as they are
+ * fetched, so memory usage does not grow with the number of matches.
+ * Binary values longer than {@link #getInlineBinaryMaxLength()} are not
+ * included.
+ * <p>
+ * Not used by any service yet; QIDO-RS of the legacy dcm4chee-arc-service
+ * module still renders JSON by XSLT.
+ * 
+ * @author Gunter Zeilinger <gunterze@gmail.com>
+ *
+ */
+public class DicomJSONWriter implements Flushable, Closeable {
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final int FLUSH_INTERVAL = 100;
+    private static final String[] PN_GROUPS =
+        { "Alphabetic", "Ideographic", "Phonetic" };
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    public static final int DEF_INLINE_BINARY_MAX_LENGTH = 4096;
+
+    private final Writer out;
+    private final GZIPOutputStream gzip;
+    private int count;
+    private int inlineBinaryMaxLength = DEF_INLINE_BINARY_MAX_LENGTH;
+
+    public DicomJSONWriter(Writer out) {
+        this.out = out;
+        this.gzip = null;
+    }
+
+    /**
+     * Creates a writer encoding UTF-8 to the specified stream, optionally
+     * gzip compressed. Output is buffered, and passed to the stream in chunks
+     * of {@value #BUFFER_SIZE} characters or on {@link #flush()}.
+     */
+    public DicomJSONWriter(OutputStream out, boolean gzip) throws IOException {
+        this.gzip = gzip ? new GZIPOutputStream(out, BUFFER_SIZE, true) : null;
+        this.out = new BufferedWriter(
+                new OutputStreamWriter(gzip ? this.gzip : out, "UTF-8"),
+                BUFFER_SIZE);
+    }
+
+    /**
+     * Writes all remaining matches of the query as JSON array, flushing the
+     * output every {@value #FLUSH_INTERVAL} matches, so the client can
+     * process them before the query is completed.
+     * 
+     * @return number of written matches
+     */
+    public int writeMatches(Query query) throws IOException {
+        writeStartArray();
+        while (query.hasMoreMatches()) {
+            Attributes match = query.nextMatch();
+            if (match == null)
+                continue;
+            write(match);
+            if (count % FLUSH_INTERVAL == 0)
+                flush();
+        }
+        writeEndArray();
+        return count;
+    }
+
+    public void writeStartArray() throws IOException {
+        out.write('[');
+        count = 0;
+    }
+
+    public void writeEndArray() throws IOException {
+        out.write(']');
+    }
+
+    /**
+     * Writes the data set as next element of the array started by
+     * {@link #writeStartArray()}.
+     */
+    public void write(Attributes attrs) throws IOException {
+        if (count++ > 0)
+            out.write(',');
+        writeDataset(attrs);
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public int getInlineBinaryMaxLength() {
+        return inlineBinaryMaxLength;
+    }
+
+    /**
+     * Sets the maximal length in bytes of binary values written as
+     * InlineBinary. Longer values are written without value, because their
+     * Base64 encoding would bloat the response.
+     */
+    public void setInlineBinaryMaxLength(int inlineBinaryMaxLength) {
+        if (inlineBinaryMaxLength < 0)
+            throw new IllegalArgumentException(
+                    "inlineBinaryMaxLength: " + inlineBinaryMaxLength);
+        this.inlineBinaryMaxLength = inlineBinaryMaxLength;
+    }
+
+    /**
+     * Flushes the buffered output through the optional compressor to the
+     * underlying stream.
+     */
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * Flushes the output and completes the optional gzip stream, without
+     * closing the underlying stream.
+     */
+    public void finish() throws IOException {
+        out.flush();
+        if (gzip != null)
+            gzip.finish();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private void writeDataset(Attributes attrs) throws IOException {
+        out.write('{');
+        boolean first = true;
+        for (int tag : attrs.tags()) {
+            if (first)
+                first = false;
+            else
+                out.write(',');
+            writeAttribute(attrs, tag);
+        }
+        out.write('}');
+    }
+
+    private void writeAttribute(Attributes attrs, int tag) throws IOException {
+        VR vr = attrs.getVR(tag);
+        out.write('"');
+        out.write(TagUtils.toHexString(tag));
+        out.write("\":{\"vr\":\"");
+        out.write(vr.name());
+        out.write('"');
+        switch (vr) {
+        case SQ:
+            writeItems(attrs.getSequence(tag));
+            break;
+        case PN:
+            writePersonNames(attrs.getStrings(tag));
+            break;
+        case DS:
+            writeDecimalStrings(attrs.getStrings(tag));
+            break;
+        case IS:
+            writeIntegerStrings(attrs.getStrings(tag));
+            break;
+        case SS:
+        case US:
+        case SL:
+            writeInts(attrs.getInts(tag));
+            break;
+        case UL:
+            writeUInts(attrs.getInts(tag));
+            break;
+        case FL:
+            writeFloats(attrs.getFloats(tag));
+            break;
+        case FD:
+            writeDoubles(attrs.getDoubles(tag));
+            break;
+        case AT:
+            writeTags(attrs.getInts(tag));
+            break;
+        case OB:
+        case OF:
+        case OW:
+        case UN:
+            writeInlineBinary(attrs, tag, vr);
+            break;
+        default:
+            writeStrings(attrs.getStrings(tag));
+        }
+        out.write('}');
+    }
+
+    private boolean writeStartValue(int length) throws IOException {
+        if (length == 0)
+            return false;
+
+        out.write(",\"Value\":[");
+        return true;
+    }
+
+    private void writeItems(Sequence seq) throws IOException {
+        if (seq == null || !writeStartValue(seq.size()))
+            return;
+
+        for (int i = 0, n = seq.size(); i < n; i++) {
+            if (i > 0)
+                out.write(',');
+            writeDataset(seq.get(i));
+        }
+        out.write(']');
+    }
+
+    private void writePersonNames(String[] ss) throws IOException {
+        if (ss == null || !writeStartValue(ss.length))
+            return;
+
+        for (int i = 0; i < ss.length; i++) {
+            if (i > 0)
+                out.write(',');
+            writePersonName(ss[i]);
+        }
+        out.write(']');
+    }
+
+    private void writePersonName(String s) throws IOException {
+        if (s == null || s.isEmpty()) {
+            out.write("null");
+            return;
+        }
+        out.write('{');
+        boolean first = true;
+        int begin = 0;
+        for (int i = 0; i < PN_GROUPS.length && begin <= s.length(); i++) {
+            int end = s.indexOf('=', begin);
+            if (end < 0)
+                end = s.length();
+            if (end > begin) {
+                if (first)
+                    first = false;
+                else
+                    out.write(',');
+                out.write('"');
+                out.write(PN_GROUPS[i]);
+                out.write("\":");
+                writeString(s, begin, end);
+            }
+            begin = end + 1;
+        }
+        out.write('}');
+    }
+
+    private void writeStrings(String[] ss) throws IOException {
+        if (ss == null || !writeStartValue(ss.length))
+            return;
+
+        for (int i = 0; i < ss.length; i++) {
+            if (i > 0)
+                out.write(',');
+            String s = ss[i];
+            if (s == null || s.isEmpty())
+                out.write("null");
+            else
+                writeString(s, 0, s.length());
+        }
+        out.write(']');
+    }
+
+    private void writeDecimalStrings(String[] ss) throws IOException {
+        if (ss == null || !writeStartValue(ss.length))
+            return;
+
+        for (int i = 0; i < ss.length; i++) {
+            if (i > 0)
+                out.write(',');
+            String s = ss[i];
+            if (s == null || (s = s.trim()).isEmpty()) {
+                out.write("null");
+                continue;
+            }
+            try {
+                writeNumber(Double.parseDouble(s));
+            } catch (NumberFormatException e) {
+                writeString(s, 0, s.length());
+            }
+        }
+        out.write(']');
+    }
+
+    private void writeIntegerStrings(String[] ss) throws IOException {
+        if (ss == null || !writeStartValue(ss.length))
+            return;
+
+        for (int i = 0; i < ss.length; i++) {
+            if (i > 0)
+                out.write(',');
+            String s = ss[i];
+            if (s == null || (s = s.trim()).isEmpty()) {
+                out.write("null");
+                continue;
+            }
+            try {
+                out.write(Long.toString(Long.parseLong(
+                        s.charAt(0) == '+' ? s.substring(1) : s)));
+            } catch (NumberFormatException e) {
+                writeString(s, 0, s.length());
+            }
+        }
+        out.write(']');
+    }
+
+    private void writeInts(int[] values) throws IOException {
+        if (values == null || !writeStartValue(values.length))
+            return;
+
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0)
+                out.write(',');
+            out.write(Integer.toString(values[i]));
+        }
+        out.write(']');
+    }
+
+    private void writeUInts(int[] values) throws IOException {
+        if (values == null || !writeStartValue(values.length))
+            return;
+
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0)
+                out.write(',');
+            out.write(Long.toString(values[i] & 0xffffffffL));
+        }
+        out.write(']');
+    }
+
+    private void writeFloats(float[] values) throws IOException {
+        if (values == null || !writeStartValue(values.length))
+            return;
+
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0)
+                out.write(',');
+            float f = values[i];
+            if (Float.isNaN(f) || Float.isInfinite(f))
+                out.write("null");
+            else if (f == (long) f)
+                out.write(Long.toString((long) f));
+            else
+                out.write(Float.toString(f));
+        }
+        out.write(']');
+    }
+
+    private void writeDoubles(double[] values) throws IOException {
+        if (values == null || !writeStartValue(values.length))
+            return;
+
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0)
+                out.write(',');
+            writeNumber(values[i]);
+        }
+        out.write(']');
+    }
+
+    private void writeNumber(double d) throws IOException {
+        if (Double.isNaN(d) || Double.isInfinite(d))
+            out.write("null");
+        else if (d == (long) d)
+            out.write(Long.toString((long) d));
+        else
+            out.write(Double.toString(d));
+    }
+
+    private void writeTags(int[] values) throws IOException {
+        if (values == null || !writeStartValue(values.length))
+            return;
+
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0)
+                out.write(',');
+            out.write('"');
+            out.write(TagUtils.toHexString(values[i]));
+            out.write('"');
+        }
+        out.write(']');
+    }
+
+    private void writeInlineBinary(Attributes attrs, int tag, VR vr)
+            throws IOException {
+        Object value = attrs.getValue(tag);
+        // bulk data references and encapsulated pixel data are not included
+        if (!(value instanceof byte[]))
+            return;
+
+        byte[] b = (byte[]) value;
+        if (b.length == 0 || b.length > inlineBinaryMaxLength)
+            return;
+
+        if (attrs.bigEndian())
+            b = vr.toggleEndian(b, true);
+        out.write(",\"InlineBinary\":\"");
+        out.write(DatatypeConverter.printBase64Binary(b));
+        out.write('"');
+    }
+
+    private void writeString(String s, int begin, int end) throws IOException {
+        out.write('"');
+        int start = begin;
+        for (int i = begin; i < end; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\')
+                continue;
+
+            out.write(s, start, i - start);
+            start = i + 1;
+            switch (c) {
+            case '"':
+                out.write("\\\"");
+                break;
+            case '\\':
+                out.write("\\\\");
+                break;
+            case '\n':
+                out.write("\\n");
+                break;
+            case '\r':
+                out.write("\\r");
+                break;
+            case '\t':
+                out.write("\\t");
+                break;
+            default:
+                out.write("\\u00");
+                out.write(HEX[c >> 4]);
+                out.write(HEX[c & 0xf]);
+            }
+        }
+        out.write(s, start, end - start);
+        out.write('"');
+    }
+}
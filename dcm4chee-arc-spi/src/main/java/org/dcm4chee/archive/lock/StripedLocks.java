@@ -0,0 +1,148 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2011-2013
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4chee.archive.lock;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+/**
+ * Fixed number of locks, selected by the hash code of a key, which are held
+ * until the current JTA transaction completes. Used to serialize the
+ * look-up and creation of an entity by its unique key between concurrent
+ * transactions, so a transaction which missed the entity waits until the
+ * creating transaction has committed and then finds it, instead of failing
+ * on a unique constraint violation.
+ * <p>
+ * Locks are reentrant per transaction. A transaction only waits for stripes
+ * with a higher index than all stripes it already holds, so transactions
+ * cannot deadlock; all keys needed at once shall therefore be passed in
+ * one call. A stripe with a lower index is only taken if it is free.
+ * Otherwise, or if a stripe cannot be acquired within the configured
+ * timeout, {@link LockTimeoutException} is thrown and the transaction shall
+ * be rolled back and retried.
+ * 
+ * @author Gunter Zeilinger <gunterze@gmail.com>
+ *
+ */
+public class StripedLocks {
+
+    private final Semaphore[] stripes;
+    private final long timeout;
+
+    public StripedLocks(int numStripes, long timeout) {
+        this.stripes = new Semaphore[numStripes];
+        for (int i = 0; i < numStripes; i++)
+            stripes[i] = new Semaphore(1);
+        this.timeout = timeout;
+    }
+
+    /**
+     * Acquires the locks for the specified keys, not already held by the
+     * current transaction, in ascending order of their stripes, and releases
+     * them after the transaction completed. {@code null} keys are ignored.
+     * 
+     * @throws LockTimeoutException
+     *             if a lock could not be acquired without risking a deadlock
+     *             or within the timeout, or the thread was interrupted
+     */
+    public void lock(TransactionSynchronizationRegistry tsr, String... keys) {
+        BitSet held = (BitSet) tsr.getResource(this);
+        if (held == null) {
+            held = new BitSet(stripes.length);
+            tsr.putResource(this, held);
+            tsr.registerInterposedSynchronization(new Release(held));
+        }
+        int[] indices = new int[keys.length];
+        int n = 0;
+        for (String key : keys)
+            if (key != null)
+                indices[n++] = indexOf(key);
+        Arrays.sort(indices, 0, n);
+        for (int i = 0; i < n; i++) {
+            int index = indices[i];
+            if (held.get(index))
+                continue;
+
+            // waiting for a lower stripe than one already held may deadlock
+            boolean inOrder = index >= held.length();
+            try {
+                if (!(inOrder
+                        ? stripes[index].tryAcquire(
+                                timeout, TimeUnit.MILLISECONDS)
+                        : stripes[index].tryAcquire()))
+                    throw new LockTimeoutException(inOrder
+                            ? "Timeout on waiting for lock #" + index
+                            : "Lock #" + index + " held by other transaction");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new LockTimeoutException(
+                        "Interrupted on waiting for lock #" + index);
+            }
+            held.set(index);
+        }
+    }
+    int indexOf(String key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return (h & Integer.MAX_VALUE) % stripes.length;
+    }
+
+    private final class Release implements Synchronization {
+        final BitSet held;
+
+        Release(BitSet held) {
+            this.held = held;
+        }
+
+        @Override
+        public void beforeCompletion() {}
+
+        @Override
+        public void afterCompletion(int status) {
+            for (int i = held.nextSetBit(0); i >= 0; i = held.nextSetBit(i + 1))
+                stripes[i].release();
+            held.clear();
+        }
+    }
+}
@@ -52,16 +52,61 @@ public interface Query {
 
     void executeQuery();
 
+    /**
+     * Returns the number of all matches, ignoring a
+     * {@link #continueAfter(String) continuation token} and a
+     * {@link #limit(long) limit}.
+     * 
+     * @throws IllegalStateException if the query was already executed
+     */
     long count();
 
     void limit(long limit);
 
+    /**
+     * Returns {@code true} if the executed query matched more entities than
+     * the {@link #limit(long) limit}. Only one additional match is fetched to
+     * decide that, so a client can tell if its result is complete without
+     * {@link #count() counting} all matches. Only determined after all
+     * matches up to the limit were fetched by {@link #nextMatch()}.
+     */
+    boolean isLimitExceeded();
+
     void offset(long offset);
 
     void orderBy(OrderSpecifier<?>... orderSpecifiers);
 
+    /**
+     * Restricts matches to entities following the match identified by a
+     * continuation token, returned by {@link #getContinuationToken()} of
+     * a previous query with equal matching keys and sort order. In contrast
+     * to {@link #offset(long)}, skipped matches are not fetched from the
+     * database, so the cost of a page does not depend on its position.
+     * 
+     * @throws IllegalArgumentException on execution of the query, if the
+     *         token is malformed or was created for a different sort order
+     */
+    void continueAfter(String continuationToken);
+
+    /**
+     * Returns the continuation token identifying the last returned match of
+     * a query with a {@link #orderBy(OrderSpecifier...) sort order}, or
+     * {@code null} if no match was returned, the query is not sorted or a
+     * sort key of the last match is {@code null}; the position of nulls in
+     * the sort order depends on the database.
+     */
+    String getContinuationToken();
+
     boolean optionalKeyNotSupported();
 
+    /**
+     * Restricts the attributes decoded from the stored attributes of each
+     * match to the specified tags - and Specific Character Set and the
+     * Private Creator of private tags - for callers which only return
+     * selected attributes. By default, all stored attributes are decoded.
+     */
+    void setReturnKeys(int... tags);
+
     boolean hasMoreMatches();
 
     Attributes nextMatch();
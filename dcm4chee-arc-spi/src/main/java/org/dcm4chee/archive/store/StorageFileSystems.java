@@ -0,0 +1,80 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2011-2013
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+
+package org.dcm4chee.archive.store;
+
+import org.dcm4che.net.service.DicomServiceException;
+import org.dcm4chee.archive.conf.FileSystemSelectionStrategy;
+import org.dcm4chee.archive.entity.FileSystem;
+
+/**
+ * Selects the File System for storage of an object from an in-memory view
+ * of the writeable File Systems of a File System Group.
+ * 
+ * @author Gunter Zeilinger <gunterze@gmail.com>
+ *
+ */
+public interface StorageFileSystems {
+
+    /**
+     * Selects one of the writeable File Systems of the File System Group
+     * according the specified strategy. The caller shall
+     * {@link #release(StorageFileSystem) release} it after the object was
+     * written.
+     */
+    StorageFileSystem acquire(String groupID, String defaultURI,
+            FileSystemSelectionStrategy strategy) throws DicomServiceException;
+
+    void release(StorageFileSystem fs);
+
+    /**
+     * Discards the in-memory view of the File System Group, so it will be
+     * reloaded from the database on next {@link #acquire}.
+     */
+    void invalidate(String groupID);
+
+    void invalidateAll();
+
+    /**
+     * Updates the used space of the File System, as sampled periodically by
+     * the File System monitor, so selection of a File System does not need
+     * to query the used space of each candidate.
+     */
+    void updateUsedSpace(FileSystem fs, long usedSpace);
+}
@@ -0,0 +1,166 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2011-2013
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+
+package org.dcm4chee.archive.store;
+
+import org.dcm4che.data.Attributes;
+import org.dcm4che.net.service.DicomServiceException;
+import org.dcm4chee.archive.conf.StoreParam;
+import org.dcm4chee.archive.entity.FileRef;
+
+/**
+ * Parameters and outcome of storing one received object by
+ * {@link StoreService#storeAll(java.util.List)}.
+ * 
+ * @author Gunter Zeilinger <gunterze@gmail.com>
+ *
+ */
+public class StoreRequest {
+
+    public enum Outcome {
+        /** stored without coercion of attributes */
+        STORED,
+        /** stored with attributes coerced to the values of the archive */
+        COERCED,
+        /** not stored, because the object was already stored */
+        IGNORED,
+        /** storing the object failed */
+        FAILED
+    }
+
+    private final StoreParam storeParam;
+    private final String sourceAET;
+    private final Attributes attrs;
+    private FileRef fileRef;
+    private final Attributes modified;
+    private boolean stored;
+    private DicomServiceException exception;
+    private Attributes savedAttrs;
+    private Attributes savedModified;
+
+    public StoreRequest(StoreParam storeParam, String sourceAET,
+            Attributes attrs, FileRef fileRef, Attributes modified) {
+        this.storeParam = storeParam;
+        this.sourceAET = sourceAET;
+        this.attrs = attrs;
+        this.fileRef = fileRef;
+        this.modified = modified;
+    }
+
+    public StoreParam getStoreParam() {
+        return storeParam;
+    }
+
+    public String getSourceAET() {
+        return sourceAET;
+    }
+
+    public Attributes getAttributes() {
+        return attrs;
+    }
+
+    public FileRef getFileRef() {
+        return fileRef;
+    }
+
+    public void setFileRef(FileRef fileRef) {
+        this.fileRef = fileRef;
+    }
+
+    public Attributes getModified() {
+        return modified;
+    }
+
+    /**
+     * Saves the received attributes, so {@link #restoreAttributes()} can
+     * undo the coercion of attributes by a failed attempt to store the
+     * object before it is stored again.
+     */
+    public void saveAttributes() {
+        savedAttrs = new Attributes(attrs);
+        savedModified = modified != null ? new Attributes(modified) : null;
+    }
+
+    public void restoreAttributes() {
+        if (savedAttrs == null)
+            return;
+
+        attrs.clear();
+        attrs.addAll(savedAttrs);
+        if (modified != null) {
+            modified.clear();
+            modified.addAll(savedModified);
+        }
+    }
+
+    public boolean isStored() {
+        return stored;
+    }
+
+    public void setStored(boolean stored) {
+        this.stored = stored;
+        this.exception = null;
+    }
+
+    public DicomServiceException getException() {
+        return exception;
+    }
+
+    public void setException(DicomServiceException exception) {
+        this.exception = exception;
+        this.stored = false;
+    }
+
+    public Outcome getOutcome() {
+        return exception != null ? Outcome.FAILED
+                : !stored ? Outcome.IGNORED
+                : modified != null && !modified.isEmpty() ? Outcome.COERCED
+                : Outcome.STORED;
+    }
+
+    /**
+     * Returns if the object was stored, or throws the exception which
+     * caused storing it to fail.
+     */
+    public boolean getResult() throws DicomServiceException {
+        if (exception != null)
+            throw exception;
+        return stored;
+    }
+}
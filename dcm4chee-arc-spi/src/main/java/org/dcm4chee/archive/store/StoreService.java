@@ -38,11 +38,14 @@
 
 package org.dcm4chee.archive.store;
 
+import java.util.List;
+
 import org.dcm4che.data.Attributes;
 import org.dcm4che.net.service.DicomServiceException;
 import org.dcm4chee.archive.conf.StoreParam;
 import org.dcm4chee.archive.entity.FileRef;
 import org.dcm4chee.archive.entity.FileSystem;
+import org.dcm4chee.archive.entity.FileSystemStatus;
 
 /**
  * @author Gunter Zeilinger <gunterze@gmail.com>
@@ -50,11 +53,50 @@ import org.dcm4chee.archive.entity.FileSystem;
  */
 public interface StoreService {
 
-    FileSystem selectStorageFileSystem(String groupID, String defaultURI)
+    /**
+     * Returns all writeable File Systems of the File System Group. If there
+     * is none, the first File System with status {@code Rw} gets writeable;
+     * if the group is empty, a File System with {@code defaultURI} is
+     * created.
+     */
+    List<FileSystem> findWriteableFileSystems(String groupID, String defaultURI)
             throws DicomServiceException;
 
+    List<FileSystem> findFileSystemsWithStatusNot(FileSystemStatus status);
+
+    /**
+     * Makes the File System with the specified primary key read-only and
+     * the first File System with status {@code Rw} and at least
+     * {@code minFreeSpace} bytes usable space in the chain of its next File
+     * Systems writeable.
+     * 
+     * @return the File System which got writeable or {@code null}
+     */
+    FileSystem switchToNextFileSystem(long pk, long minFreeSpace);
+
     boolean store(StoreParam storeParams, String sourceAET, Attributes attrs,
             FileRef fileRef, Attributes modified) throws DicomServiceException;
 
-    
+    /**
+     * Stores all requests, typically the objects of one study, in one
+     * transaction. Patient, Study and Series are resolved once for all
+     * requests of the same Series and all inserts are flushed together.
+     * The outcome of each request is recorded in the request, see
+     * {@link StoreRequest#getOutcome()}. A request rejected before anything
+     * was persisted for it fails alone; any other failure rolls back the
+     * whole transaction and is thrown.
+     */
+    void storeAll(List<StoreRequest> requests) throws DicomServiceException;
+
+    FileRef findFileRef(long pk);
+
+    /**
+     * Replaces the file reference with the specified primary key by
+     * {@code fileRef}, referencing the same instance.
+     * 
+     * @return {@code false} if there is no file reference with the
+     *         specified primary key
+     */
+    boolean replaceFileRef(long pk, FileRef fileRef);
+
 }
@@ -0,0 +1,154 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2011-2013
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+
+package org.dcm4chee.archive.cache;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * @author Gunter Zeilinger <gunterze@gmail.com>
+ *
+ */
+public class KeyedLookupCacheTest {
+
+    @Test
+    public void testFindOrCreate() throws Exception {
+        KeyedLookupCache<String> cache = new KeyedLookupCache<String>();
+        final AtomicInteger calls = new AtomicInteger();
+        Callable<Long> finder = new Callable<Long>() {
+            @Override
+            public Long call() {
+                return (long) calls.incrementAndGet();
+            }
+        };
+        assertNull(cache.get("A"));
+        assertEquals(1L, cache.findOrCreate("A", finder));
+        assertEquals(1L, cache.findOrCreate("A", finder));
+        assertEquals(Long.valueOf(1L), cache.get("A"));
+        assertEquals(2L, cache.findOrCreate("B", finder));
+        cache.remove("A");
+        assertNull(cache.get("A"));
+        assertEquals(3L, cache.findOrCreate("A", finder));
+        cache.clear();
+        assertNull(cache.get("A"));
+        assertNull(cache.get("B"));
+    }
+
+    @Test
+    public void testFailedLookupNotCached() throws Exception {
+        KeyedLookupCache<String> cache = new KeyedLookupCache<String>();
+        try {
+            cache.findOrCreate("A", new Callable<Long>() {
+                @Override
+                public Long call() {
+                    throw new IllegalStateException();
+                }
+            });
+            fail("IllegalStateException expected");
+        } catch (IllegalStateException e) {
+        }
+        assertNull(cache.get("A"));
+        assertEquals(42L, cache.findOrCreate("A", new Callable<Long>() {
+            @Override
+            public Long call() {
+                return 42L;
+            }
+        }));
+    }
+
+    @Test
+    public void testConcurrentLookups() throws Exception {
+        final KeyedLookupCache<String> cache = new KeyedLookupCache<String>();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger calls = new AtomicInteger();
+        final long[] result = new long[1];
+        Thread first = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    result[0] = cache.findOrCreate("A", new Callable<Long>() {
+                        @Override
+                        public Long call() throws Exception {
+                            calls.incrementAndGet();
+                            started.countDown();
+                            release.await();
+                            return 42L;
+                        }
+                    });
+                } catch (Exception e) {
+                    result[0] = -1L;
+                }
+            }
+        };
+        first.start();
+        started.await();
+        assertNull(cache.get("A"));
+        assertEquals(7L, cache.findOrCreate("B", new Callable<Long>() {
+            @Override
+            public Long call() {
+                return 7L;
+            }
+        }));
+        Thread second = new Thread() {
+            @Override
+            public void run() {
+                release.countDown();
+            }
+        };
+        second.start();
+        assertEquals(42L, cache.findOrCreate("A", new Callable<Long>() {
+            @Override
+            public Long call() {
+                calls.incrementAndGet();
+                return 0L;
+            }
+        }));
+        first.join();
+        second.join();
+        assertEquals(42L, result[0]);
+        assertEquals(1, calls.get());
+    }
+}
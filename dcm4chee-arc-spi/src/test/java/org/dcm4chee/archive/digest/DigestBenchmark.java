@@ -0,0 +1,88 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2011-2013
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+
+package org.dcm4chee.archive.digest;
+
+import java.security.MessageDigest;
+import java.util.Random;
+
+/**
+ * Compares the throughput of the supported digest algorithms on typical
+ * object sizes, from a CT slice to a mammography image. Run with
+ * {@code java -cp <test-classpath> org.dcm4chee.archive.digest.DigestBenchmark
+ * [algorithm...]}.
+ * 
+ * @author Gunter Zeilinger <gunterze@gmail.com>
+ *
+ */
+public class DigestBenchmark {
+
+    private static final String[] ALGORITHMS =
+        { "MD5", "SHA-1", "CRC32C", "XXHASH64" };
+    private static final int[] SIZES =
+        { 128 * 1024, 512 * 1024, 8 * 1024 * 1024, 64 * 1024 * 1024 };
+    private static final int BUFFER_SIZE = 8192;
+    private static final long TOTAL = 1024L * 1024 * 1024;
+
+    public static void main(String[] args) throws Exception {
+        String[] algorithms = args.length > 0 ? args : ALGORITHMS;
+        byte[] data = new byte[SIZES[SIZES.length - 1]];
+        new Random(0).nextBytes(data);
+        for (String algorithm : algorithms) {
+            MessageDigest digest = MessageDigests.getInstance(algorithm);
+            run(digest, data, SIZES[0]); // warm up
+            for (int size : SIZES) {
+                long time = run(digest, data, size);
+                System.out.printf("%-8s %6d KB: %8.1f MB/s%n",
+                        algorithm, size / 1024,
+                        TOTAL * 1000.0 / 1024 / 1024 / Math.max(time, 1));
+            }
+        }
+    }
+
+    private static long run(MessageDigest digest, byte[] data, int size) {
+        long start = System.currentTimeMillis();
+        for (long n = TOTAL / size; n > 0; n--) {
+            for (int off = 0; off < size; off += BUFFER_SIZE)
+                digest.update(data, off, Math.min(BUFFER_SIZE, size - off));
+            digest.digest();
+        }
+        return System.currentTimeMillis() - start;
+    }
+}
@@ -0,0 +1,97 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2011-2013
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+
+package org.dcm4chee.archive.digest;
+
+import static org.junit.Assert.assertEquals;
+
+import java.security.MessageDigest;
+
+import org.dcm4che.util.TagUtils;
+import org.junit.Test;
+
+/**
+ * @author Gunter Zeilinger <gunterze@gmail.com>
+ *
+ */
+public class MessageDigestsTest {
+
+    private static final byte[] NOBODY =
+            "Nobody inspects the spammish repetition".getBytes();
+
+    @Test
+    public void testCRC32C() throws Exception {
+        assertDigest("E3069283", "CRC32C", "123456789".getBytes());
+    }
+
+    @Test
+    public void testTableDrivenCRC32C() throws Exception {
+        CRC32C crc = new CRC32C();
+        byte[] b = "123456789".getBytes();
+        crc.update(b, 0, b.length);
+        assertEquals(0xE3069283L, crc.getValue());
+    }
+
+    @Test
+    public void testXXHash64() throws Exception {
+        assertDigest("EF46DB3751D8E999", "XXHASH64", new byte[0]);
+        assertDigest("44BC2CF5AD770999", "XXHASH64", "abc".getBytes());
+        assertDigest("FBCEA83C8A378BF1", "XXHASH64", NOBODY);
+    }
+
+    @Test
+    public void testXXHash64Update() throws Exception {
+        MessageDigest digest = MessageDigests.getInstance("xxHash64");
+        for (byte b : NOBODY)
+            digest.update(b);
+        assertEquals("FBCEA83C8A378BF1",
+                TagUtils.toHexString(digest.digest()));
+        digest.update(NOBODY, 0, 5);
+        digest.update(NOBODY, 5, NOBODY.length - 5);
+        assertEquals("FBCEA83C8A378BF1",
+                TagUtils.toHexString(digest.digest()));
+    }
+
+    private static void assertDigest(String expected, String algorithm,
+            byte[] data) throws Exception {
+        MessageDigest digest = MessageDigests.getInstance(algorithm);
+        digest.update(data);
+        assertEquals(expected, TagUtils.toHexString(digest.digest()));
+    }
+}
@@ -0,0 +1,146 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2011-2013
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+
+package org.dcm4chee.archive.json;
+
+import java.io.OutputStream;
+
+import javax.xml.transform.Templates;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.dcm4che.data.Attributes;
+import org.dcm4che.data.Tag;
+import org.dcm4che.data.VR;
+import org.dcm4che.io.SAXTransformer;
+
+/**
+ * Compares the throughput of {@link DicomJSONWriter} with the XSLT based
+ * JSON encoding of QIDO-RS matches by {@code json_compact.xsl}. Run with
+ * {@code java -cp <test-classpath> org.dcm4chee.archive.json.DicomJSONBenchmark
+ * [matches]}.
+ * 
+ * @author Gunter Zeilinger <gunterze@gmail.com>
+ *
+ */
+public class DicomJSONBenchmark {
+
+    private static final class CountingOutputStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int matches = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        Templates tpls = SAXTransformer.newTemplates(new StreamSource(
+                DicomJSONBenchmark.class.getResource("json_compact.xsl")
+                    .toString()));
+        Attributes match = studyMatch();
+
+        // warm up
+        runXSLT(tpls, match, matches / 10);
+        runDicomJSONWriter(match, matches / 10, false);
+        report("xslt", runXSLT(tpls, match, matches), matches);
+        report("json", runDicomJSONWriter(match, matches, false), matches);
+        report("json+gz", runDicomJSONWriter(match, matches, true), matches);
+    }
+
+    private static Attributes studyMatch() {
+        Attributes attrs = new Attributes();
+        attrs.setString(Tag.SpecificCharacterSet, VR.CS, "ISO_IR 100");
+        attrs.setString(Tag.StudyDate, VR.DA, "20140101");
+        attrs.setString(Tag.StudyTime, VR.TM, "120000");
+        attrs.setString(Tag.AccessionNumber, VR.SH, "A123456");
+        attrs.setString(Tag.ModalitiesInStudy, VR.CS, "CT", "SR");
+        attrs.setString(Tag.ReferringPhysicianName, VR.PN, "Smith^Joe");
+        attrs.setString(Tag.RetrieveURL, VR.UT,
+                "http://localhost:8080/wado/DCM4CHEE/studies/1.2.3.4");
+        attrs.setString(Tag.RetrieveAETitle, VR.AE, "DCM4CHEE");
+        attrs.setString(Tag.InstanceAvailability, VR.CS, "ONLINE");
+        attrs.setString(Tag.PatientName, VR.PN, "Doe^John");
+        attrs.setString(Tag.PatientID, VR.LO, "PID-4711");
+        attrs.setString(Tag.PatientBirthDate, VR.DA, "19700101");
+        attrs.setString(Tag.PatientSex, VR.CS, "M");
+        attrs.setString(Tag.StudyInstanceUID, VR.UI, "1.2.3.4");
+        attrs.setString(Tag.StudyID, VR.SH, "1");
+        attrs.setInt(Tag.NumberOfStudyRelatedSeries, VR.IS, 3);
+        attrs.setInt(Tag.NumberOfStudyRelatedInstances, VR.IS, 250);
+        return attrs;
+    }
+
+    private static long[] runXSLT(Templates tpls, Attributes match,
+            int matches) throws Exception {
+        CountingOutputStream out = new CountingOutputStream();
+        StreamResult result = new StreamResult(out);
+        long start = System.nanoTime();
+        for (int i = 0; i < matches; i++) {
+            out.write(i == 0 ? '[' : ',');
+            SAXTransformer.getSAXWriter(tpls, result).write(match);
+        }
+        out.write(']');
+        return new long[] { System.nanoTime() - start, out.count };
+    }
+
+    private static long[] runDicomJSONWriter(Attributes match, int matches,
+            boolean gzip) throws Exception {
+        CountingOutputStream out = new CountingOutputStream();
+        long start = System.nanoTime();
+        DicomJSONWriter writer = new DicomJSONWriter(out, gzip);
+        writer.writeStartArray();
+        for (int i = 0; i < matches; i++)
+            writer.write(match);
+        writer.writeEndArray();
+        writer.finish();
+        return new long[] { System.nanoTime() - start, out.count };
+    }
+
+    private static void report(String name, long[] result, int matches) {
+        System.out.printf("%-8s %8d ns/match %8d bytes/match%n",
+                name, result[0] / matches, result[1] / matches);
+    }
+}
@@ -0,0 +1,137 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2011-2013
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+
+package org.dcm4chee.archive.json;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.util.zip.GZIPInputStream;
+
+import org.dcm4che.data.Attributes;
+import org.dcm4che.data.Tag;
+import org.dcm4che.data.VR;
+import org.junit.Test;
+
+/**
+ * @author Gunter Zeilinger <gunterze@gmail.com>
+ *
+ */
+public class DicomJSONWriterTest {
+
+    private static final String EXPECTED = "[{"
+            + "\"00080020\":{\"vr\":\"DA\",\"Value\":[\"20140101\"]},"
+            + "\"00080050\":{\"vr\":\"SH\"},"
+            + "\"00081115\":{\"vr\":\"SQ\",\"Value\":[{"
+                + "\"0020000E\":{\"vr\":\"UI\",\"Value\":[\"1.2.3\"]}}]},"
+            + "\"00100010\":{\"vr\":\"PN\",\"Value\":[{"
+                + "\"Alphabetic\":\"Doe^John\",\"Phonetic\":\"do^jon\"}]},"
+            + "\"00104000\":{\"vr\":\"LT\",\"Value\":[\"a\\\"b\\\\c\\nd\"]},"
+            + "\"00200011\":{\"vr\":\"IS\",\"Value\":[3]},"
+            + "\"00280010\":{\"vr\":\"US\",\"Value\":[512]},"
+            + "\"00280030\":{\"vr\":\"DS\",\"Value\":[0.5,0.5]}"
+            + "},{"
+            + "\"00080060\":{\"vr\":\"CS\",\"Value\":[\"CT\",\"MR\"]}"
+            + "}]";
+
+    @Test
+    public void testWrite() throws Exception {
+        StringWriter out = new StringWriter();
+        write(new DicomJSONWriter(out));
+        assertEquals(EXPECTED, out.toString());
+    }
+
+    @Test
+    public void testWriteGzip() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        write(new DicomJSONWriter(out, true));
+        Reader in = new InputStreamReader(new GZIPInputStream(
+                new ByteArrayInputStream(out.toByteArray())), "UTF-8");
+        StringBuilder sb = new StringBuilder();
+        char[] cbuf = new char[256];
+        int n;
+        while ((n = in.read(cbuf)) > 0)
+            sb.append(cbuf, 0, n);
+        assertEquals(EXPECTED, sb.toString());
+    }
+
+    @Test
+    public void testInlineBinaryMaxLength() throws Exception {
+        Attributes attrs = new Attributes();
+        attrs.setBytes(Tag.EncapsulatedDocument, VR.OB, new byte[] { 1, 2, 3 });
+        attrs.setBytes(Tag.OverlayData, VR.OB, new byte[4]);
+        StringWriter out = new StringWriter();
+        DicomJSONWriter writer = new DicomJSONWriter(out);
+        writer.setInlineBinaryMaxLength(3);
+        writer.writeStartArray();
+        writer.write(attrs);
+        writer.writeEndArray();
+        writer.finish();
+        assertEquals("[{"
+                + "\"00420011\":{\"vr\":\"OB\",\"InlineBinary\":\"AQID\"},"
+                + "\"60003000\":{\"vr\":\"OB\"}"
+                + "}]", out.toString());
+    }
+
+    private static void write(DicomJSONWriter writer) throws Exception {
+        Attributes attrs = new Attributes();
+        attrs.setString(Tag.StudyDate, VR.DA, "20140101");
+        attrs.setNull(Tag.AccessionNumber, VR.SH);
+        Attributes item = new Attributes();
+        item.setString(Tag.SeriesInstanceUID, VR.UI, "1.2.3");
+        attrs.newSequence(Tag.ReferencedSeriesSequence, 1).add(item);
+        attrs.setString(Tag.PatientName, VR.PN, "Doe^John==do^jon");
+        attrs.setString(Tag.PatientComments, VR.LT, "a\"b\\c\nd");
+        attrs.setString(Tag.SeriesNumber, VR.IS, "+3");
+        attrs.setInt(Tag.Rows, VR.US, 512);
+        attrs.setString(Tag.PixelSpacing, VR.DS, "0.5", "0.5");
+        Attributes attrs2 = new Attributes();
+        attrs2.setString(Tag.Modality, VR.CS, "CT", "MR");
+        writer.writeStartArray();
+        writer.write(attrs);
+        writer.write(attrs2);
+        writer.writeEndArray();
+        writer.finish();
+        assertEquals(2, writer.getCount());
+    }
+}
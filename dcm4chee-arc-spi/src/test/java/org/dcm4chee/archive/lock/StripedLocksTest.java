@@ -0,0 +1,198 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2011-2013
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4chee.archive.lock;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+import org.junit.Test;
+
+/**
+ * @author Gunter Zeilinger <gunterze@gmail.com>
+ *
+ */
+public class StripedLocksTest {
+
+    private final StripedLocks locks = new StripedLocks(16, 100L);
+
+    @Test
+    public void testReentrantPerTransaction() {
+        Tx tx = new Tx();
+        locks.lock(tx, "1.2.3");
+        locks.lock(tx, "1.2.3", null);
+        tx.complete();
+        Tx tx2 = new Tx();
+        locks.lock(tx2, "1.2.3");
+        tx2.complete();
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        Tx tx = new Tx();
+        locks.lock(tx, "1.2.3");
+        assertFalse(lockInOtherThread(locks, "1.2.3"));
+        tx.complete();
+        assertTrue(lockInOtherThread(locks, "1.2.3"));
+    }
+
+    @Test
+    public void testLockAllKeys() throws Exception {
+        String[] keys = keysOfDifferentStripes(locks);
+        Tx tx = new Tx();
+        locks.lock(tx, keys[1], keys[0]);
+        assertFalse(lockInOtherThread(locks, keys[0]));
+        assertFalse(lockInOtherThread(locks, keys[1]));
+        tx.complete();
+        assertTrue(lockInOtherThread(locks, keys[0], keys[1]));
+    }
+
+    @Test
+    public void testNoWaitOutOfOrder() throws Exception {
+        StripedLocks locks = new StripedLocks(16, 60000L);
+        String[] keys = keysOfDifferentStripes(locks);
+        Tx tx = new Tx();
+        locks.lock(tx, keys[0]);
+        Tx tx2 = new Tx();
+        locks.lock(tx2, keys[1]);
+        long start = System.currentTimeMillis();
+        try {
+            locks.lock(tx2, keys[0]);
+            fail("LockTimeoutException expected");
+        } catch (LockTimeoutException e) {
+            assertTrue(System.currentTimeMillis() - start < 30000L);
+        }
+        tx2.complete();
+        tx.complete();
+    }
+
+    @Test
+    public void testOutOfOrderIfFree() throws Exception {
+        String[] keys = keysOfDifferentStripes(locks);
+        Tx tx = new Tx();
+        locks.lock(tx, keys[1]);
+        locks.lock(tx, keys[0]);
+        tx.complete();
+    }
+
+    private static String[] keysOfDifferentStripes(StripedLocks locks) {
+        String low = "1.2.3";
+        for (int i = 0;; i++) {
+            String key = "1.2.3." + i;
+            if (locks.indexOf(key) != locks.indexOf(low))
+                return locks.indexOf(key) > locks.indexOf(low)
+                        ? new String[] { low, key }
+                        : new String[] { key, low };
+        }
+    }
+
+    private static boolean lockInOtherThread(final StripedLocks locks,
+            final String... keys) throws Exception {
+        final AtomicBoolean locked = new AtomicBoolean();
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                Tx tx = new Tx();
+                try {
+                    locks.lock(tx, keys);
+                    locked.set(true);
+                } catch (LockTimeoutException e) {
+                } finally {
+                    tx.complete();
+                }
+            }
+        };
+        thread.start();
+        thread.join();
+        return locked.get();
+    }
+
+    private static class Tx implements TransactionSynchronizationRegistry {
+
+        final HashMap<Object, Object> resources = new HashMap<Object, Object>();
+        final ArrayList<Synchronization> syncs = new ArrayList<Synchronization>();
+
+        void complete() {
+            for (Synchronization sync : syncs)
+                sync.afterCompletion(Status.STATUS_COMMITTED);
+        }
+
+        @Override
+        public Object getTransactionKey() {
+            return this;
+        }
+
+        @Override
+        public void putResource(Object key, Object value) {
+            resources.put(key, value);
+        }
+
+        @Override
+        public Object getResource(Object key) {
+            return resources.get(key);
+        }
+
+        @Override
+        public void registerInterposedSynchronization(Synchronization sync) {
+            syncs.add(sync);
+        }
+
+        @Override
+        public int getTransactionStatus() {
+            return Status.STATUS_ACTIVE;
+        }
+
+        @Override
+        public void setRollbackOnly() {
+        }
+
+        @Override
+        public boolean getRollbackOnly() {
+            return false;
+        }
+    }
+}
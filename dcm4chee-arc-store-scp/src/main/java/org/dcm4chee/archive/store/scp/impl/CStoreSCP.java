@@ -53,6 +53,9 @@ import org.dcm4che.net.pdu.PresentationContext;
 import org.dcm4che.net.service.BasicCStoreSCP;
 import org.dcm4che.net.service.DicomService;
 import org.dcm4chee.archive.compress.CompressionService;
+import org.dcm4chee.archive.compress.DeferredCompressionService;
+import org.dcm4chee.archive.store.StorageFileSystems;
+import org.dcm4chee.archive.store.StoreMetrics;
 import org.dcm4chee.archive.store.StoreService;
 
 /**
@@ -66,20 +69,60 @@ public class CStoreSCP extends BasicCStoreSCP{
     @Inject
     private CompressionService compressionService;
 
+    @Inject
+    private DeferredCompressionService deferredCompressionService;
+
     @Inject
     private IApplicationEntityCache applicationEntityCache;
 
     @EJB
     private StoreService storeService;
 
+    @Inject
+    private StoreBatcher storeBatcher;
+
+    @Inject
+    private StorageFileSystems storageFileSystems;
+
+    @Inject
+    private StoreMetrics storeMetrics;
+
+    private final DirectoryCache directoryCache = new DirectoryCache();
+
+    private final SpoolBufferPool spoolBufferPool = new SpoolBufferPool();
+
     public StoreService getStoreService() {
         return storeService;
     }
 
+    public StoreBatcher getStoreBatcher() {
+        return storeBatcher;
+    }
+
+    public StorageFileSystems getStorageFileSystems() {
+        return storageFileSystems;
+    }
+
+    public StoreMetrics getStoreMetrics() {
+        return storeMetrics;
+    }
+
+    DirectoryCache getDirectoryCache() {
+        return directoryCache;
+    }
+
+    SpoolBufferPool getSpoolBufferPool() {
+        return spoolBufferPool;
+    }
+
     public CompressionService getCompressionService() {
         return compressionService;
     }
 
+    public DeferredCompressionService getDeferredCompressionService() {
+        return deferredCompressionService;
+    }
+
     public IApplicationEntityCache getApplicationEntityCache() {
         return applicationEntityCache;
     }
@@ -0,0 +1,199 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2011-2013
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4chee.archive.store.scp.impl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+/**
+ * Buffers written bytes in buffers of a {@link SpoolBufferPool}, until
+ * their number exceeds the threshold or the pool runs out of memory. Then
+ * buffered and following bytes are written to the spool file, which is
+ * only created at that point.
+ * 
+ * @author Gunter Zeilinger <gunterze@gmail.com>
+ *
+ */
+class SpoolOutputStream extends OutputStream {
+
+    private final SpoolBufferPool pool;
+    private final int threshold;
+    private final long memoryLimit;
+    private final Path path;
+    private final ArrayList<ByteBuffer> buffers = new ArrayList<ByteBuffer>();
+    private OutputStream out;
+    private long size;
+    private boolean closed;
+
+    public SpoolOutputStream(SpoolBufferPool pool, int threshold,
+            long memoryLimit, Path path) {
+        this.pool = pool;
+        this.threshold = threshold;
+        this.memoryLimit = memoryLimit;
+        this.path = path;
+    }
+
+    public boolean isInMemory() {
+        return out == null;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (out == null && ensureCapacity(1)) {
+            buffers.get((int) (size / SpoolBufferPool.BUFFER_SIZE))
+                .put((byte) b);
+        } else {
+            spill();
+            out.write(b);
+        }
+        size++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (out == null && ensureCapacity(len)) {
+            int pos = off;
+            int end = off + len;
+            while (pos < end) {
+                ByteBuffer buf = buffers.get(
+                        (int) ((size + pos - off) / SpoolBufferPool.BUFFER_SIZE));
+                int n = Math.min(end - pos, buf.remaining());
+                buf.put(b, pos, n);
+                pos += n;
+            }
+        } else {
+            spill();
+            out.write(b, off, len);
+        }
+        size += len;
+    }
+
+    private boolean ensureCapacity(int len) {
+        long required = size + len;
+        if (required > threshold)
+            return false;
+
+        while ((long) buffers.size() * SpoolBufferPool.BUFFER_SIZE < required) {
+            ByteBuffer buf = pool.allocate(memoryLimit);
+            if (buf == null)
+                return false;
+            buffers.add(buf);
+        }
+        return true;
+    }
+
+    /**
+     * Writes the buffered bytes to the spool file, if not already done.
+     */
+    public void spill() throws IOException {
+        if (out != null)
+            return;
+
+        Files.createDirectories(path.getParent());
+        FileChannel ch = FileChannel.open(path,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        try {
+            write(ch);
+        } catch (IOException e) {
+            ch.close();
+            Files.deleteIfExists(path);
+            throw e;
+        }
+        out = Channels.newOutputStream(ch);
+        release();
+        if (closed)
+            out.close();
+    }
+
+    /**
+     * Writes the bytes buffered in memory to the existing file by one
+     * gathering write.
+     */
+    public void writeTo(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file,
+                StandardOpenOption.WRITE)) {
+            write(ch);
+        }
+    }
+
+    private void write(FileChannel ch) throws IOException {
+        ByteBuffer[] srcs = new ByteBuffer[buffers.size()];
+        long remaining = 0;
+        for (int i = 0; i < srcs.length; i++) {
+            srcs[i] = buffers.get(i).duplicate();
+            srcs[i].flip();
+            remaining += srcs[i].remaining();
+        }
+        while (remaining > 0)
+            remaining -= ch.write(srcs);
+    }
+
+    /**
+     * Returns the buffers to the pool.
+     */
+    public void release() {
+        for (ByteBuffer buf : buffers)
+            pool.release(buf, memoryLimit);
+        buffers.clear();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (out != null)
+            out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        if (out != null)
+            out.close();
+    }
+}
@@ -0,0 +1,248 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2011-2013
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+
+package org.dcm4chee.archive.store.scp.impl;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import javax.ejb.EJB;
+import javax.enterprise.context.ApplicationScoped;
+
+import org.dcm4che.net.Status;
+import org.dcm4che.net.service.DicomServiceException;
+import org.dcm4chee.archive.conf.ArchiveDeviceExtension;
+import org.dcm4chee.archive.entity.FileRef;
+import org.dcm4chee.archive.lock.ConstraintViolations;
+import org.dcm4chee.archive.lock.LockTimeoutException;
+import org.dcm4chee.archive.store.StoreRequest;
+import org.dcm4chee.archive.store.StoreService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Collects objects received concurrently over different associations and
+ * indexes them in one transaction, so the commit is shared by all of them.
+ * The first thread arriving at an empty queue waits up to the configured
+ * Store Batch Delay for other objects and stores the whole group; threads
+ * arriving meanwhile just wait for the outcome of their object. The first
+ * thread does not wait, if the previous group consisted only of its own
+ * object and no other thread is storing objects.
+ * <p>
+ * Stores failing on a unique constraint violation - caused by a concurrent
+ * transaction, e.g. on another cluster node, inserting the same Patient,
+ * Study or Series - or on a {@link LockTimeoutException} are retried up to
+ * {@value #MAX_RETRIES} times, whether batched or not.
+ * 
+ * @author Gunter Zeilinger <gunterze@gmail.com>
+ *
+ */
+@ApplicationScoped
+public class StoreBatcher {
+
+    private static Logger LOG = LoggerFactory.getLogger(StoreBatcher.class);
+
+    static final int MAX_RETRIES = 2;
+
+    @EJB
+    private StoreService storeService;
+
+    private final Object lock = new Object();
+
+    private ArrayList<Entry> queue = new ArrayList<Entry>();
+
+    private boolean collecting;
+
+    private int active;
+
+    private int lastBatchSize;
+
+    private static class Entry {
+        final StoreRequest request;
+        final CountDownLatch done = new CountDownLatch(1);
+
+        Entry(StoreRequest request) {
+            this.request = request;
+        }
+    }
+
+    public boolean store(ArchiveDeviceExtension arcDev, StoreRequest request)
+            throws DicomServiceException {
+        request.saveAttributes();
+        int batchSize = arcDev != null ? arcDev.getStoreBatchSize() : 0;
+        if (batchSize <= 1)
+            return storeWithRetry(request);
+
+        Entry entry = new Entry(request);
+        ArrayList<Entry> batch = null;
+        synchronized (lock) {
+            active++;
+            queue.add(entry);
+            if (collecting) {
+                if (queue.size() >= batchSize)
+                    lock.notifyAll();
+            } else {
+                collecting = true;
+                try {
+                    awaitBatch(batchSize, arcDev.getStoreBatchDelay());
+                } finally {
+                    batch = queue;
+                    lastBatchSize = batch.size();
+                    queue = new ArrayList<Entry>();
+                    collecting = false;
+                }
+            }
+        }
+        try {
+            if (batch != null)
+                storeAll(batch);
+            else
+                awaitUninterruptibly(entry.done);
+        } finally {
+            synchronized (lock) {
+                active--;
+            }
+        }
+        return request.getResult();
+    }
+
+    private void awaitBatch(int batchSize, int delay) {
+        // threads not in the queue are storing the previous group and may
+        // add their next object
+        if (queue.size() >= active && lastBatchSize <= 1)
+            return;
+
+        long deadline = System.currentTimeMillis() + delay;
+        long remaining;
+        boolean interrupted = false;
+        while (queue.size() < batchSize
+                && (remaining = deadline - System.currentTimeMillis()) > 0) {
+            try {
+                lock.wait(remaining);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    private void storeAll(ArrayList<Entry> batch) {
+        try {
+            ArrayList<StoreRequest> requests =
+                    new ArrayList<StoreRequest>(batch.size());
+            for (Entry entry : batch)
+                requests.add(entry.request);
+            try {
+                storeService.storeAll(requests);
+                LOG.debug("Stored {} objects in one transaction", batch.size());
+            } catch (Exception e) {
+                LOG.info("Failed to store {} objects in one transaction - "
+                        + "store them separately:", batch.size(), e);
+                for (StoreRequest request : requests)
+                    storeSeparately(request);
+            }
+        } finally {
+            for (Entry entry : batch)
+                entry.done.countDown();
+        }
+    }
+
+    private void storeSeparately(StoreRequest request) {
+        request.restoreAttributes();
+        renewFileRef(request);
+        try {
+            request.setStored(storeWithRetry(request));
+        } catch (DicomServiceException e) {
+            request.setException(e);
+        } catch (Exception e) {
+            request.setException(
+                    new DicomServiceException(Status.ProcessingFailure, e));
+        }
+    }
+
+    private boolean storeWithRetry(StoreRequest request)
+            throws DicomServiceException {
+        for (int retry = 0;; retry++) {
+            try {
+                return storeService.store(request.getStoreParam(),
+                        request.getSourceAET(), request.getAttributes(),
+                        request.getFileRef(), request.getModified());
+            } catch (DicomServiceException | RuntimeException e) {
+                if (retry >= MAX_RETRIES || !isRetryable(e))
+                    throw e;
+                LOG.info("Concurrent insert detected - retry to store object:",
+                        e);
+                request.restoreAttributes();
+                renewFileRef(request);
+            }
+        }
+    }
+
+    private static boolean isRetryable(Exception e) {
+        return ConstraintViolations.isCausedBy(e)
+                || LockTimeoutException.isCausedBy(e);
+    }
+
+    private static void renewFileRef(StoreRequest request) {
+        // the transaction was rolled back, so do not reuse the already
+        // persisted FileRef instance
+        FileRef fileRef = request.getFileRef();
+        request.setFileRef(new FileRef(fileRef.getFileSystem(),
+                fileRef.getFilePath(),
+                fileRef.getTransferSyntaxUID(),
+                fileRef.getFileSize(),
+                fileRef.getDigest()));
+    }
+
+}
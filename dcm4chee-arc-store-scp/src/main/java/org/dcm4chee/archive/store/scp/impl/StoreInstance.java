@@ -39,18 +39,25 @@
 package org.dcm4chee.archive.store.scp.impl;
 
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
 import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.security.DigestOutputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-
-import javax.xml.transform.Templates;
+import java.util.Arrays;
+import java.util.UUID;
 
 import org.dcm4che.data.Attributes;
 import org.dcm4che.data.BulkData;
@@ -60,7 +67,6 @@ import org.dcm4che.data.VR;
 import org.dcm4che.imageio.codec.CompressionRule;
 import org.dcm4che.io.DicomInputStream;
 import org.dcm4che.io.DicomOutputStream;
-import org.dcm4che.io.SAXTransformer;
 import org.dcm4che.io.DicomInputStream.IncludeBulkData;
 import org.dcm4che.net.ApplicationEntity;
 import org.dcm4che.net.Association;
@@ -70,11 +76,17 @@ import org.dcm4che.net.Status;
 import org.dcm4che.net.TransferCapability;
 import org.dcm4che.net.pdu.PresentationContext;
 import org.dcm4che.net.service.DicomServiceException;
-import org.dcm4che.util.AttributesFormat;
 import org.dcm4che.util.TagUtils;
 import org.dcm4chee.archive.conf.ArchiveAEExtension;
+import org.dcm4chee.archive.conf.ArchiveDeviceExtension;
+import org.dcm4chee.archive.conf.AttributesCoercion;
+import org.dcm4chee.archive.conf.CompiledAttributesFormat;
+import org.dcm4chee.archive.digest.MessageDigests;
 import org.dcm4chee.archive.entity.FileRef;
 import org.dcm4chee.archive.entity.FileSystem;
+import org.dcm4chee.archive.store.StorageFileSystem;
+import org.dcm4chee.archive.store.StoreMetrics;
+import org.dcm4chee.archive.store.StoreRequest;
 import org.dcm4chee.archive.store.Supplements;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -92,6 +104,7 @@ class StoreInstance implements Closeable {
     private final ApplicationEntity ae;
     private final ArchiveAEExtension aeExt;
     private final MessageDigest digest;
+    private final StorageFileSystem storageFS;
     private final FileSystem fs;
     private final Path fsPath;
     private final String sourceAET;
@@ -101,10 +114,14 @@ class StoreInstance implements Closeable {
     private final Attributes fmi;
     private Path spoolPath;
     private File spoolFile;
+    private SpoolOutputStream spool;
     private String fileDigest;
     private Attributes attrs;
     private Attributes coercedAttrs;
     private Path storePath;
+    private boolean compressLater;
+    private long fileSize = -1L;
+    private final long[] nanos = new long[StoreMetrics.Phase.values().length];
 
     public StoreInstance(CStoreSCP scp, Association as, PresentationContext pc,
             Attributes rq) throws DicomServiceException {
@@ -118,8 +135,13 @@ class StoreInstance implements Closeable {
         this.ae = as.getApplicationEntity();
         this.aeExt = aeExtensionOf();
         this.digest = messageDigestOf();
-        this.fs = selectStorageFileSystem();
-        this.fsPath = fs.getPath();
+        this.storageFS = scp.getStorageFileSystems().acquire(
+                aeExt.getFileSystemGroupID(),
+                aeExt.getInitFileSystemURI(),
+                aeExt.getFileSystemSelectionStrategy());
+        this.fs = storageFS.getFileSystem();
+        this.fsPath = storageFS.getPath();
+        Arrays.fill(nanos, -1L);
     }
 
     private ArchiveAEExtension aeExtensionOf()
@@ -135,28 +157,14 @@ class StoreInstance implements Closeable {
 
     private MessageDigest messageDigestOf()
             throws DicomServiceException {
-        String algorithm = aeExt.getDigestAlgorithm();
         try {
-            return algorithm != null
-                    ? MessageDigest.getInstance(algorithm)
-                    : null;
+            return MessageDigests.getInstance(aeExt.getDigestAlgorithm());
         } catch (NoSuchAlgorithmException e) {
             throw new DicomServiceException(
                     Status.ProcessingFailure, e);
         }
     }
 
-    private FileSystem selectStorageFileSystem() throws DicomServiceException {
-        FileSystem fs = (FileSystem) as.getProperty(FileSystem.class.getName());
-        if (fs == null) {
-            fs = scp.getStoreService().selectStorageFileSystem(
-                    aeExt.getFileSystemGroupID(),
-                    aeExt.getInitFileSystemURI());
-            as.setProperty(FileSystem.class.getName(), fs);
-        }
-        return fs;
-    }
-
     private Path createSpoolPath() throws IOException {
         String spoolDirectoryPath = aeExt.getSpoolDirectoryPath();
         if (spoolDirectoryPath == null)
@@ -167,36 +175,96 @@ class StoreInstance implements Closeable {
         return Files.createTempFile(Files.createDirectories(dir), "dcm", ".dcm");
     }
 
-    public void spool(PDVInputStream data) throws IOException {
-        spoolPath = createSpoolPath();
+    /**
+     * Returns the path of the spool file, which is only created if the
+     * object does not fit into memory.
+     */
+    private Path spoolPathInMemory() {
+        String spoolDirectoryPath = aeExt.getSpoolDirectoryPath();
+        Path dir = spoolDirectoryPath == null
+                ? Paths.get(System.getProperty("java.io.tmpdir"))
+                : fsPath.resolve(spoolDirectoryPath)
+                    .resolve(sourceAET).resolve(cuid);
+        return dir.resolve("dcm" + UUID.randomUUID() + ".dcm");
+    }
+
+    private OutputStream openSpool() throws IOException {
+        int threshold = aeExt.getSpoolMemoryThreshold();
+        if (threshold <= 0) {
+            spoolPath = createSpoolPath();
+            spoolFile = spoolPath.toFile();
+            return new FileOutputStream(spoolFile);
+        }
+        spoolPath = spoolPathInMemory();
         spoolFile = spoolPath.toFile();
-        try (DicomOutputStream out = digest == null
-                ? new DicomOutputStream(spoolFile)
-                : new DicomOutputStream(
-                        new BufferedOutputStream(
-                                new DigestOutputStream(
-                                        new FileOutputStream(spoolFile), digest)),
-                            UID.ExplicitVRLittleEndian)) {
+        spool = new SpoolOutputStream(scp.getSpoolBufferPool(), threshold,
+                ae.getDevice().getDeviceExtension(ArchiveDeviceExtension.class)
+                    .getSpoolMemoryLimit() * 1024L * 1024L,
+                spoolPath);
+        return spool;
+    }
+
+    private boolean isSpooledInMemory() {
+        return spool != null && spool.isInMemory();
+    }
+
+    public void spool(PDVInputStream data) throws IOException {
+        long start = System.nanoTime();
+        byte[] encodedFMI = encodeFileMetaInformation();
+        OutputStream spoolOut = openSpool();
+        try (OutputStream out = new BufferedOutputStream(digest == null
+                    ? spoolOut
+                    : new DigestOutputStream(spoolOut, digest))) {
+            out.write(encodedFMI);
+            attrs = parse(new SequenceInputStream(
+                    new ByteArrayInputStream(encodedFMI),
+                    new TeeInputStream(data, out)));
+        }
+        if (digest != null) {
+            fileDigest = TagUtils.toHexString(digest.digest());
+            digest.reset();
+        }
+        nanos[StoreMetrics.Phase.SPOOL.ordinal()] = System.nanoTime() - start;
+    }
+
+    private byte[] encodeFileMetaInformation() throws IOException {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream(512);
+        try (DicomOutputStream out =
+                new DicomOutputStream(bout, UID.ExplicitVRLittleEndian)) {
             out.writeFileMetaInformation(fmi);
-            data.copyTo(out);
-            if (digest != null) {
-                fileDigest = TagUtils.toHexString(digest.digest());
-                digest.reset();
-            }
+        }
+        return bout.toByteArray();
+    }
+
+    private Attributes parse(InputStream spooled) throws IOException {
+        try (DicomInputStream in = new DicomInputStream(spooled)) {
+            in.setURI(spoolFile.toURI().toString());
+            in.setIncludeBulkData(IncludeBulkData.URI);
+            return in.readDataset(-1, -1);
         }
     }
 
     public void process(Attributes rsp) throws DicomServiceException {
         try {
-            this.attrs = parse();
+            long start = System.nanoTime();
             this.storePath = createStorePath();
-            if (!compress()) {
-                storePath = move(spoolPath, storePath);
+            long t = lap(StoreMetrics.Phase.PATH, start);
+            if (compress()) {
+                t = lap(StoreMetrics.Phase.COMPRESS, t);
+            } else {
+                t = System.nanoTime();
+                storePath = isSpooledInMemory()
+                        ? write(storePath)
+                        : move(spoolPath, storePath);
                 spoolPath = null;
+                t = lap(StoreMetrics.Phase.MOVE, t);
             }
             coerceAttributes();
+            t = lap(StoreMetrics.Phase.COERCE, t);
             updateDB();
+            lap(StoreMetrics.Phase.STORE, t);
             checkCoercedAttributes(rsp);
+            recordMetrics();
         } catch (DicomServiceException e) {
             throw e;
         } catch (Exception e) {
@@ -204,27 +272,34 @@ class StoreInstance implements Closeable {
         } 
     }
 
-    private Attributes parse() throws IOException {
-        try (DicomInputStream in = new DicomInputStream(spoolFile)) {
-            in.setIncludeBulkData(IncludeBulkData.URI);
-            return in.readDataset(-1, -1);
-        }
+    private long lap(StoreMetrics.Phase phase, long start) {
+        long now = System.nanoTime();
+        nanos[phase.ordinal()] = now - start;
+        return now;
+    }
+
+    private void recordMetrics() {
+        long total = 0L;
+        for (long ns : nanos)
+            if (ns > 0)
+                total += ns;
+        nanos[StoreMetrics.Phase.TOTAL.ordinal()] = total;
+        scp.getStoreMetrics().record(sourceAET, cuid, fs.getURI(), nanos,
+                fileSize);
     }
 
     private Path createStorePath() throws IOException {
-        AttributesFormat filePathFormat = aeExt.getStorageFilePathFormat();
+        CompiledAttributesFormat filePathFormat =
+                aeExt.getCompiledStorageFilePathFormat();
         if (filePathFormat == null)
             throw new DicomServiceException(
                     Status.ProcessingFailure,
                     "No StorageFilePathFormat configured for "
                             + aeExt.getApplicationEntity().getAETitle());
-        String path;
-        synchronized (filePathFormat) {
-            path = filePathFormat.format(attrs);
-        }
+        String path = filePathFormat.format(attrs);
         Path storePath = fsPath.resolve(
                 path.replace('/', File.separatorChar));
-        Files.createDirectories(storePath.getParent());
+        scp.getDirectoryCache().createDirectories(storePath.getParent());
         return storePath;
     }
 
@@ -236,8 +311,15 @@ class StoreInstance implements Closeable {
                 .findCompressionRule(sourceAET, attrs);
         if (compressionRule == null)
             return false;
-        
+
+        if (aeExt.isDeferredCompression()) {
+            compressLater = true;
+            return false;
+        }
+
         try {
+            if (spool != null)
+                spool.spill();
             storePath = createFile(storePath);
             scp.getCompressionService()
                     .compress(compressionRule, spoolFile,
@@ -259,10 +341,25 @@ class StoreInstance implements Closeable {
             } catch (FileAlreadyExistsException e) {
                 target = target.resolveSibling(
                         target.getFileName().toString() + '-');
+            } catch (NoSuchFileException e) {
+                if (!Files.exists(source))
+                    throw e;
+                scp.getDirectoryCache().recreateDirectories(target.getParent());
             }
         }
     }
 
+    private Path write(Path target) throws IOException {
+        target = createFile(target);
+        try {
+            spool.writeTo(target);
+        } catch (IOException e) {
+            Files.deleteIfExists(target);
+            throw e;
+        }
+        return target;
+    }
+
     private Path createFile(Path path) throws IOException {
         for (;;) {
             try {
@@ -270,31 +367,40 @@ class StoreInstance implements Closeable {
             } catch (FileAlreadyExistsException e) {
                 path = path.resolveSibling(
                         path.getFileName().toString() + '-');
+            } catch (NoSuchFileException e) {
+                scp.getDirectoryCache().recreateDirectories(path.getParent());
             }
         }
     }
 
     private void updateDB() throws DicomServiceException {
         File file = storePath.toFile();
+        fileSize = file.length();
         FileRef fileRef = new FileRef(
                 fs,
                 unixFilePath(),
                 fmi.getString(Tag.TransferSyntaxUID),
-                file.length(), 
+                fileSize, 
                 fileDigest);
-        if (scp.getStoreService().store(aeExt.getStoreParam(), 
-                sourceAET, attrs, fileRef, coercedAttrs)) {
+        StoreRequest request = new StoreRequest(aeExt.getStoreParam(),
+                sourceAET, attrs, fileRef, coercedAttrs);
+        if (scp.getStoreBatcher().store(
+                ae.getDevice().getDeviceExtension(ArchiveDeviceExtension.class),
+                request)) {
             storePath = null;
+            if (compressLater)
+                scp.getDeferredCompressionService().scheduleCompression(
+                        as.getLocalAET(), sourceAET,
+                        request.getFileRef().getPk());
         }
     }
 
     private void coerceAttributes() throws Exception {
         Attributes modified = new Attributes();
-        Templates tpl = aeExt.getAttributeCoercionTemplates(cuid,
+        AttributesCoercion coercion = aeExt.getAttributesCoercion(cuid,
                 Dimse.C_STORE_RQ, TransferCapability.Role.SCP, sourceAET);
-        if (tpl != null)
-            attrs.update(SAXTransformer.transform(attrs, tpl, false, false),
-                    modified);
+        if (coercion != null)
+            attrs.update(coercion.coerce(attrs), modified);
         ApplicationEntity sourceAE = scp.getApplicationEntityCache()
                     .get(sourceAET);
         if (sourceAE != null)
@@ -327,9 +433,15 @@ class StoreInstance implements Closeable {
 
     @Override
     public void close() throws IOException {
-        if (spoolPath != null)
-            Files.deleteIfExists(spoolPath);
-        if (storePath != null)
-            Files.deleteIfExists(storePath);
+        try {
+            if (spool != null)
+                spool.release();
+            if (spoolPath != null && !isSpooledInMemory())
+                Files.deleteIfExists(spoolPath);
+            if (storePath != null)
+                Files.deleteIfExists(storePath);
+        } finally {
+            scp.getStorageFileSystems().release(storageFS);
+        }
     }
 }
@@ -0,0 +1,243 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2011-2013
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+
+package org.dcm4chee.archive.store.scp.impl;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.dcm4chee.archive.metrics.LatencyHistogram;
+import org.dcm4chee.archive.store.StoreMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Records the latency of each store phase in &micro;s per calling AET, SOP
+ * Class and File System, and over all of them. The latter are published
+ * as MBeans {@code org.dcm4chee.archive:type=StoreMetrics,phase=<phase>}.
+ * 
+ * @author Gunter Zeilinger <gunterze@gmail.com>
+ *
+ */
+@ApplicationScoped
+public class StoreMetricsImpl implements StoreMetrics {
+
+    private static final Logger LOG =
+            LoggerFactory.getLogger(StoreMetricsImpl.class);
+
+    private static final Phase[] PHASES = Phase.values();
+    private static final double[] QUANTILES = { 0.5, 0.9, 0.99 };
+
+    private final ConcurrentHashMap<Key, Metrics> metrics =
+            new ConcurrentHashMap<Key, Metrics>();
+
+    private final EnumMap<Phase, LatencyHistogram> totals =
+            new EnumMap<Phase, LatencyHistogram>(Phase.class);
+    {
+        for (Phase phase : PHASES)
+            totals.put(phase, new LatencyHistogram());
+    }
+
+    @PostConstruct
+    public void registerMBeans() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (Phase phase : PHASES) {
+            try {
+                ObjectName objectName = objectName(phase);
+                if (server.isRegistered(objectName))
+                    server.unregisterMBean(objectName);
+                server.registerMBean(
+                        new StorePhaseMetrics(totals.get(phase)), objectName);
+            } catch (Exception e) {
+                LOG.warn("Failed to register Store Metrics MBean {}:", phase, e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void unregisterMBeans() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (Phase phase : PHASES) {
+            try {
+                ObjectName objectName = objectName(phase);
+                if (server.isRegistered(objectName))
+                    server.unregisterMBean(objectName);
+            } catch (Exception e) {
+                LOG.warn("Failed to unregister Store Metrics MBean {}:", phase, e);
+            }
+        }
+    }
+
+    private static ObjectName objectName(Phase phase) throws Exception {
+        return new ObjectName("org.dcm4chee.archive:type=StoreMetrics,phase="
+                + phase.name().toLowerCase());
+    }
+
+    @Override
+    public void record(String sourceAET, String cuid, String fsURI,
+            long[] nanos, long bytes) {
+        Key key = new Key(sourceAET, cuid, fsURI);
+        Metrics m = metrics.get(key);
+        if (m == null) {
+            Metrics prev = metrics.putIfAbsent(key, m = new Metrics());
+            if (prev != null)
+                m = prev;
+        }
+        for (Phase phase : PHASES) {
+            long ns = nanos[phase.ordinal()];
+            if (ns >= 0) {
+                long micros = ns / 1000;
+                m.histograms[phase.ordinal()].record(micros);
+                totals.get(phase).record(micros);
+            }
+        }
+        if (bytes > 0)
+            m.bytes.addAndGet(bytes);
+    }
+
+    @Override
+    public void writeTo(Appendable out) throws IOException {
+        out.append("# TYPE dcm4chee_store_phase_seconds summary\n");
+        for (Map.Entry<Key, Metrics> entry : metrics.entrySet()) {
+            Key key = entry.getKey();
+            LatencyHistogram[] histograms = entry.getValue().histograms;
+            for (Phase phase : PHASES) {
+                LatencyHistogram h = histograms[phase.ordinal()];
+                if (h.getCount() == 0)
+                    continue;
+                String labels = key.labels(phase);
+                for (double q : QUANTILES) {
+                    out.append("dcm4chee_store_phase_seconds{").append(labels)
+                        .append(",quantile=\"").append(Double.toString(q))
+                        .append("\"} ").append(seconds(h.getValueAtQuantile(q)))
+                        .append('\n');
+                }
+                out.append("dcm4chee_store_phase_seconds_sum{").append(labels)
+                    .append("} ").append(seconds(h.getSum())).append('\n');
+                out.append("dcm4chee_store_phase_seconds_count{").append(labels)
+                    .append("} ").append(Long.toString(h.getCount())).append('\n');
+            }
+        }
+        out.append("# TYPE dcm4chee_store_bytes_total counter\n");
+        for (Map.Entry<Key, Metrics> entry : metrics.entrySet()) {
+            out.append("dcm4chee_store_bytes_total{")
+                .append(entry.getKey().labels(null)).append("} ")
+                .append(Long.toString(entry.getValue().bytes.get()))
+                .append('\n');
+        }
+    }
+
+    private static String seconds(long micros) {
+        return Double.toString(micros / 1000000.0);
+    }
+
+    @Override
+    public void reset() {
+        metrics.clear();
+        for (LatencyHistogram h : totals.values())
+            h.reset();
+    }
+
+    private static final class Metrics {
+        final LatencyHistogram[] histograms = new LatencyHistogram[PHASES.length];
+        final AtomicLong bytes = new AtomicLong();
+
+        Metrics() {
+            for (int i = 0; i < histograms.length; i++)
+                histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    private static final class Key {
+        final String sourceAET;
+        final String cuid;
+        final String fsURI;
+        final int hash;
+
+        Key(String sourceAET, String cuid, String fsURI) {
+            this.sourceAET = String.valueOf(sourceAET);
+            this.cuid = String.valueOf(cuid);
+            this.fsURI = String.valueOf(fsURI);
+            this.hash = (this.sourceAET.hashCode() * 31 + this.cuid.hashCode())
+                    * 31 + this.fsURI.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof Key))
+                return false;
+            Key other = (Key) obj;
+            return sourceAET.equals(other.sourceAET)
+                    && cuid.equals(other.cuid)
+                    && fsURI.equals(other.fsURI);
+        }
+
+        String labels(Phase phase) {
+            StringBuilder sb = new StringBuilder();
+            if (phase != null)
+                sb.append("phase=\"").append(phase.name().toLowerCase())
+                    .append("\",");
+            sb.append("aet=\"").append(escape(sourceAET))
+                .append("\",cuid=\"").append(escape(cuid))
+                .append("\",fs=\"").append(escape(fsURI)).append('"');
+            return sb.toString();
+        }
+
+        private static String escape(String s) {
+            return s.replace("\\", "\\\\").replace("\"", "\\\"");
+        }
+    }
+}
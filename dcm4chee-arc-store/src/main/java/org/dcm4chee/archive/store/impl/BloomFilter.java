@@ -0,0 +1,155 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2011-2013
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4chee.archive.store.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe Bloom filter of Strings, sized for an expected number of
+ * elements and false positive probability. The bit positions are derived
+ * from one 64-bit hash of the String by double hashing.
+ * 
+ * @author Gunter Zeilinger <gunterze@gmail.com>
+ *
+ */
+class BloomFilter {
+
+    private final AtomicLongArray bits;
+    private final long numBits;
+    private final int numHashFunctions;
+    private final AtomicLong bitCount = new AtomicLong();
+
+    public BloomFilter(long expectedElements, double fpp) {
+        long n = Math.max(1L, expectedElements);
+        long m = (long) (-n * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.min(Integer.MAX_VALUE - 8, (m + 63) >>> 6);
+        this.bits = new AtomicLongArray(Math.max(1, words));
+        this.numBits = bits.length() * 64L;
+        this.numHashFunctions = Math.max(1,
+                (int) Math.round((double) numBits / n * Math.log(2)));
+    }
+
+    public long getNumBits() {
+        return numBits;
+    }
+
+    public int getNumHashFunctions() {
+        return numHashFunctions;
+    }
+
+    public long getBitCount() {
+        return bitCount.get();
+    }
+
+    public long getMemoryFootprint() {
+        return numBits >>> 3;
+    }
+
+    /**
+     * Returns the probability that {@link #mightContain} returns
+     * {@code true} for a String never put, for the current fill ratio.
+     */
+    public double getFalsePositiveProbability() {
+        return Math.pow((double) bitCount.get() / numBits, numHashFunctions);
+    }
+
+    /**
+     * Returns the approximate number of distinct Strings put.
+     */
+    public long getApproximateElementCount() {
+        double fraction = (double) bitCount.get() / numBits;
+        return fraction < 1
+                ? Math.round(-Math.log1p(-fraction) * numBits / numHashFunctions)
+                : Long.MAX_VALUE;
+    }
+
+    public void put(String s) {
+        long h1 = hash64(s);
+        long h2 = mix64(h1 ^ 0x9e3779b97f4a7c15L);
+        for (int i = 1; i <= numHashFunctions; i++) {
+            long bitIndex = bitIndex(h1 + i * h2);
+            int wordIndex = (int) (bitIndex >>> 6);
+            long mask = 1L << bitIndex;
+            long word;
+            while (((word = bits.get(wordIndex)) & mask) == 0)
+                if (bits.compareAndSet(wordIndex, word, word | mask)) {
+                    bitCount.incrementAndGet();
+                    break;
+                }
+        }
+    }
+
+    public boolean mightContain(String s) {
+        long h1 = hash64(s);
+        long h2 = mix64(h1 ^ 0x9e3779b97f4a7c15L);
+        for (int i = 1; i <= numHashFunctions; i++) {
+            long bitIndex = bitIndex(h1 + i * h2);
+            if ((bits.get((int) (bitIndex >>> 6)) & (1L << bitIndex)) == 0)
+                return false;
+        }
+        return true;
+    }
+
+    private long bitIndex(long combinedHash) {
+        return (combinedHash & Long.MAX_VALUE) % numBits;
+    }
+
+    /**
+     * 64-bit FNV-1a over the chars of s, followed by the finalization
+     * step of MurmurHash3 to spread the bits.
+     */
+    static long hash64(String s) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0, n = s.length(); i < n; i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return mix64(h);
+    }
+
+    private static long mix64(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,110 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2011-2013
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4chee.archive.store.impl;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import javax.ejb.Stateless;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.dcm4chee.archive.entity.AttributesDictionary;
+import org.dcm4chee.archive.entity.Utils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Re-encodes the encoded attributes of one batch of entities in the format
+ * {@link Utils#encodeAttributes(org.dcm4che.data.Attributes, AttributesDictionary, boolean)}
+ * writes. Rows updated concurrently are skipped, because they
+ * were already re-encoded by that update.
+ * 
+ * @author Gunter Zeilinger <gunterze@gmail.com>
+ */
+@Stateless
+public class EncodedAttributesMigration {
+
+    private static final Logger LOG =
+            LoggerFactory.getLogger(EncodedAttributesMigration.class);
+
+    @PersistenceContext(unitName="dcm4chee-arc")
+    private EntityManager em;
+
+    /**
+     * @return pk of the last processed entity or {@code -1} if there is no
+     *         entity with a pk greater than {@code afterPk}
+     */
+    public long migrate(String entityName, AttributesDictionary dict,
+            boolean compress, long afterPk, int limit) {
+        List<Object[]> rows = em.createQuery(
+                "SELECT e.pk, e.updatedTime, e.encodedAttributes FROM "
+                + entityName + " e WHERE e.pk > ?1 ORDER BY e.pk",
+                Object[].class)
+            .setParameter(1, afterPk)
+            .setMaxResults(limit)
+            .getResultList();
+        if (rows.isEmpty())
+            return -1L;
+
+        int migrated = 0;
+        for (Object[] row : rows) {
+            byte[] b = (byte[]) row[2];
+            if (!Utils.needsReencoding(b, dict, compress))
+                continue;
+
+            byte[] reencoded = Utils.reencodeAttributes(b, dict, compress);
+            if (Arrays.equals(b, reencoded))
+                continue;
+
+            migrated += em.createQuery("UPDATE " + entityName
+                    + " e SET e.encodedAttributes = ?1"
+                    + " WHERE e.pk = ?2 AND e.updatedTime = ?3")
+                .setParameter(1, reencoded)
+                .setParameter(2, row[0])
+                .setParameter(3, (Date) row[1])
+                .executeUpdate();
+        }
+        long lastPk = (Long) rows.get(rows.size() - 1)[0];
+        LOG.debug("Re-encoded attributes of {} of {} {} entities up to pk={}",
+                migrated, rows.size(), entityName, lastPk);
+        return lastPk;
+    }
+}
@@ -0,0 +1,154 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2011-2013
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4chee.archive.store.impl;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.ejb.EJB;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.ejb.Timeout;
+import javax.ejb.TimerConfig;
+import javax.ejb.TimerService;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.inject.Inject;
+
+import org.dcm4chee.archive.ArchiveService;
+import org.dcm4chee.archive.conf.ArchiveDeviceExtension;
+import org.dcm4chee.archive.entity.AttributesDictionary;
+import org.dcm4chee.archive.entity.Utils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Applies the configured compression of encoded attributes and migrates the
+ * encoded attributes of existing Patients, Studies, Series and Instances
+ * batch by batch in background, after the configuration was changed.
+ * 
+ * @author Gunter Zeilinger <gunterze@gmail.com>
+ *
+ */
+@Singleton
+@Startup
+@TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+public class EncodedAttributesMigrator {
+
+    private static final Logger LOG =
+            LoggerFactory.getLogger(EncodedAttributesMigrator.class);
+
+    private static final long INITIAL_DELAY = 10000L;
+    private static final long CHECK_INTERVAL = 60000L;
+    private static final long BATCH_DELAY = 100L;
+    private static final int BATCH_SIZE = 500;
+
+    private static final String[] ENTITIES = {
+        "Patient", "Study", "Series", "Instance" };
+    private static final AttributesDictionary[] DICTS = {
+        AttributesDictionary.PATIENT,
+        AttributesDictionary.STUDY,
+        AttributesDictionary.SERIES,
+        AttributesDictionary.INSTANCE };
+
+    @Resource
+    private TimerService timerService;
+
+    @EJB
+    private EncodedAttributesMigration migration;
+
+    @Inject
+    private ArchiveService archiveService;
+
+    private Boolean compress;
+    private int entity;
+    private long lastPk;
+
+    @PostConstruct
+    public void init() {
+        applyConfiguration();
+        schedule(INITIAL_DELAY);
+    }
+
+    @Timeout
+    public void onTimeout() {
+        long delay = CHECK_INTERVAL;
+        try {
+            applyConfiguration();
+            if (entity < ENTITIES.length && migrateBatch())
+                delay = BATCH_DELAY;
+        } catch (Exception e) {
+            LOG.warn("Failed to migrate encoded attributes:", e);
+        } finally {
+            schedule(delay);
+        }
+    }
+
+    private void applyConfiguration() {
+        boolean compress = archiveService.getDevice()
+                .getDeviceExtension(ArchiveDeviceExtension.class)
+                .isCompressEncodedAttributes();
+        if (this.compress != null && this.compress == compress)
+            return;
+
+        // always scan on startup: rows may have been compressed before
+        // compression was disabled and the server was restarted
+        Utils.setCompressEncodedAttributes(compress);
+        this.compress = compress;
+        entity = 0;
+        lastPk = 0L;
+        LOG.info("Start {} encoded attributes",
+                compress ? "compressing" : "uncompressing");
+    }
+
+    private boolean migrateBatch() {
+        lastPk = migration.migrate(ENTITIES[entity], DICTS[entity],
+                compress, lastPk, BATCH_SIZE);
+        if (lastPk < 0) {
+            LOG.info("Finished migration of encoded attributes of {}",
+                    ENTITIES[entity]);
+            entity++;
+            lastPk = 0L;
+        }
+        return entity < ENTITIES.length;
+    }
+
+    private void schedule(long delay) {
+        timerService.createSingleActionTimer(delay, new TimerConfig(null, false));
+    }
+}
@@ -0,0 +1,217 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2011-2013
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+
+package org.dcm4chee.archive.store.impl;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.ejb.EJB;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.ejb.Timeout;
+import javax.ejb.TimerConfig;
+import javax.ejb.TimerService;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.inject.Inject;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.dcm4chee.archive.ArchiveService;
+import org.dcm4chee.archive.conf.ArchiveDeviceExtension;
+import org.dcm4chee.archive.entity.FileSystem;
+import org.dcm4chee.archive.entity.FileSystemStatus;
+import org.dcm4chee.archive.store.StorageFileSystems;
+import org.dcm4chee.archive.store.StoreService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Checks the usable space of all not read-only File Systems in the
+ * configured interval. If the usable space of the current writeable File
+ * System falls below the configured minimum, it gets read-only and storage
+ * switches to its next File System, skipping standby File Systems with
+ * less usable space than the higher minimum configured for the next File
+ * System. So a File System does not become current, only to be switched
+ * away from again on the next check.
+ * Sampled capacity and write rate of each File System are published as
+ * MBeans {@code org.dcm4chee.archive:type=FileSystem,name=<uri>}. The
+ * sampled used space is also passed to {@link StorageFileSystems} for the
+ * selection of the least used File System.
+ * 
+ * @author Gunter Zeilinger <gunterze@gmail.com>
+ *
+ */
+@Singleton
+@Startup
+@TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+public class FileSystemMonitor {
+
+    private static final Logger LOG =
+            LoggerFactory.getLogger(FileSystemMonitor.class);
+
+    private static final long INITIAL_DELAY = 10000L;
+    private static final long MB = 1024L * 1024L;
+
+    @Resource
+    private TimerService timerService;
+
+    @EJB
+    private StoreService storeService;
+
+    @Inject
+    private ArchiveService archiveService;
+
+    @Inject
+    private StorageFileSystems storageFileSystems;
+
+    private final Map<String, FileSystemStats> stats =
+            new HashMap<String, FileSystemStats>();
+
+    @PostConstruct
+    public void init() {
+        scheduleCheck(INITIAL_DELAY);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (String uri : stats.keySet()) {
+            try {
+                server.unregisterMBean(objectName(uri));
+            } catch (Exception e) {
+                LOG.info("Failed to unregister File System MBean {}:", uri, e);
+            }
+        }
+        stats.clear();
+    }
+
+    @Timeout
+    public void onTimeout() {
+        int interval = ArchiveDeviceExtension.DEF_FILE_SYSTEM_CHECK_INTERVAL;
+        try {
+            ArchiveDeviceExtension arcDev = archiveService.getDevice()
+                    .getDeviceExtension(ArchiveDeviceExtension.class);
+            if (arcDev.getFileSystemCheckInterval() > 0) {
+                interval = arcDev.getFileSystemCheckInterval();
+                long minFreeSpace = arcDev.getFileSystemMinFreeSpace() * MB;
+                checkFileSystems(minFreeSpace, Math.max(minFreeSpace,
+                        arcDev.getFileSystemNextMinFreeSpace() * MB));
+            }
+        } catch (Exception e) {
+            LOG.warn("Failed to check File Systems:", e);
+        } finally {
+            scheduleCheck(interval * 1000L);
+        }
+    }
+
+    private void scheduleCheck(long delay) {
+        timerService.createSingleActionTimer(delay, new TimerConfig(null, false));
+    }
+
+    private void checkFileSystems(long minFreeSpace, long nextMinFreeSpace) {
+        long now = System.currentTimeMillis();
+        for (FileSystem fs : storeService
+                .findFileSystemsWithStatusNot(FileSystemStatus.RO)) {
+            FileStore store;
+            long usableSpace;
+            long totalSpace;
+            try {
+                store = Files.getFileStore(fs.getPath());
+                usableSpace = store.getUsableSpace();
+                totalSpace = store.getTotalSpace();
+            } catch (IOException e) {
+                LOG.warn("Failed to determine usable space of {}:", fs, e);
+                continue;
+            }
+            FileSystemStats fsStats = statsOf(fs.getURI());
+            fsStats.update(fs, totalSpace, usableSpace, now);
+            storageFileSystems.updateUsedSpace(fs, totalSpace - usableSpace);
+            if (fs.getStatus() == FileSystemStatus.RW
+                    && usableSpace < minFreeSpace)
+                switchToNextFileSystem(fs, usableSpace, nextMinFreeSpace,
+                        fsStats);
+        }
+    }
+
+    private void switchToNextFileSystem(FileSystem fs, long usableSpace,
+            long nextMinFreeSpace, FileSystemStats fsStats) {
+        FileSystem next = storeService.switchToNextFileSystem(fs.getPk(),
+                nextMinFreeSpace);
+        fsStats.setStatus(FileSystemStatus.RO.name());
+        if (next != null)
+            LOG.warn("Usable space {} MB of {} below minimum - switch to {}",
+                    usableSpace / MB, fs, next);
+        else
+            LOG.warn("Usable space {} MB of {} below minimum - no next File System",
+                    usableSpace / MB, fs);
+        storageFileSystems.invalidate(fs.getGroupID());
+    }
+
+    private FileSystemStats statsOf(String uri) {
+        FileSystemStats fsStats = stats.get(uri);
+        if (fsStats == null) {
+            fsStats = new FileSystemStats(uri);
+            stats.put(uri, fsStats);
+            try {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                ObjectName objectName = objectName(uri);
+                if (server.isRegistered(objectName))
+                    server.unregisterMBean(objectName);
+                server.registerMBean(fsStats, objectName);
+            } catch (Exception e) {
+                LOG.warn("Failed to register File System MBean {}:", uri, e);
+            }
+        }
+        return fsStats;
+    }
+
+    private static ObjectName objectName(String uri) throws Exception {
+        return new ObjectName("org.dcm4chee.archive:type=FileSystem,name="
+                + ObjectName.quote(uri));
+    }
+}
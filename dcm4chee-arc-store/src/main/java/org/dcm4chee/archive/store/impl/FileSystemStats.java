@@ -0,0 +1,114 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2011-2013
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+
+package org.dcm4chee.archive.store.impl;
+
+import org.dcm4chee.archive.entity.FileSystem;
+
+/**
+ * Capacity and write rate of a File System, sampled by
+ * {@link FileSystemMonitor}.
+ * 
+ * @author Gunter Zeilinger <gunterze@gmail.com>
+ *
+ */
+class FileSystemStats implements FileSystemStatsMBean {
+
+    private final String uri;
+    private volatile String groupID;
+    private volatile String status;
+    private volatile long totalSpace;
+    private volatile long usableSpace;
+    private volatile long writeRate;
+    private volatile long lastChecked;
+
+    FileSystemStats(String uri) {
+        this.uri = uri;
+    }
+
+    void update(FileSystem fs, long totalSpace, long usableSpace, long now) {
+        if (lastChecked != 0 && now > lastChecked)
+            writeRate = (this.usableSpace - usableSpace) * 1000L
+                    / (now - lastChecked);
+        this.groupID = fs.getGroupID();
+        this.status = fs.getStatus().name();
+        this.totalSpace = totalSpace;
+        this.usableSpace = usableSpace;
+        this.lastChecked = now;
+    }
+
+    void setStatus(String status) {
+        this.status = status;
+    }
+
+    @Override
+    public String getURI() {
+        return uri;
+    }
+
+    @Override
+    public String getGroupID() {
+        return groupID;
+    }
+
+    @Override
+    public String getStatus() {
+        return status;
+    }
+
+    @Override
+    public long getTotalSpace() {
+        return totalSpace;
+    }
+
+    @Override
+    public long getUsableSpace() {
+        return usableSpace;
+    }
+
+    @Override
+    public long getWriteRate() {
+        return writeRate;
+    }
+
+    @Override
+    public long getLastChecked() {
+        return lastChecked;
+    }
+}
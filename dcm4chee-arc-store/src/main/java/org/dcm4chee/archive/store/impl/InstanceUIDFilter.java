@@ -0,0 +1,257 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2011-2013
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4chee.archive.store.impl;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bloom filter of the SOP Instance UIDs of all stored instances, which
+ * allows {@link StoreServiceImpl} to skip the look-up of an existing
+ * instance for most new objects. Until the filter is loaded by
+ * {@link InstanceUIDFilterLoader}, every UID might be contained. Deleted
+ * instances remain in the filter until it gets rebuilt. Registered as MBean
+ * {@code org.dcm4chee.archive:type=InstanceUIDFilter}.
+ * 
+ * The filter only sees instances stored by this JVM after it was loaded,
+ * so instances stored by other nodes sharing the database are missing.
+ * Therefore the look-up is only skipped if configured explicitly; otherwise
+ * the filter is only evaluated, counting instances found although the
+ * filter did not contain them as false negatives.
+ * 
+ * @author Gunter Zeilinger <gunterze@gmail.com>
+ *
+ */
+@ApplicationScoped
+public class InstanceUIDFilter implements InstanceUIDFilterMBean {
+
+    private static final Logger LOG =
+            LoggerFactory.getLogger(InstanceUIDFilter.class);
+
+    static final double FALSE_POSITIVE_RATE = 0.01;
+
+    private volatile BloomFilter filter;
+    private volatile boolean ready;
+    private volatile boolean rebuild;
+    private int capacity;
+
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong skippedLookups = new AtomicLong();
+    private final AtomicLong falsePositives = new AtomicLong();
+    private final AtomicLong falseNegatives = new AtomicLong();
+
+    @PostConstruct
+    public void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = objectName();
+            if (server.isRegistered(objectName))
+                server.unregisterMBean(objectName);
+            server.registerMBean(this, objectName);
+        } catch (Exception e) {
+            LOG.warn("Failed to register Instance UID Filter MBean:", e);
+        }
+    }
+
+    @PreDestroy
+    public void unregisterMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = objectName();
+            if (server.isRegistered(objectName))
+                server.unregisterMBean(objectName);
+        } catch (Exception e) {
+            LOG.warn("Failed to unregister Instance UID Filter MBean:", e);
+        }
+    }
+
+    private static ObjectName objectName() throws Exception {
+        return new ObjectName("org.dcm4chee.archive:type=InstanceUIDFilter");
+    }
+
+    /**
+     * Returns {@code false} if no instance with the specified SOP Instance
+     * UID was stored.
+     */
+    public boolean mightContain(String iuid) {
+        BloomFilter filter = this.filter;
+        if (filter == null || !ready)
+            return true;
+
+        return filter.mightContain(iuid);
+    }
+
+    public void put(String iuid) {
+        BloomFilter filter = this.filter;
+        if (filter != null)
+            filter.put(iuid);
+    }
+
+    /**
+     * Records that the look-up of an instance was performed.
+     */
+    public void lookup() {
+        if (ready)
+            lookups.incrementAndGet();
+    }
+
+    /**
+     * Records that the look-up of an instance, which not
+     * {@link #mightContain}, was skipped.
+     */
+    public void skippedLookup() {
+        if (ready)
+            skippedLookups.incrementAndGet();
+    }
+
+    /**
+     * Records that an instance, which {@link #mightContain} was not found.
+     */
+    public void falsePositive() {
+        if (ready)
+            falsePositives.incrementAndGet();
+    }
+
+    /**
+     * Records that an instance, which not {@link #mightContain} was found.
+     */
+    public void falseNegative() {
+        if (ready)
+            falseNegatives.incrementAndGet();
+    }
+
+    boolean needsRebuild(int capacity) {
+        return rebuild || this.capacity != capacity;
+    }
+
+    synchronized void reset(int capacity) {
+        this.ready = false;
+        this.rebuild = false;
+        this.capacity = capacity;
+        this.filter = capacity > 0
+                ? new BloomFilter(capacity, FALSE_POSITIVE_RATE)
+                : null;
+        lookups.set(0);
+        skippedLookups.set(0);
+        falsePositives.set(0);
+        falseNegatives.set(0);
+    }
+
+    void setReady() {
+        ready = filter != null;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return filter != null;
+    }
+
+    @Override
+    public boolean isReady() {
+        return ready;
+    }
+
+    @Override
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public double getTargetFalsePositiveRate() {
+        return FALSE_POSITIVE_RATE;
+    }
+
+    @Override
+    public double getExpectedFalsePositiveRate() {
+        BloomFilter filter = this.filter;
+        return filter != null ? filter.getFalsePositiveProbability() : 0;
+    }
+
+    @Override
+    public long getApproximateSize() {
+        BloomFilter filter = this.filter;
+        return filter != null ? filter.getApproximateElementCount() : 0;
+    }
+
+    @Override
+    public long getMemoryFootprint() {
+        BloomFilter filter = this.filter;
+        return filter != null ? filter.getMemoryFootprint() : 0;
+    }
+
+    @Override
+    public int getNumHashFunctions() {
+        BloomFilter filter = this.filter;
+        return filter != null ? filter.getNumHashFunctions() : 0;
+    }
+
+    @Override
+    public long getLookups() {
+        return lookups.get();
+    }
+
+    @Override
+    public long getSkippedLookups() {
+        return skippedLookups.get();
+    }
+
+    @Override
+    public long getFalsePositives() {
+        return falsePositives.get();
+    }
+
+    @Override
+    public long getFalseNegatives() {
+        return falseNegatives.get();
+    }
+
+    @Override
+    public void rebuild() {
+        rebuild = true;
+    }
+}
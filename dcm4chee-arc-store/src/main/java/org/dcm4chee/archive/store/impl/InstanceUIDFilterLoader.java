@@ -0,0 +1,170 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2011-2013
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4chee.archive.store.impl;
+
+import java.util.Date;
+import java.util.List;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.ejb.Timeout;
+import javax.ejb.TimerConfig;
+import javax.ejb.TimerService;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.dcm4chee.archive.ArchiveService;
+import org.dcm4chee.archive.conf.ArchiveDeviceExtension;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Loads the SOP Instance UIDs of all stored instances batch by batch into
+ * the {@link InstanceUIDFilter}, on startup and whenever its configured
+ * capacity changed or a rebuild was requested. Instances of transactions
+ * still pending when the load started are caught up by their creation time,
+ * before the filter is used.
+ * 
+ * @author Gunter Zeilinger <gunterze@gmail.com>
+ *
+ */
+@Singleton
+@Startup
+@TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+public class InstanceUIDFilterLoader {
+
+    private static final Logger LOG =
+            LoggerFactory.getLogger(InstanceUIDFilterLoader.class);
+
+    private static final long INITIAL_DELAY = 10000L;
+    private static final long CHECK_INTERVAL = 60000L;
+    private static final int BATCH_SIZE = 10000;
+    private static final long MAX_TX_DURATION = 300000L;
+
+    @Resource
+    private TimerService timerService;
+
+    @PersistenceContext(unitName="dcm4chee-arc")
+    private EntityManager em;
+
+    @Inject
+    private ArchiveService archiveService;
+
+    @Inject
+    private InstanceUIDFilter filter;
+
+    private boolean loading;
+    private long resetTime;
+    private long lastPk;
+    private long count;
+
+    @PostConstruct
+    public void init() {
+        schedule(INITIAL_DELAY);
+    }
+
+    @Timeout
+    public void onTimeout() {
+        long delay = CHECK_INTERVAL;
+        try {
+            int capacity = archiveService.getDevice()
+                    .getDeviceExtension(ArchiveDeviceExtension.class)
+                    .getInstanceUIDFilterCapacity();
+            if (filter.needsRebuild(capacity)) {
+                filter.reset(capacity);
+                loading = capacity > 0;
+                resetTime = System.currentTimeMillis();
+                lastPk = 0L;
+                count = 0L;
+                if (loading)
+                    LOG.info("Start loading Instance UID Filter with capacity {}",
+                            capacity);
+            }
+            if (loading)
+                delay = loadBatch();
+        } catch (Exception e) {
+            LOG.warn("Failed to load Instance UID Filter:", e);
+        } finally {
+            schedule(delay);
+        }
+    }
+
+    private long loadBatch() {
+        List<Object[]> rows = em.createQuery(
+                "SELECT i.pk, i.sopInstanceUID FROM Instance i "
+                + "WHERE i.pk > ?1 ORDER BY i.pk", Object[].class)
+            .setParameter(1, lastPk)
+            .setMaxResults(BATCH_SIZE)
+            .getResultList();
+        for (Object[] row : rows)
+            filter.put((String) row[1]);
+        count += rows.size();
+        if (!rows.isEmpty())
+            lastPk = (Long) rows.get(rows.size() - 1)[0];
+        if (rows.size() == BATCH_SIZE)
+            return 0L;
+
+        long wait = resetTime + MAX_TX_DURATION - System.currentTimeMillis();
+        if (wait > 0)
+            return wait;
+
+        List<String> pending = em.createQuery(
+                "SELECT i.sopInstanceUID FROM Instance i "
+                + "WHERE i.createdTime > ?1", String.class)
+            .setParameter(1, new Date(resetTime - MAX_TX_DURATION))
+            .getResultList();
+        for (String iuid : pending)
+            filter.put(iuid);
+        loading = false;
+        filter.setReady();
+        LOG.info("Loaded {} SOP Instance UIDs into Instance UID Filter - "
+                + "expected false positive rate: {}",
+                count, filter.getExpectedFalsePositiveRate());
+        return CHECK_INTERVAL;
+    }
+
+    private void schedule(long delay) {
+        timerService.createSingleActionTimer(delay, new TimerConfig(null, false));
+    }
+}
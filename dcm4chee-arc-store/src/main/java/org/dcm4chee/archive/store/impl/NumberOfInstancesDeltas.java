@@ -0,0 +1,129 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2011-2013
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+
+package org.dcm4chee.archive.store.impl;
+
+import java.util.TreeMap;
+
+import javax.persistence.EntityManager;
+
+import org.dcm4chee.archive.entity.Availability;
+import org.dcm4chee.archive.entity.Series;
+import org.dcm4chee.archive.entity.Study;
+
+/**
+ * Collects the changes of the number of Series and Study related instances
+ * caused by one transaction, so the Series and Study rows - shared by all
+ * concurrent stores of the same Study - are updated once per Series at the
+ * end of the transaction, instead of once per stored instance.
+ * 
+ * @author Gunter Zeilinger <gunterze@gmail.com>
+ *
+ */
+class NumberOfInstancesDeltas {
+
+    private static final class Delta {
+        final Series series;
+        int numInstances;
+        int numInstancesA;
+
+        Delta(Series series) {
+            this.series = series;
+        }
+    }
+
+    // ordered by Series pk, so concurrent transactions update rows in the
+    // same order
+    private final TreeMap<Long, Delta> deltas = new TreeMap<Long, Delta>();
+
+    public void add(Series series, Availability availability, int delta) {
+        int numInstancesA = availability.compareTo(
+                Availability.REJECTED_FOR_QUALITY_REASONS) <= 0 ? delta : 0;
+        if (numInstancesA == 0)
+            return;
+
+        Delta d = deltas.get(series.getPk());
+        if (d == null)
+            deltas.put(series.getPk(), d = new Delta(series));
+        if (availability.available())
+            d.numInstances += delta;
+        d.numInstancesA += numInstancesA;
+    }
+
+    public void apply(EntityManager em) {
+        for (Delta d : deltas.values())
+            if (d.numInstancesA != 0 || d.numInstances != 0)
+                apply(em, d.series, d.numInstances, d.numInstancesA);
+        deltas.clear();
+    }
+
+    private static void apply(EntityManager em, Series series,
+            int numInstances, int numInstancesA) {
+        Study study = series.getStudy();
+        if (em.createNamedQuery(Series.INCREMENT_NUMBER_OF_INSTANCES)
+                .setParameter(1, numInstances)
+                .setParameter(2, numInstancesA)
+                .setParameter(3, series.getPk())
+                .executeUpdate() == 0) {
+            // number of series related instances not calculated yet
+            em.createNamedQuery(Study.RESET_NUMBER_OF_INSTANCES)
+                .setParameter(1, study.getPk())
+                .executeUpdate();
+            return;
+        }
+        Object[] a = (Object[]) em.createNamedQuery(Series.NUMBER_OF_INSTANCES)
+                .setParameter(1, series.getPk())
+                .getSingleResult();
+        em.createNamedQuery(Study.INCREMENT_NUMBER_OF_INSTANCES)
+            .setParameter(1, deltaNumberOfSeries((Integer) a[0], numInstances))
+            .setParameter(2, deltaNumberOfSeries((Integer) a[1], numInstancesA))
+            .setParameter(3, numInstances)
+            .setParameter(4, numInstancesA)
+            .setParameter(5, study.getPk())
+            .executeUpdate();
+    }
+
+    private static int deltaNumberOfSeries(int numInstances, int delta) {
+        if (delta > 0 && numInstances == delta)
+            return 1;
+        if (delta < 0 && numInstances == 0)
+            return -1;
+        return 0;
+    }
+}
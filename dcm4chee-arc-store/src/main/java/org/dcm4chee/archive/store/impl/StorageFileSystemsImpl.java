@@ -0,0 +1,155 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2011-2013
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+
+package org.dcm4chee.archive.store.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.ejb.EJB;
+import javax.enterprise.context.ApplicationScoped;
+
+import org.dcm4che.net.service.DicomServiceException;
+import org.dcm4chee.archive.conf.FileSystemSelectionStrategy;
+import org.dcm4chee.archive.entity.FileSystem;
+import org.dcm4chee.archive.store.FileSystemSelector;
+import org.dcm4chee.archive.store.StorageFileSystem;
+import org.dcm4chee.archive.store.StorageFileSystems;
+import org.dcm4chee.archive.store.StoreService;
+
+/**
+ * Holds the writeable File Systems of each File System Group in memory,
+ * loaded from the database on first access to the group.
+ * 
+ * @author Gunter Zeilinger <gunterze@gmail.com>
+ *
+ */
+@ApplicationScoped
+public class StorageFileSystemsImpl implements StorageFileSystems {
+
+    @EJB
+    private StoreService storeService;
+
+    private final ConcurrentHashMap<String, List<StorageFileSystem>> groups =
+            new ConcurrentHashMap<String, List<StorageFileSystem>>();
+
+    // kept over reloads of File System Groups
+    private final ConcurrentHashMap<Long, Long> usedSpaces =
+            new ConcurrentHashMap<Long, Long>();
+
+    private final EnumMap<FileSystemSelectionStrategy, FileSystemSelector> selectors =
+            new EnumMap<FileSystemSelectionStrategy, FileSystemSelector>(
+                    FileSystemSelectionStrategy.class);
+    {
+        selectors.put(FileSystemSelectionStrategy.ROUND_ROBIN,
+                new RoundRobinFileSystemSelector());
+        selectors.put(FileSystemSelectionStrategy.LEAST_USED,
+                new LeastUsedFileSystemSelector());
+        selectors.put(FileSystemSelectionStrategy.LEAST_OUTSTANDING_WRITES,
+                new LeastOutstandingWritesFileSystemSelector());
+    }
+
+    @Override
+    public StorageFileSystem acquire(String groupID, String defaultURI,
+            FileSystemSelectionStrategy strategy) throws DicomServiceException {
+        StorageFileSystem fs = selectors.get(strategy)
+                .select(fileSystemsOf(groupID, defaultURI));
+        fs.incrementOutstandingWrites();
+        return fs;
+    }
+
+    @Override
+    public void release(StorageFileSystem fs) {
+        fs.decrementOutstandingWrites();
+    }
+
+    @Override
+    public void invalidate(String groupID) {
+        groups.remove(groupID);
+    }
+
+    @Override
+    public void invalidateAll() {
+        groups.clear();
+    }
+
+    @Override
+    public void updateUsedSpace(FileSystem fs, long usedSpace) {
+        usedSpaces.put(fs.getPk(), usedSpace);
+        List<StorageFileSystem> fileSystems = groups.get(fs.getGroupID());
+        if (fileSystems != null)
+            for (StorageFileSystem storageFS : fileSystems)
+                if (storageFS.getFileSystem().getPk() == fs.getPk())
+                    storageFS.setUsedSpace(usedSpace);
+    }
+
+    private List<StorageFileSystem> fileSystemsOf(String groupID,
+            String defaultURI) throws DicomServiceException {
+        List<StorageFileSystem> fileSystems = groups.get(groupID);
+        if (fileSystems == null) {
+            synchronized (groups) {
+                fileSystems = groups.get(groupID);
+                if (fileSystems == null) {
+                    fileSystems = load(groupID, defaultURI);
+                    groups.put(groupID, fileSystems);
+                }
+            }
+        }
+        return fileSystems;
+    }
+
+    private List<StorageFileSystem> load(String groupID, String defaultURI)
+            throws DicomServiceException {
+        List<FileSystem> writeable =
+                storeService.findWriteableFileSystems(groupID, defaultURI);
+        List<StorageFileSystem> fileSystems =
+                new ArrayList<StorageFileSystem>(writeable.size());
+        for (FileSystem fs : writeable) {
+            StorageFileSystem storageFS = new StorageFileSystem(fs);
+            Long usedSpace = usedSpaces.get(fs.getPk());
+            if (usedSpace != null)
+                storageFS.setUsedSpace(usedSpace);
+            fileSystems.add(storageFS);
+        }
+        return Collections.unmodifiableList(fileSystems);
+    }
+}
@@ -38,19 +38,27 @@
 
 package org.dcm4chee.archive.store.impl;
 
+import java.io.IOException;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import javax.annotation.Resource;
 import javax.ejb.EJB;
 import javax.ejb.Stateless;
+import javax.inject.Inject;
 import javax.persistence.EntityManager;
 import javax.persistence.NoResultException;
 import javax.persistence.PersistenceException;
 import javax.persistence.PersistenceContext;
-import javax.persistence.TypedQuery;
+import javax.transaction.TransactionSynchronizationRegistry;
 
 import org.dcm4che.data.Attributes;
 import org.dcm4che.data.IDWithIssuer;
@@ -81,8 +89,10 @@ import org.dcm4chee.archive.entity.Series;
 import org.dcm4chee.archive.entity.Study;
 import org.dcm4chee.archive.entity.VerifyingObserver;
 import org.dcm4chee.archive.issuer.IssuerService;
+import org.dcm4chee.archive.lock.EntityLocks;
 import org.dcm4chee.archive.patient.PatientService;
 import org.dcm4chee.archive.request.RequestService;
+import org.dcm4chee.archive.store.StoreRequest;
 import org.dcm4chee.archive.store.StoreService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -111,32 +121,81 @@ public class StoreServiceImpl implements StoreService {
     @EJB
     private CodeService codeService;
 
+    @Inject
+    private UIDCaches uidCaches;
+
+    @Inject
+    private InstanceUIDFilter instanceUIDFilter;
+
+    @Resource
+    private TransactionSynchronizationRegistry tsr;
+
     @Override
-    public FileSystem selectStorageFileSystem(String groupID, String defaultURI)
-        throws DicomServiceException {
-        TypedQuery<FileSystem> selectCurFileSystem =
+    public List<FileSystem> findWriteableFileSystems(String groupID,
+            String defaultURI) throws DicomServiceException {
+        List<FileSystem> writeable =
                 em.createNamedQuery(FileSystem.FIND_BY_GROUP_ID_AND_STATUS, FileSystem.class)
                 .setParameter(1, groupID)
-                .setParameter(2, FileSystemStatus.RW);
-        try {
-            return selectCurFileSystem.getSingleResult();
-        } catch (NoResultException e) {
-            List<FileSystem> resultList = 
-                    em.createNamedQuery(FileSystem.FIND_BY_GROUP_ID, FileSystem.class)
-                        .setParameter(1, groupID)
-                        .getResultList();
-            for (FileSystem fs : resultList) {
-                if (fs.getStatus() == FileSystemStatus.Rw) {
-                    fs.setStatus(FileSystemStatus.RW);
-                    em.flush();
-                    return fs;
-                }
+                .setParameter(2, FileSystemStatus.RW)
+                .getResultList();
+        if (!writeable.isEmpty())
+            return writeable;
+
+        List<FileSystem> resultList = 
+                em.createNamedQuery(FileSystem.FIND_BY_GROUP_ID, FileSystem.class)
+                    .setParameter(1, groupID)
+                    .getResultList();
+        for (FileSystem fs : resultList) {
+            if (fs.getStatus() == FileSystemStatus.Rw) {
+                fs.setStatus(FileSystemStatus.RW);
+                em.flush();
+                return Collections.singletonList(fs);
             }
-            if (resultList.isEmpty() && defaultURI != null) {
-                return initFileSystem(em, groupID, defaultURI);
+        }
+        if (resultList.isEmpty() && defaultURI != null) {
+            return Collections.singletonList(
+                    initFileSystem(em, groupID, defaultURI));
+        }
+        throw new DicomServiceException(Status.OutOfResources,
+                "No writeable File System in File System Group " + groupID);
+    }
+
+    @Override
+    public List<FileSystem> findFileSystemsWithStatusNot(
+            FileSystemStatus status) {
+        return em.createNamedQuery(
+                    FileSystem.FIND_BY_STATUS_NOT, FileSystem.class)
+                .setParameter(1, status)
+                .getResultList();
+    }
+
+    @Override
+    public FileSystem switchToNextFileSystem(long pk, long minFreeSpace) {
+        FileSystem fs = em.find(FileSystem.class, pk);
+        if (fs == null || fs.getStatus() == FileSystemStatus.RO)
+            return null;
+
+        fs.setStatus(FileSystemStatus.RO);
+        Set<FileSystem> visited = new HashSet<FileSystem>();
+        visited.add(fs);
+        for (FileSystem next = fs.getNextFileSystem();
+                next != null && visited.add(next);
+                next = next.getNextFileSystem()) {
+            if (next.getStatus() == FileSystemStatus.Rw
+                    && usableSpace(next) >= minFreeSpace) {
+                next.setStatus(FileSystemStatus.RW);
+                return next;
             }
-            throw new DicomServiceException(Status.OutOfResources,
-                    "No writeable File System in File System Group " + groupID);
+        }
+        return null;
+    }
+
+    private static long usableSpace(FileSystem fs) {
+        try {
+            return Files.getFileStore(fs.getPath()).getUsableSpace();
+        } catch (IOException e) {
+            LOG.warn("Failed to determine usable space of {}:", fs, e);
+            return -1L;
         }
     }
 
@@ -161,56 +220,146 @@ public class StoreServiceImpl implements StoreService {
             Attributes data, FileRef fileRef, Attributes modified)
                     throws DicomServiceException {
         try {
-            Availability availability = fileRef.getFileSystem().getAvailability();
-            Instance inst;
-            try {
-                inst = findInstance(em, data.getString(Tag.SOPInstanceUID, null));
-                StoreDuplicate.Action storeDuplicate =
-                        storeDuplicate(storeParam.getStoreDuplicates(), inst, fileRef);
-                switch (inst.getAvailability()) {
-                case REJECTED_FOR_QUALITY_REASONS_REJECTION_NOTE:
-                case REJECTED_FOR_PATIENT_SAFETY_REASONS_REJECTION_NOTE:
-                case INCORRECT_MODALITY_WORKLIST_ENTRY_REJECTION_NOTE:
-                case DATA_RETENTION_PERIOD_EXPIRED_REJECTION_NOTE:
-                    throw new DicomServiceException(Status.CannotUnderstand,
-                            "subsequent occurrence of rejection note");
-                case REJECTED_FOR_QUALITY_REASONS:
-                case REJECTED_FOR_PATIENT_SAFETY_REASONS:
-                case INCORRECT_MODALITY_WORKLIST_ENTRY:
-                    throw new DicomServiceException(Status.CannotUnderstand,
-                            "subsequent occurrence of rejected instance");
-                case DATA_RETENTION_PERIOD_EXPIRED:
-                    storeDuplicate = StoreDuplicate.Action.REPLACE;
-                default:
-                    break;
-                }
-                switch (storeDuplicate) {
-                case IGNORE:
-                    coerceAttributes(inst, data, modified);
-                    return false;
-                case STORE:
-                    updateInstance(storeParam, inst, data, modified);
-                    coerceAttributes(inst.getSeries(), data, modified);
-                    break;
-                case REPLACE:
-                    inst.setReplaced(true);
-                    inst = newInstance(em, storeParam, sourceAET, data,
-                            availability, modified);
-                    break;
-                }
-            } catch (NoResultException e) {
-                inst = newInstance(em, storeParam, sourceAET, data,
-                        availability, modified);
-            }
-            fileRef.setInstance(inst);
-            em.persist(fileRef);
+            Instance inst = findInstance(em, storeParam,
+                    data.getString(Tag.SOPInstanceUID, null));
+            StoreDuplicate.Action storeDuplicate =
+                    checkDuplicate(storeParam, inst, fileRef);
+            NumberOfInstancesDeltas deltas = new NumberOfInstancesDeltas();
+            boolean stored = store(storeParam, sourceAET, data, fileRef,
+                    modified, inst, storeDuplicate, null, deltas);
+            deltas.apply(em);
             em.flush();
-            return true;
+            return stored;
         } catch (DicomServiceException e) {
+            // a checked exception does not roll back the transaction
+            tsr.setRollbackOnly();
             throw e;
         } catch (Exception e) {
-            throw new DicomServiceException(Status.ProcessingFailure, e.getMessage());
+            tsr.setRollbackOnly();
+            throw new DicomServiceException(Status.ProcessingFailure, e);
+        }
+    }
+
+    @Override
+    public void storeAll(List<StoreRequest> requests)
+            throws DicomServiceException {
+        HashMap<String, Series> seriesCache = new HashMap<String, Series>();
+        NumberOfInstancesDeltas deltas = new NumberOfInstancesDeltas();
+        for (StoreRequest request : requests) {
+            StoreParam storeParam = request.getStoreParam();
+            Attributes data = request.getAttributes();
+            FileRef fileRef = request.getFileRef();
+            Instance inst = findInstance(em, storeParam,
+                    data.getString(Tag.SOPInstanceUID, null));
+            StoreDuplicate.Action storeDuplicate;
+            try {
+                storeDuplicate = checkDuplicate(storeParam, inst, fileRef);
+            } catch (DicomServiceException e) {
+                // nothing was persisted for this request yet
+                request.setException(e);
+                continue;
+            }
+            try {
+                request.setStored(store(storeParam, request.getSourceAET(),
+                        data, fileRef, request.getModified(),
+                        inst, storeDuplicate, seriesCache, deltas));
+            } catch (DicomServiceException e) {
+                // do not commit Patient, Study or Series already persisted
+                // for this request
+                tsr.setRollbackOnly();
+                throw e;
+            }
+        }
+        deltas.apply(em);
+        em.flush();
+    }
+
+    @Override
+    public FileRef findFileRef(long pk) {
+        try {
+            return em.createNamedQuery(
+                        FileRef.FIND_BY_PK_FETCH_FILE_SYSTEM, FileRef.class)
+                    .setParameter(1, pk)
+                    .getSingleResult();
+        } catch (NoResultException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public boolean replaceFileRef(long pk, FileRef fileRef) {
+        FileRef prev = em.find(FileRef.class, pk);
+        if (prev == null)
+            return false;
+
+        fileRef.setInstance(prev.getInstance());
+        em.persist(fileRef);
+        em.remove(prev);
+        em.flush();
+        return true;
+    }
+
+    /**
+     * Returns the action for a received object, which is already stored as
+     * {@code inst}, or {@code null} if {@code inst} is {@code null}. Throws
+     * a {@code DicomServiceException} if the object shall be rejected;
+     * nothing is persisted until then.
+     */
+    private StoreDuplicate.Action checkDuplicate(StoreParam storeParam,
+            Instance inst, FileRef fileRef) throws DicomServiceException {
+        if (inst == null)
+            return null;
+
+        StoreDuplicate.Action storeDuplicate =
+                storeDuplicate(storeParam.getStoreDuplicates(), inst, fileRef);
+        switch (inst.getAvailability()) {
+        case REJECTED_FOR_QUALITY_REASONS_REJECTION_NOTE:
+        case REJECTED_FOR_PATIENT_SAFETY_REASONS_REJECTION_NOTE:
+        case INCORRECT_MODALITY_WORKLIST_ENTRY_REJECTION_NOTE:
+        case DATA_RETENTION_PERIOD_EXPIRED_REJECTION_NOTE:
+            throw new DicomServiceException(Status.CannotUnderstand,
+                    "subsequent occurrence of rejection note");
+        case REJECTED_FOR_QUALITY_REASONS:
+        case REJECTED_FOR_PATIENT_SAFETY_REASONS:
+        case INCORRECT_MODALITY_WORKLIST_ENTRY:
+            throw new DicomServiceException(Status.CannotUnderstand,
+                    "subsequent occurrence of rejected instance");
+        case DATA_RETENTION_PERIOD_EXPIRED:
+            return StoreDuplicate.Action.REPLACE;
+        default:
+            return storeDuplicate;
+        }
+    }
+
+    private boolean store(StoreParam storeParam, String sourceAET,
+            Attributes data, FileRef fileRef, Attributes modified,
+            Instance inst, StoreDuplicate.Action storeDuplicate,
+            Map<String, Series> seriesCache, NumberOfInstancesDeltas deltas)
+                    throws DicomServiceException {
+        Availability availability = fileRef.getFileSystem().getAvailability();
+        if (inst != null) {
+            switch (storeDuplicate) {
+            case IGNORE:
+                coerceAttributes(inst, data, modified);
+                return false;
+            case STORE:
+                updateInstance(storeParam, inst, data, modified);
+                coerceAttributes(inst.getSeries(), data, modified);
+                break;
+            case REPLACE:
+                inst.setReplaced(true);
+                deltas.add(inst.getSeries(), inst.getAvailability(), -1);
+                inst = newInstance(em, storeParam, sourceAET, data,
+                        availability, modified, seriesCache, deltas);
+                break;
+            }
+        } else {
+            inst = newInstance(em, storeParam, sourceAET, data,
+                    availability, modified, seriesCache, deltas);
         }
+        fileRef.setInstance(inst);
+        em.persist(fileRef);
+        return true;
     }
 
     private StoreDuplicate.Action storeDuplicate(
@@ -263,14 +412,15 @@ public class StoreServiceImpl implements StoreService {
 
     private Instance newInstance(EntityManager em, StoreParam storeParam,
             String sourceAET, Attributes data, Availability availability,
-            Attributes modified) throws DicomServiceException {
+            Attributes modified, Map<String, Series> seriesCache,
+            NumberOfInstancesDeltas deltas) throws DicomServiceException {
 //        Availability rnAvailability =
 //                storeParam.getRejectionNoteAvailability(data);
 //        if (rnAvailability != null) {
 //            processRejectionNote(data, rnAvailability);
 //        }
         Series series = findOrCreateSeries(em, storeParam, sourceAET, data,
-                availability);
+                availability, seriesCache);
 //        Availability availability = rnAvailability != null
 //                    ? Availability.availabilityOfRejectedObject(rnAvailability)
 //                    : fsAvailability;
@@ -300,20 +450,25 @@ public class StoreServiceImpl implements StoreService {
         inst.setAttributes(data,
                 storeParam.getAttributeFilter(Entity.Instance),
                 storeParam.getFuzzyStr());
+        instanceUIDFilter.put(inst.getSopInstanceUID());
         em.persist(inst);
+        deltas.add(series, availability, 1);
         return inst;
     }
 
     private Series findOrCreateSeries(EntityManager em, StoreParam storeParam,
-            String sourceAET, Attributes data, Availability availability)
-                    throws DicomServiceException {
+            String sourceAET, Attributes data, Availability availability,
+            Map<String, Series> seriesCache) throws DicomServiceException {
         String seriesIUID = data.getString(Tag.SeriesInstanceUID);
-        Series series;
+        Series series = seriesCache != null ? seriesCache.get(seriesIUID) : null;
 //        updateRefPPS(data, storeContext);
 //        checkRefPPS(data, storeContext);
-        try {
-            series = findSeries(em, seriesIUID);
-        } catch (NoResultException e) {
+        if (series == null) {
+            series = findSeriesOrLock(em, storeParam, seriesIUID, data);
+            if (series != null && seriesCache != null)
+                seriesCache.put(seriesIUID, series);
+        }
+        if (series == null) {
             series = new Series();
             Study study = findOrCreateStudy(em, storeParam, data,
                     availability);
@@ -328,10 +483,17 @@ public class StoreServiceImpl implements StoreService {
             series.setRetrieveAETs(storeParam.getRetrieveAETs());
             series.setExternalRetrieveAET(storeParam.getExternalRetrieveAET());
             series.setAvailability(availability);
+            series.setNumberOfInstances(0);
+            series.setNumberOfInstancesA(0);
             series.setAttributes(data,
                     storeParam.getAttributeFilter(Entity.Series),
                     storeParam.getFuzzyStr());
             em.persist(series);
+            uidCaches.getSeries().put(seriesIUID, series.getPk(),
+                    storeParam.getUIDCacheMaxSize(),
+                    storeParam.getUIDCacheTimeout());
+            if (seriesCache != null)
+                seriesCache.put(seriesIUID, series);
             return series;
         }
         Study study = series.getStudy();
@@ -387,7 +549,6 @@ public class StoreServiceImpl implements StoreService {
         series.retainRetrieveAETs(storeParam.getRetrieveAETs());
         series.retainExternalRetrieveAET(storeParam.getExternalRetrieveAET());
         series.floorAvailability(availability);
-        series.resetNumberOfInstances();
         Attributes seriesAttrs = series.getAttributes();
         AttributeFilter seriesFilter = storeParam.getAttributeFilter(Entity.Series);
         if (seriesAttrs.mergeSelected(data, seriesFilter.getSelection())) {
@@ -397,12 +558,12 @@ public class StoreServiceImpl implements StoreService {
 
     private Study findOrCreateStudy(EntityManager em, StoreParam storeParam,
             Attributes data, Availability availability) {
-        Study study;
-        try {
-            study = findStudy(em, data.getString(Tag.StudyInstanceUID));
+        Study study = findStudyOrLock(em, storeParam,
+                data.getString(Tag.StudyInstanceUID), data);
+        if (study != null) {
             mergeStudyAttributes(storeParam, study, data, availability);
             mergePatientAttributes(storeParam, study.getPatient(), data);
-        } catch (NoResultException e) {
+        } else {
             study = new Study();
             Patient patient = patientService.findUniqueOrCreatePatient(
                     storeParam.getAttributeFilter(Entity.Patient),
@@ -417,10 +578,18 @@ public class StoreServiceImpl implements StoreService {
             study.setRetrieveAETs(storeParam.getRetrieveAETs());
             study.setExternalRetrieveAET(storeParam.getExternalRetrieveAET());
             study.setAvailability(availability);
+            study.setNumberOfSeries(0);
+            study.setNumberOfSeriesA(0);
+            study.setNumberOfInstances(0);
+            study.setNumberOfInstancesA(0);
             study.setAttributes(data, 
                     storeParam.getAttributeFilter(Entity.Study),
                     storeParam.getFuzzyStr());
             em.persist(study);
+            uidCaches.getStudies().put(study.getStudyInstanceUID(),
+                    study.getPk(),
+                    storeParam.getUIDCacheMaxSize(),
+                    storeParam.getUIDCacheTimeout());
         }
         return study;
     }
@@ -432,7 +601,6 @@ public class StoreServiceImpl implements StoreService {
         study.retainRetrieveAETs(storeParam.getRetrieveAETs());
         study.retainExternalRetrieveAET(storeParam.getExternalRetrieveAET());
         study.floorAvailability(availability);
-        study.resetNumberOfInstances();
         AttributeFilter studyFilter = storeParam.getAttributeFilter(Entity.Study);
         Attributes studyAttrs = study.getAttributes();
         if (studyAttrs.mergeSelected(data, studyFilter.getSelection())) {
@@ -440,24 +608,114 @@ public class StoreServiceImpl implements StoreService {
         }
     }
 
-    private Instance findInstance(EntityManager em, String sopIUID) {
-        return em.createNamedQuery(
-                    Instance.FIND_BY_SOP_INSTANCE_UID, Instance.class)
-                 .setParameter(1, sopIUID).getSingleResult();
+    private Instance findInstance(EntityManager em, StoreParam storeParam,
+            String sopIUID) {
+        boolean mightContain = instanceUIDFilter.mightContain(sopIUID);
+        if (!mightContain && storeParam.isInstanceUIDFilterSkipLookup()) {
+            instanceUIDFilter.skippedLookup();
+            return null;
+        }
+        instanceUIDFilter.lookup();
+        try {
+            Instance inst = em.createNamedQuery(
+                        Instance.FIND_BY_SOP_INSTANCE_UID, Instance.class)
+                     .setParameter(1, sopIUID).getSingleResult();
+            if (!mightContain)
+                instanceUIDFilter.falseNegative();
+            return inst;
+        } catch (NoResultException e) {
+            if (mightContain)
+                instanceUIDFilter.falsePositive();
+            return null;
+        }
     }
 
-    private Series findSeries(EntityManager em, String seriesIUID) {
-        return em.createNamedQuery(
+    /**
+     * Returns the Series with the specified Instance UID, or {@code null} if
+     * it does not exist. In that case, the locks of the Series, its Study
+     * and its Patient are held until the transaction completes, so
+     * concurrent transactions wait for the Series created by this
+     * transaction, instead of creating it again. All three locks are
+     * acquired at once, in the global order of {@link EntityLocks}.
+     */
+    private Series findSeriesOrLock(EntityManager em, StoreParam storeParam,
+            String seriesIUID, Attributes data) {
+        try {
+            return findSeries(em, storeParam, seriesIUID);
+        } catch (NoResultException e) {
+            EntityLocks.lock(tsr, seriesIUID,
+                    data.getString(Tag.StudyInstanceUID),
+                    data.getString(Tag.PatientID));
+        }
+        // check if the Series was created by a concurrent transaction
+        try {
+            return findSeries(em, storeParam, seriesIUID);
+        } catch (NoResultException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the Study with the specified Instance UID, or {@code null} if
+     * it does not exist, holding the locks of the Study and its Patient
+     * until the transaction completes - analog to {@link #findSeriesOrLock}.
+     */
+    private Study findStudyOrLock(EntityManager em, StoreParam storeParam,
+            String studyIUID, Attributes data) {
+        try {
+            return findStudy(em, storeParam, studyIUID);
+        } catch (NoResultException e) {
+            EntityLocks.lock(tsr, studyIUID, data.getString(Tag.PatientID));
+        }
+        try {
+            return findStudy(em, storeParam, studyIUID);
+        } catch (NoResultException e) {
+            return null;
+        }
+    }
+
+    private Series findSeries(EntityManager em, StoreParam storeParam,
+            String seriesIUID) {
+        UIDCache cache = uidCaches.getSeries();
+        Long pk = cache.get(seriesIUID, storeParam.getUIDCacheMaxSize());
+        if (pk != null) {
+            Series series = em.find(Series.class, pk);
+            if (series != null
+                    && seriesIUID.equals(series.getSeriesInstanceUID()))
+                return series;
+            // deleted or not committed
+            cache.invalidate(seriesIUID);
+        }
+        Series series = em.createNamedQuery(
                     Series.FIND_BY_SERIES_INSTANCE_UID, Series.class)
                  .setParameter(1, seriesIUID)
                  .getSingleResult();
+        cache.put(seriesIUID, series.getPk(),
+                storeParam.getUIDCacheMaxSize(),
+                storeParam.getUIDCacheTimeout());
+        return series;
     }
 
-    private Study findStudy(EntityManager em, String studyIUID) {
-        return em.createNamedQuery(
+    private Study findStudy(EntityManager em, StoreParam storeParam,
+            String studyIUID) {
+        UIDCache cache = uidCaches.getStudies();
+        Long pk = cache.get(studyIUID, storeParam.getUIDCacheMaxSize());
+        if (pk != null) {
+            Study study = em.find(Study.class, pk);
+            if (study != null
+                    && studyIUID.equals(study.getStudyInstanceUID()))
+                return study;
+            // deleted or not committed
+            cache.invalidate(studyIUID);
+        }
+        Study study = em.createNamedQuery(
                     Study.FIND_BY_STUDY_INSTANCE_UID, Study.class)
                  .setParameter(1, studyIUID)
                  .getSingleResult();
+        cache.put(studyIUID, study.getPk(),
+                storeParam.getUIDCacheMaxSize(),
+                storeParam.getUIDCacheTimeout());
+        return study;
     }
 
     private Collection<VerifyingObserver> createVerifyingObservers(
@@ -0,0 +1,187 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2011-2013
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+package org.dcm4chee.archive.store.impl;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded LRU cache of Instance UID to primary key mappings, whose entries
+ * expire after a configurable timeout. The cache is split into segments
+ * selected by the hash of the UID, each with its own lock and LRU order,
+ * so concurrent stores of different UIDs rarely contend on the same lock.
+ * A maximal size of 0 disables the cache.
+ * 
+ * @author Gunter Zeilinger <gunterze@gmail.com>
+ *
+ */
+class UIDCache implements UIDCacheMBean {
+
+    private static final int SEGMENTS = 16;
+
+    private static final class Entry {
+        final long pk;
+        final long expires;
+
+        Entry(long pk, long expires) {
+            this.pk = pk;
+            this.expires = expires;
+        }
+    }
+
+    private final class Segment extends LinkedHashMap<String, Entry> {
+
+        private static final long serialVersionUID = 1L;
+
+        Segment() {
+            super(16, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > (maxSize + SEGMENTS - 1) / SEGMENTS;
+        }
+    }
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+    private volatile int maxSize;
+
+    UIDCache() {
+        for (int i = 0; i < SEGMENTS; i++)
+            segments[i] = new Segment();
+    }
+
+    private Segment segmentFor(String uid) {
+        int h = uid.hashCode();
+        h ^= (h >>> 16);
+        return segments[h & (SEGMENTS - 1)];
+    }
+
+    private boolean enabled(int maxSize) {
+        if (this.maxSize != maxSize) {
+            this.maxSize = maxSize;
+            if (maxSize <= 0)
+                clear();
+        }
+        return maxSize > 0;
+    }
+
+    public Long get(String uid, int maxSize) {
+        if (!enabled(maxSize))
+            return null;
+
+        Segment segment = segmentFor(uid);
+        Entry entry;
+        synchronized (segment) {
+            entry = segment.get(uid);
+            if (entry != null && entry.expires < System.currentTimeMillis()) {
+                segment.remove(uid);
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.pk;
+    }
+
+    public void put(String uid, long pk, int maxSize, int timeout) {
+        if (!enabled(maxSize))
+            return;
+
+        Entry entry = new Entry(pk,
+                System.currentTimeMillis() + timeout * 1000L);
+        Segment segment = segmentFor(uid);
+        synchronized (segment) {
+            segment.put(uid, entry);
+        }
+    }
+
+    public void invalidate(String uid) {
+        Segment segment = segmentFor(uid);
+        synchronized (segment) {
+            if (segment.remove(uid) == null)
+                return;
+        }
+        invalidations.incrementAndGet();
+    }
+
+    @Override
+    public int getSize() {
+        int size = 0;
+        for (Segment segment : segments)
+            synchronized (segment) {
+                size += segment.size();
+            }
+        return size;
+    }
+
+    @Override
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    @Override
+    public long getHits() {
+        return hits.get();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Override
+    public long getInvalidations() {
+        return invalidations.get();
+    }
+
+    @Override
+    public void clear() {
+        for (Segment segment : segments)
+            synchronized (segment) {
+                segment.clear();
+            }
+    }
+}
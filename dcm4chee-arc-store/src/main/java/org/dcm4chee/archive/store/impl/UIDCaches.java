@@ -0,0 +1,115 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2011-2013
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+
+package org.dcm4chee.archive.store.impl;
+
+import java.lang.management.ManagementFactory;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Study and Series Instance UID to primary key caches shared by all
+ * {@link StoreServiceImpl} instances, registered as MBeans
+ * {@code org.dcm4chee.archive:type=UIDCache,name=Study|Series}.
+ * 
+ * @author Gunter Zeilinger <gunterze@gmail.com>
+ *
+ */
+@ApplicationScoped
+public class UIDCaches {
+
+    private static final Logger LOG = LoggerFactory.getLogger(UIDCaches.class);
+
+    private final UIDCache studies = new UIDCache();
+    private final UIDCache series = new UIDCache();
+
+    UIDCache getStudies() {
+        return studies;
+    }
+
+    UIDCache getSeries() {
+        return series;
+    }
+
+    @PostConstruct
+    public void registerMBeans() {
+        register("Study", studies);
+        register("Series", series);
+    }
+
+    @PreDestroy
+    public void unregisterMBeans() {
+        unregister("Study");
+        unregister("Series");
+    }
+
+    private static ObjectName objectName(String name) throws Exception {
+        return new ObjectName("org.dcm4chee.archive:type=UIDCache,name=" + name);
+    }
+
+    private static void register(String name, UIDCacheMBean mbean) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = objectName(name);
+            if (server.isRegistered(objectName))
+                server.unregisterMBean(objectName);
+            server.registerMBean(mbean, objectName);
+        } catch (Exception e) {
+            LOG.warn("Failed to register {} UID Cache MBean:", name, e);
+        }
+    }
+
+    private static void unregister(String name) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = objectName(name);
+            if (server.isRegistered(objectName))
+                server.unregisterMBean(objectName);
+        } catch (Exception e) {
+            LOG.warn("Failed to unregister {} UID Cache MBean:", name, e);
+        }
+    }
+}
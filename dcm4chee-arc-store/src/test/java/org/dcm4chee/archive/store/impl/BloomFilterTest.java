@@ -0,0 +1,118 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2011-2013
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4chee.archive.store.impl;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * @author Gunter Zeilinger <gunterze@gmail.com>
+ *
+ */
+public class BloomFilterTest {
+
+    private static final int N = 10000;
+    private static final double FPP = 0.01;
+
+    private static String uid(int i) {
+        return "1.2.40.0.13.1.1.99." + i;
+    }
+
+    private static BloomFilter filled() {
+        BloomFilter filter = new BloomFilter(N, FPP);
+        for (int i = 0; i < N; i++)
+            filter.put(uid(i));
+        return filter;
+    }
+
+    @Test
+    public void testNoFalseNegatives() {
+        BloomFilter filter = filled();
+        for (int i = 0; i < N; i++)
+            assertTrue(uid(i), filter.mightContain(uid(i)));
+    }
+
+    @Test
+    public void testEmpty() {
+        BloomFilter filter = new BloomFilter(N, FPP);
+        assertFalse(filter.mightContain(uid(0)));
+        assertEquals(0, filter.getBitCount());
+        assertEquals(0, filter.getApproximateElementCount());
+        assertEquals(0, filter.getFalsePositiveProbability(), 0);
+    }
+
+    @Test
+    public void testFalsePositiveRate() {
+        BloomFilter filter = filled();
+        int falsePositives = 0;
+        for (int i = N; i < 2 * N; i++)
+            if (filter.mightContain(uid(i)))
+                falsePositives++;
+        assertTrue("false positives: " + falsePositives,
+                falsePositives < N * FPP * 2);
+        assertEquals(FPP, filter.getFalsePositiveProbability(), FPP);
+    }
+
+    @Test
+    public void testApproximateElementCount() {
+        BloomFilter filter = filled();
+        filter.put(uid(0));
+        assertEquals(N, filter.getApproximateElementCount(), N * 0.05);
+    }
+
+    @Test
+    public void testSizing() {
+        BloomFilter filter = new BloomFilter(N, FPP);
+        // m = -n ln(p) / ln(2)^2 = 9.59 bits per element, k = 7
+        assertEquals(0, filter.getNumBits() % 64);
+        assertTrue(filter.getNumBits() >= 95850);
+        assertTrue(filter.getNumBits() < 95850 + 64);
+        assertEquals(7, filter.getNumHashFunctions());
+        assertEquals(filter.getNumBits() / 8, filter.getMemoryFootprint());
+    }
+
+    @Test
+    public void testZeroCapacity() {
+        BloomFilter filter = new BloomFilter(0, FPP);
+        assertFalse(filter.mightContain(uid(0)));
+        filter.put(uid(0));
+        assertTrue(filter.mightContain(uid(0)));
+    }
+}
@@ -0,0 +1,125 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2011-2013
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4chee.archive.store.impl;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * @author Gunter Zeilinger <gunterze@gmail.com>
+ *
+ */
+public class InstanceUIDFilterTest {
+
+    private static final String IUID = "1.2.40.0.13.1.1.99.1";
+    private static final String OTHER_IUID = "1.2.40.0.13.1.1.99.2";
+
+    @Test
+    public void testDisabled() {
+        InstanceUIDFilter filter = new InstanceUIDFilter();
+        filter.reset(0);
+        filter.setReady();
+        assertFalse(filter.isEnabled());
+        assertFalse(filter.isReady());
+        assertTrue(filter.mightContain(IUID));
+        filter.put(IUID);
+        assertEquals(0, filter.getSkippedLookups());
+        assertEquals(0, filter.getMemoryFootprint());
+    }
+
+    @Test
+    public void testNotReady() {
+        InstanceUIDFilter filter = new InstanceUIDFilter();
+        filter.reset(1000);
+        assertTrue(filter.isEnabled());
+        assertFalse(filter.isReady());
+        assertTrue(filter.mightContain(IUID));
+        filter.lookup();
+        filter.skippedLookup();
+        filter.falsePositive();
+        filter.falseNegative();
+        assertEquals(0, filter.getLookups());
+        assertEquals(0, filter.getSkippedLookups());
+        assertEquals(0, filter.getFalsePositives());
+        assertEquals(0, filter.getFalseNegatives());
+    }
+
+    @Test
+    public void testReady() {
+        InstanceUIDFilter filter = new InstanceUIDFilter();
+        filter.reset(1000);
+        filter.put(IUID);
+        filter.setReady();
+        assertTrue(filter.isReady());
+        assertTrue(filter.mightContain(IUID));
+        assertFalse(filter.mightContain(OTHER_IUID));
+        assertEquals(0, filter.getLookups());
+        assertEquals(0, filter.getSkippedLookups());
+        filter.lookup();
+        filter.lookup();
+        filter.skippedLookup();
+        filter.falsePositive();
+        filter.falseNegative();
+        assertEquals(2, filter.getLookups());
+        assertEquals(1, filter.getSkippedLookups());
+        assertEquals(1, filter.getFalsePositives());
+        assertEquals(1, filter.getFalseNegatives());
+        assertEquals(1, filter.getApproximateSize());
+    }
+
+    @Test
+    public void testRebuild() {
+        InstanceUIDFilter filter = new InstanceUIDFilter();
+        filter.reset(1000);
+        filter.put(IUID);
+        filter.setReady();
+        filter.falseNegative();
+        assertFalse(filter.needsRebuild(1000));
+        assertTrue(filter.needsRebuild(2000));
+        filter.rebuild();
+        assertTrue(filter.needsRebuild(1000));
+        filter.reset(1000);
+        assertFalse(filter.needsRebuild(1000));
+        assertFalse(filter.isReady());
+        assertEquals(0, filter.getFalseNegatives());
+        filter.setReady();
+        assertFalse(filter.mightContain(IUID));
+    }
+}